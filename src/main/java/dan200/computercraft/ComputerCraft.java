@@ -38,6 +38,7 @@ import dan200.computercraft.shared.media.items.ItemDiskExpanded;
 import dan200.computercraft.shared.media.items.ItemDiskLegacy;
 import dan200.computercraft.shared.media.items.ItemPrintout;
 import dan200.computercraft.shared.media.items.ItemTreasureDisk;
+import dan200.computercraft.shared.network.TerminalMessageQueue;
 import dan200.computercraft.shared.peripheral.common.BlockPeripheral;
 import dan200.computercraft.shared.peripheral.common.ItemPeripheral;
 import dan200.computercraft.shared.peripheral.modem.wired.BlockCable;
@@ -109,6 +110,8 @@ public class ComputerCraft
     public static int computerSpaceLimit = 1000 * 1000;
     public static int floppySpaceLimit = 125 * 1000;
     public static int maximumFilesOpen = 128;
+    public static int fileWriteBuffer = 8 * 1024;
+    public static long fileWriteBufferLimit = 16 * 1024 * 1024;
     public static boolean disable_lua51_features = false;
     public static String default_computer_settings = "";
     public static boolean debug_enable = true;
@@ -116,6 +119,11 @@ public class ComputerCraft
     public static boolean commandRequireCreative = true;
 
     public static int computer_threads = 1;
+    public static int maxComputerThreads = 0;
+    public static boolean computer_work_stealing = false;
+    public static int coroutine_threads = 0;
+    public static boolean coroutine_virtual_threads = false;
+    public static int maxCoroutinesPerComputer = 0;
     public static long maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( 10 );
     public static long maxMainComputerTime = TimeUnit.MILLISECONDS.toNanos( 5 );
 
@@ -139,6 +147,7 @@ public class ComputerCraft
     public static int maxNotesPerTick = 8;
     public static MonitorRenderer monitorRenderer = MonitorRenderer.BEST;
     public static long monitorBandwidth = 1_000_000;
+    public static long monitorPlayerBandwidth = 250_000;
 
     public static boolean turtlesNeedFuel = true;
     public static int turtleFuelLimit = 20000;
@@ -280,6 +289,7 @@ public class ComputerCraft
             WirelessNetwork.resetNetworks();
             MainThread.reset();
             Tracking.reset();
+            TerminalMessageQueue.reset();
         }
     }
 
@@ -292,6 +302,7 @@ public class ComputerCraft
             WirelessNetwork.resetNetworks();
             MainThread.reset();
             Tracking.reset();
+            TerminalMessageQueue.reset();
         }
     }
 
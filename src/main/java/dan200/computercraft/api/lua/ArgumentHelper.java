@@ -47,7 +47,7 @@ public final class ArgumentHelper
     public static String getType( @Nullable Object value )
     {
         if( value == null ) return "nil";
-        if( value instanceof String ) return "string";
+        if( value instanceof String || value instanceof ByteString ) return "string";
         if( value instanceof Boolean ) return "boolean";
         if( value instanceof Number ) return "number";
         if( value instanceof Map ) return "table";
@@ -170,10 +170,32 @@ public final class ArgumentHelper
     {
         if( index >= args.length ) throw badArgument( index, "string", "nil" );
         Object value = args[index];
+        if( value instanceof ByteString ) return value.toString();
         if( !(value instanceof String) ) throw badArgumentOf( index, "string", value );
         return (String) value;
     }
 
+    /**
+     * Get an argument as a string of bytes.
+     *
+     * This will be a view of the original Lua string if the method's object implements {@link IByteStringArguments}.
+     * Otherwise, the {@link String} argument is encoded with {@link ByteString#of(String)}.
+     *
+     * @param args  The arguments to extract from.
+     * @param index The index into the argument array to read from.
+     * @return The argument's value.
+     * @throws LuaException If the value is not a string.
+     */
+    @Nonnull
+    public static ByteString getByteString( @Nonnull Object[] args, int index ) throws LuaException
+    {
+        if( index >= args.length ) throw badArgument( index, "string", "nil" );
+        Object value = args[index];
+        if( value instanceof ByteString ) return (ByteString) value;
+        if( !(value instanceof String) ) throw badArgumentOf( index, "string", value );
+        return ByteString.of( (String) value );
+    }
+
     /**
      * Get an argument as a table.
      *
@@ -283,6 +305,7 @@ public final class ArgumentHelper
     {
         Object value = index < args.length ? args[index] : null;
         if( value == null ) return def;
+        if( value instanceof ByteString ) return value.toString();
         if( !(value instanceof String) ) throw badArgumentOf( index, "string", value );
         return (String) value;
     }
@@ -0,0 +1,152 @@
+/*
+ * This file is part of the public ComputerCraft API - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. This API may be redistributed unmodified and in full only.
+ * For help using the API, and posting your mods, visit the forums at computercraft.info.
+ */
+package dan200.computercraft.api.lua;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+
+/**
+ * A read-only view of a Lua string's bytes.
+ *
+ * Lua strings are sequences of bytes, rather than characters. When a string is converted to a Java {@link String},
+ * each byte becomes a character from {@code 0} to {@code 255}, which this class mirrors in {@link #charAt(int)} and
+ * {@link #toString()}.
+ *
+ * The underlying array is shared with the Lua string, and so must not be modified. Keeping hold of a view keeps the
+ * whole array alive, which may be larger than the string itself.
+ *
+ * @see IByteStringArguments
+ */
+public final class ByteString implements CharSequence
+{
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    private ByteString( byte[] bytes, int offset, int length )
+    {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Create a view of part of a byte array.
+     *
+     * @param bytes  The array to view. This must not be modified afterwards.
+     * @param offset The offset of the first byte to use.
+     * @param length The number of bytes to use.
+     * @return The view of this array.
+     */
+    @Nonnull
+    public static ByteString of( @Nonnull byte[] bytes, int offset, int length )
+    {
+        Objects.requireNonNull( bytes, "bytes cannot be null" );
+        if( offset < 0 || length < 0 || offset > bytes.length - length )
+        {
+            throw new IndexOutOfBoundsException( "Region " + offset + "+" + length + " out of bounds for length " + bytes.length );
+        }
+        return new ByteString( bytes, offset, length );
+    }
+
+    /**
+     * Encode a Java string in the same way Lua strings are decoded, truncating each character to a single byte.
+     *
+     * @param string The string to encode.
+     * @return The encoded string.
+     */
+    @Nonnull
+    public static ByteString of( @Nonnull String string )
+    {
+        byte[] bytes = new byte[string.length()];
+        for( int i = 0; i < bytes.length; i++ ) bytes[i] = (byte) string.charAt( i );
+        return new ByteString( bytes, 0, bytes.length );
+    }
+
+    /**
+     * Get the array this view reads from. This must not be modified.
+     *
+     * @return The underlying array.
+     * @see #getOffset()
+     */
+    @Nonnull
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    @Override
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * Get a single byte of this string.
+     *
+     * @param index The index of the byte to get.
+     * @return The byte at this index, from 0 to 255.
+     */
+    public int byteAt( int index )
+    {
+        if( index < 0 || index >= length ) throw new IndexOutOfBoundsException( "Index " + index + " out of bounds for length " + length );
+        return bytes[offset + index] & 0xFF;
+    }
+
+    @Override
+    public char charAt( int index )
+    {
+        return (char) byteAt( index );
+    }
+
+    @Nonnull
+    @Override
+    public ByteString subSequence( int start, int end )
+    {
+        if( start < 0 || end > length || start > end )
+        {
+            throw new IndexOutOfBoundsException( "Range " + start + "-" + end + " out of bounds for length " + length );
+        }
+        return new ByteString( bytes, offset + start, end - start );
+    }
+
+    @Override
+    public boolean equals( Object other )
+    {
+        if( this == other ) return true;
+        if( !(other instanceof ByteString) ) return false;
+
+        ByteString that = (ByteString) other;
+        if( length != that.length ) return false;
+        for( int i = 0; i < length; i++ )
+        {
+            if( bytes[offset + i] != that.bytes[that.offset + i] ) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int hash = 1;
+        for( int i = 0; i < length; i++ ) hash = 31 * hash + bytes[offset + i];
+        return hash;
+    }
+
+    @Nonnull
+    @Override
+    public String toString()
+    {
+        char[] chars = new char[length];
+        for( int i = 0; i < length; i++ ) chars[i] = (char) (bytes[offset + i] & 0xFF);
+        return new String( chars );
+    }
+}
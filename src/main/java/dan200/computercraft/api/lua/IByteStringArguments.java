@@ -0,0 +1,24 @@
+/*
+ * This file is part of the public ComputerCraft API - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. This API may be redistributed unmodified and in full only.
+ * For help using the API, and posting your mods, visit the forums at computercraft.info.
+ */
+package dan200.computercraft.api.lua;
+
+/**
+ * A marker interface for {@link ILuaObject}s which accept strings as {@link ByteString}s.
+ *
+ * By default, any string passed to a method is decoded into a Java {@link String} before the method is called. When an
+ * object implements this interface, strings are instead passed as a {@link ByteString}, which reads from the Lua
+ * string's bytes directly. This is useful for methods which only need the raw bytes, such as those writing to a
+ * terminal.
+ *
+ * Only strings passed directly as arguments are affected: strings inside tables are still converted to {@link String}s.
+ * {@link ArgumentHelper#getString(Object[], int)} and friends accept {@link ByteString}s, so methods which need a
+ * {@link String} can continue to use them unchanged.
+ *
+ * @see ArgumentHelper#getByteString(Object[], int)
+ */
+public interface IByteStringArguments
+{
+}
@@ -0,0 +1,26 @@
+/*
+ * This file is part of the public ComputerCraft API - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. This API may be redistributed unmodified and in full only.
+ * For help using the API, and posting your mods, visit the forums at computercraft.info.
+ */
+package dan200.computercraft.api.lua;
+
+import dan200.computercraft.api.peripheral.IPeripheral;
+
+/**
+ * A marker interface for {@link ILuaObject}s and {@link IPeripheral}s which accept lazy views of Lua tables as
+ * arguments.
+ *
+ * By default, any table passed to a method is copied into a new {@link java.util.Map} before the method is called.
+ * When an object implements this interface, tables are instead passed as a read-only {@link java.util.Map} which reads
+ * from the underlying Lua table on demand. This avoids copying large tables when only a few fields are needed.
+ *
+ * These views are live, and so reflect any changes made to the table after the method was called. They should not be
+ * used once the method has returned (for instance, from a task queued with
+ * {@link ILuaContext#issueMainThreadTask(ILuaTask)}). If you need to keep hold of a table, copy it into another map.
+ *
+ * @see ArgumentHelper#getTable(Object[], int)
+ */
+public interface ILazyTableArguments
+{
+}
@@ -74,8 +74,9 @@ public interface ILuaContext
      * Queue a task to be executed on the main server thread at the beginning of next tick, waiting for it to complete.
      * This should be used when you need to interact with the world in a thread-safe manner.
      *
-     * Note that the return values of your task are handled as events, meaning more complex objects such as maps or
-     * {@link ILuaObject} will not preserve their identities.
+     * The return values of your task are passed straight back to the caller, rather than being sent through the event
+     * queue. Any other events which arrive while waiting are held back until the task completes, rather than being
+     * discarded.
      *
      * @param task The task to execute on the main thread.
      * @return The objects returned by {@code task}.
@@ -87,6 +88,44 @@ public interface ILuaContext
     @Nullable
     Object[] executeMainThreadTask( @Nonnull ILuaTask task ) throws LuaException, InterruptedException;
 
+    /**
+     * Queue several tasks to be executed on the main server thread, waiting for all of them to complete.
+     *
+     * This is equivalent to calling {@link #executeMainThreadTask(ILuaTask)} for each task, except that the tasks are
+     * all queued at once. They are run in order, and will normally all complete within the same tick, rather than
+     * taking a tick each. As with individual tasks, they are subject to the computer's main thread time limit, so some
+     * may be deferred to later ticks.
+     *
+     * @param tasks The tasks to execute on the main thread.
+     * @return The objects returned by each task, in the same order as {@code tasks}.
+     * @throws LuaException         If the tasks could not be queued, or if any task threw an exception. Every task will
+     *                              still be run, and the first error is thrown once they have all completed.
+     * @throws InterruptedException If the user shuts down or reboots the computer the coroutine is suspended,
+     *                              InterruptedException will be thrown. This exception must not be caught or
+     *                              intercepted, or the computer will leak memory and end up in a broken state.
+     * @see #executeMainThreadTask(ILuaTask)
+     */
+    @Nonnull
+    default Object[][] executeMainThreadTasks( @Nonnull ILuaTask... tasks ) throws LuaException, InterruptedException
+    {
+        Object[][] results = new Object[tasks.length][];
+        LuaException error = null;
+        for( int i = 0; i < tasks.length; i++ )
+        {
+            try
+            {
+                results[i] = executeMainThreadTask( tasks[i] );
+            }
+            catch( LuaException e )
+            {
+                if( error == null ) error = e;
+            }
+        }
+
+        if( error != null ) throw error;
+        return results;
+    }
+
     /**
      * Queue a task to be executed on the main server thread at the beginning of next tick, but do not wait for it to
      * complete. This should be used when you need to interact with the world in a thread-safe manner but do not care
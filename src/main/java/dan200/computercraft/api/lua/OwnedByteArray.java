@@ -0,0 +1,82 @@
+/*
+ * This file is part of the public ComputerCraft API - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. This API may be redistributed unmodified and in full only.
+ * For help using the API, and posting your mods, visit the forums at computercraft.info.
+ */
+package dan200.computercraft.api.lua;
+
+import javax.annotation.Nonnull;
+import java.util.Objects;
+
+/**
+ * A region of a byte array which is handed over to Lua as a string, rather than being copied.
+ *
+ * Any {@code byte[]} returned from {@link ILuaObject#callMethod(ILuaContext, int, Object[])} (or queued as part of an
+ * event) is copied before being converted to a Lua string, as the caller may modify the array afterwards. Wrapping the
+ * array in this class instead transfers ownership of it to Lua, avoiding that copy. The array must not be modified
+ * after it has been returned.
+ *
+ * This may be used anywhere a {@code byte[]} could be, including inside tables.
+ */
+public final class OwnedByteArray
+{
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    private OwnedByteArray( byte[] bytes, int offset, int length )
+    {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Transfer ownership of an entire byte array.
+     *
+     * @param bytes The array to transfer. This must not be modified afterwards.
+     * @return The wrapped array.
+     */
+    @Nonnull
+    public static OwnedByteArray of( @Nonnull byte[] bytes )
+    {
+        Objects.requireNonNull( bytes, "bytes cannot be null" );
+        return new OwnedByteArray( bytes, 0, bytes.length );
+    }
+
+    /**
+     * Transfer ownership of part of a byte array. The rest of the array will be retained by the resulting string, so
+     * this should not be used when the region is much smaller than the array.
+     *
+     * @param bytes  The array to transfer. This must not be modified afterwards.
+     * @param offset The offset of the first byte to use.
+     * @param length The number of bytes to use.
+     * @return The wrapped array.
+     */
+    @Nonnull
+    public static OwnedByteArray of( @Nonnull byte[] bytes, int offset, int length )
+    {
+        Objects.requireNonNull( bytes, "bytes cannot be null" );
+        if( offset < 0 || length < 0 || offset > bytes.length - length )
+        {
+            throw new IndexOutOfBoundsException( "Region " + offset + "+" + length + " out of bounds for length " + bytes.length );
+        }
+        return new OwnedByteArray( bytes, offset, length );
+    }
+
+    @Nonnull
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    public int getLength()
+    {
+        return length;
+    }
+}
@@ -235,7 +235,8 @@ public interface ITurtleAccess
      * unchanged if called from a peripheral method.
      * @throws UnsupportedOperationException When attempting to execute a command on the client side.
      * @throws LuaException                  If the user presses CTRL+T to terminate the current program while {@code executeCommand()} is
-     *                                       waiting for an event, a "Terminated" exception will be thrown here.
+     *                                       waiting for an event, a "Terminated" exception will be thrown here. It is also
+     *                                       thrown if too many commands are already queued on this turtle.
      * @throws InterruptedException          If the user shuts down or reboots the computer while pullEvent() is waiting for an
      *                                       event, InterruptedException will be thrown. This exception must not be caught or
      *                                       intercepted, or the computer will leak memory and end up in a broken state.
@@ -32,4 +32,18 @@ public interface ITurtleCommand
      */
     @Nonnull
     TurtleCommandResult execute( @Nonnull ITurtleAccess turtle );
+
+    /**
+     * Whether this command only queries the turtle and the world around it, without changing either.
+     *
+     * Read-only commands may be executed while the turtle is still animating a previous command, and several
+     * consecutive ones may be executed within the same tick (if the computer's main thread budget allows). As such,
+     * they must not modify the world, the turtle's inventory, or play an animation.
+     *
+     * @return If this command is read-only.
+     */
+    default boolean isReadOnly()
+    {
+        return false;
+    }
 }
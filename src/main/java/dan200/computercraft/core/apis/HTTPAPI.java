@@ -6,6 +6,7 @@
 package dan200.computercraft.core.apis;
 
 import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILazyTableArguments;
 import dan200.computercraft.api.lua.ILuaAPI;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
@@ -25,7 +26,7 @@ import java.util.Map;
 import static dan200.computercraft.api.lua.ArgumentHelper.*;
 import static dan200.computercraft.core.apis.TableHelper.*;
 
-public class HTTPAPI implements ILuaAPI
+public class HTTPAPI implements ILuaAPI, ILazyTableArguments
 {
     private final IAPIEnvironment m_apiEnvironment;
 
@@ -8,6 +8,7 @@ package dan200.computercraft.core.apis;
 import dan200.computercraft.api.lua.ILuaAPI;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.tracking.TrackingField;
 import dan200.computercraft.shared.util.StringUtil;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
@@ -26,7 +27,12 @@ public class OSAPI implements ILuaAPI
 {
     private IAPIEnvironment m_apiEnvironment;
 
+    /**
+     * All pending alarms, by their ID. Alarms are also stored in {@link #m_alarmQueue}, ordered by the time they are due
+     * at. Cancelled alarms are removed from this map, and lazily dropped from the queue. Both are guarded by this map.
+     */
     private final Int2ObjectMap<Alarm> m_alarms = new Int2ObjectOpenHashMap<>();
+    private final PriorityQueue<Alarm> m_alarmQueue = new PriorityQueue<>();
     private int m_clock;
     private double m_time;
     private int m_day;
@@ -35,21 +41,27 @@ public class OSAPI implements ILuaAPI
 
     private static class Alarm implements Comparable<Alarm>
     {
+        final int m_id;
         final double m_time;
         final int m_day;
 
-        Alarm( double time, int day )
+        Alarm( int id, double time, int day )
         {
+            m_id = id;
             m_time = time;
             m_day = day;
         }
 
+        double getDue()
+        {
+            return m_day * 24.0 + m_time;
+        }
+
         @Override
         public int compareTo( @Nonnull Alarm o )
         {
-            double t = m_day * 24.0 + m_time;
-            double ot = m_day * 24.0 + m_time;
-            return Double.compare( t, ot );
+            int compare = Double.compare( getDue(), o.getDue() );
+            return compare != 0 ? compare : Integer.compare( m_id, o.m_id );
         }
     }
 
@@ -76,6 +88,7 @@ public class OSAPI implements ILuaAPI
         synchronized( m_alarms )
         {
             m_alarms.clear();
+            m_alarmQueue.clear();
         }
     }
 
@@ -95,17 +108,16 @@ public class OSAPI implements ILuaAPI
             if( time > previousTime || day > previousDay )
             {
                 double now = m_day * 24.0 + m_time;
-                Iterator<Map.Entry<Integer, Alarm>> it = m_alarms.entrySet().iterator();
-                while( it.hasNext() )
+                Alarm alarm;
+                while( (alarm = m_alarmQueue.peek()) != null && now >= alarm.getDue() )
                 {
-                    Map.Entry<Integer, Alarm> entry = it.next();
-                    Alarm alarm = entry.getValue();
-                    double t = alarm.m_day * 24.0 + alarm.m_time;
-                    if( now >= t )
-                    {
-                        queueLuaEvent( "alarm", new Object[] { entry.getKey() } );
-                        it.remove();
-                    }
+                    m_alarmQueue.remove();
+
+                    // Skip alarms which have been cancelled.
+                    if( m_alarms.get( alarm.m_id ) != alarm ) continue;
+                    m_alarms.remove( alarm.m_id );
+
+                    queueLuaEvent( "alarm", new Object[] { alarm.m_id } );
                 }
             }
 
@@ -120,6 +132,7 @@ public class OSAPI implements ILuaAPI
         synchronized( m_alarms )
         {
             m_alarms.clear();
+            m_alarmQueue.clear();
         }
     }
 
@@ -197,12 +210,19 @@ public class OSAPI implements ILuaAPI
                 {
                     throw new LuaException( "Number out of range" );
                 }
+                int id;
                 synchronized( m_alarms )
                 {
                     int day = time > m_time ? m_day : m_day + 1;
-                    m_alarms.put( m_nextAlarmToken, new Alarm( time, day ) );
-                    return new Object[] { m_nextAlarmToken++ };
+                    id = m_nextAlarmToken++;
+
+                    Alarm alarm = new Alarm( id, time, day );
+                    m_alarms.put( id, alarm );
+                    m_alarmQueue.add( alarm );
                 }
+
+                m_apiEnvironment.addTrackingChange( TrackingField.ALARMS_SET );
+                return new Object[] { id };
             }
             case 3: // shutdown
                 m_apiEnvironment.shutdown();
@@ -305,7 +325,12 @@ public class OSAPI implements ILuaAPI
                 int token = getInt( args, 0 );
                 synchronized( m_alarms )
                 {
-                    m_alarms.remove( token );
+                    // As with timers, avoid the queue filling up with cancelled alarms.
+                    if( m_alarms.remove( token ) != null && m_alarmQueue.size() > 16 && m_alarmQueue.size() > m_alarms.size() * 2 )
+                    {
+                        m_alarmQueue.clear();
+                        m_alarmQueue.addAll( m_alarms.values() );
+                    }
                 }
                 return null;
             }
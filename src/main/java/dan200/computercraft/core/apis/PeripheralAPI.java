@@ -7,11 +7,13 @@ package dan200.computercraft.core.apis;
 
 import dan200.computercraft.api.filesystem.IMount;
 import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.api.lua.ILazyTableArguments;
 import dan200.computercraft.api.lua.ILuaAPI;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.api.peripheral.IPeripheral;
 import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.core.lua.LuaTableView;
 import dan200.computercraft.core.tracking.TrackingField;
 
 import javax.annotation.Nonnull;
@@ -23,7 +25,7 @@ import java.util.Map;
 
 import static dan200.computercraft.api.lua.ArgumentHelper.getString;
 
-public class PeripheralAPI implements ILuaAPI, IAPIEnvironment.IPeripheralChangeListener
+public class PeripheralAPI implements ILuaAPI, ILazyTableArguments, IAPIEnvironment.IPeripheralChangeListener
 {
     private class PeripheralWrapper extends ComputerAccess
     {
@@ -110,6 +112,9 @@ public class PeripheralAPI implements ILuaAPI, IAPIEnvironment.IPeripheralChange
             if( method >= 0 )
             {
                 m_environment.addTrackingChange( TrackingField.PERIPHERAL_OPS );
+
+                // Peripherals may hold on to their arguments, so only pass table views to those which have opted in.
+                if( !(m_peripheral instanceof ILazyTableArguments) ) arguments = LuaTableView.materialise( arguments );
                 return m_peripheral.callMethod( this, context, method, arguments );
             }
             else
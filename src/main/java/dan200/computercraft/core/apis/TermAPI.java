@@ -5,6 +5,8 @@
  */
 package dan200.computercraft.core.apis;
 
+import dan200.computercraft.api.lua.ByteString;
+import dan200.computercraft.api.lua.IByteStringArguments;
 import dan200.computercraft.api.lua.ILuaAPI;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
@@ -18,7 +20,13 @@ import javax.annotation.Nonnull;
 
 import static dan200.computercraft.api.lua.ArgumentHelper.*;
 
-public class TermAPI implements ILuaAPI
+/**
+ * The {@code term} API.
+ *
+ * This accepts strings as {@link ByteString}s, so {@code write} and {@code blit} can copy bytes straight into the
+ * terminal without decoding them first.
+ */
+public class TermAPI implements ILuaAPI, IByteStringArguments
 {
     private final Terminal m_terminal;
     private final IComputerEnvironment m_environment;
@@ -106,7 +114,19 @@ public class TermAPI implements ILuaAPI
             case 0:
             {
                 // write
-                String text = args.length > 0 && args[0] != null ? args[0].toString() : "";
+                Object value = args.length > 0 ? args[0] : null;
+                if( value instanceof ByteString )
+                {
+                    ByteString text = (ByteString) value;
+                    synchronized( m_terminal )
+                    {
+                        m_terminal.write( text );
+                        m_terminal.setCursorPos( m_terminal.getCursorX() + text.length(), m_terminal.getCursorY() );
+                    }
+                    return null;
+                }
+
+                String text = value != null ? value.toString() : "";
                 synchronized( m_terminal )
                 {
                     m_terminal.write( text );
@@ -213,9 +233,9 @@ public class TermAPI implements ILuaAPI
             case 18:
             {
                 // blit
-                String text = getString( args, 0 );
-                String textColour = getString( args, 1 );
-                String backgroundColour = getString( args, 2 );
+                ByteString text = getByteString( args, 0 );
+                ByteString textColour = getByteString( args, 1 );
+                ByteString backgroundColour = getByteString( args, 2 );
                 if( textColour.length() != text.length() || backgroundColour.length() != text.length() )
                 {
                     throw new LuaException( "Arguments must be the same length" );
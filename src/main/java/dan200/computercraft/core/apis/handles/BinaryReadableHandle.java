@@ -8,6 +8,7 @@ package dan200.computercraft.core.apis.handles;
 import com.google.common.collect.ObjectArrays;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.OwnedByteArray;
 
 import javax.annotation.Nonnull;
 import java.io.ByteArrayOutputStream;
@@ -37,8 +38,8 @@ public class BinaryReadableHandle extends HandleGeneric
     public BinaryReadableHandle( ReadableByteChannel channel, Closeable closeable )
     {
         super( closeable );
-        m_reader = channel;
-        m_seekable = asSeekable( channel );
+        m_reader = ReadAheadChannel.shouldBuffer( channel ) ? new ReadAheadChannel( channel, BUFFER_SIZE ) : channel;
+        m_seekable = asSeekable( m_reader );
     }
 
     public BinaryReadableHandle( ReadableByteChannel channel )
@@ -80,7 +81,16 @@ public class BinaryReadableHandle extends HandleGeneric
 
                             int read = m_reader.read( buffer );
                             if( read < 0 ) return null;
-                            return new Object[] { read < count ? Arrays.copyOf( buffer.array(), read ) : buffer.array() };
+                            return new Object[] { wrap( buffer ) };
+                        }
+                        else if( m_seekable != null )
+                        {
+                            // If we know how much of the file is left, we can read it all into a single array.
+                            long remaining = m_seekable.size() - m_seekable.position();
+                            if( remaining <= 0 ) return null;
+
+                            ByteBuffer buffer = ByteBuffer.allocate( (int) Math.min( count, remaining ) );
+                            return readFully( buffer ) ? new Object[] { wrap( buffer ) } : null;
                         }
                         else
                         {
@@ -92,7 +102,7 @@ public class BinaryReadableHandle extends HandleGeneric
                             // If we failed to read "enough" here, let's just abort
                             if( read >= count || read < BUFFER_SIZE )
                             {
-                                return new Object[] { Arrays.copyOf( buffer.array(), read ) };
+                                return new Object[] { wrap( buffer ) };
                             }
 
                             // Build up an array of ByteBuffers. Hopefully this means we can perform less allocation
@@ -118,14 +128,13 @@ public class BinaryReadableHandle extends HandleGeneric
                                 System.arraycopy( part.array(), 0, bytes, pos, part.position() );
                                 pos += part.position();
                             }
-                            return new Object[] { bytes };
+                            return new Object[] { OwnedByteArray.of( bytes ) };
                         }
                     }
                     else
                     {
-                        single.clear();
-                        int b = m_reader.read( single );
-                        return b == -1 ? null : new Object[] { single.get( 0 ) & 0xFF };
+                        int b = readByte();
+                        return b == -1 ? null : new Object[] { b };
                     }
                 }
                 catch( IOException e )
@@ -136,11 +145,18 @@ public class BinaryReadableHandle extends HandleGeneric
                 checkOpen();
                 try
                 {
-                    int expected = 32;
                     if( m_seekable != null )
                     {
-                        expected = Math.max( expected, (int) (m_seekable.size() - m_seekable.position()) );
+                        long remaining = m_seekable.size() - m_seekable.position();
+                        if( remaining <= 0 ) return null;
+                        if( remaining <= Integer.MAX_VALUE )
+                        {
+                            ByteBuffer buffer = ByteBuffer.allocate( (int) remaining );
+                            return readFully( buffer ) ? new Object[] { wrap( buffer ) } : null;
+                        }
                     }
+
+                    int expected = 32;
                     ByteArrayOutputStream stream = new ByteArrayOutputStream( expected );
 
                     ByteBuffer buf = ByteBuffer.allocate( 8192 );
@@ -154,7 +170,7 @@ public class BinaryReadableHandle extends HandleGeneric
                         readAnything = true;
                         stream.write( buf.array(), 0, r );
                     }
-                    return readAnything ? new Object[] { stream.toByteArray() } : null;
+                    return readAnything ? new Object[] { OwnedByteArray.of( stream.toByteArray() ) } : null;
                 }
                 catch( IOException e )
                 {
@@ -171,19 +187,17 @@ public class BinaryReadableHandle extends HandleGeneric
                     boolean readAnything = false, readRc = false;
                     while( true )
                     {
-                        single.clear();
-                        int read = m_reader.read( single );
-                        if( read <= 0 )
+                        int chr = readByte();
+                        if( chr == -1 )
                         {
                             // Nothing else to read, and we saw no \n. Return the array. If we saw a \r, then add it
                             // back.
                             if( readRc ) stream.write( '\r' );
-                            return readAnything ? new Object[] { stream.toByteArray() } : null;
+                            return readAnything ? new Object[] { OwnedByteArray.of( stream.toByteArray() ) } : null;
                         }
 
                         readAnything = true;
 
-                        byte chr = single.get( 0 );
                         if( chr == '\n' )
                         {
                             if( withTrailing )
@@ -191,7 +205,7 @@ public class BinaryReadableHandle extends HandleGeneric
                                 if( readRc ) stream.write( '\r' );
                                 stream.write( chr );
                             }
-                            return new Object[] { stream.toByteArray() };
+                            return new Object[] { OwnedByteArray.of( stream.toByteArray() ) };
                         }
                         else
                         {
@@ -221,4 +235,51 @@ public class BinaryReadableHandle extends HandleGeneric
                 return null;
         }
     }
+
+    /**
+     * Read a single byte from the channel.
+     *
+     * @return The byte read, or {@code -1} if at the end of the channel.
+     * @throws IOException If the channel could not be read.
+     */
+    private int readByte() throws IOException
+    {
+        if( m_reader instanceof ReadAheadChannel ) return ((ReadAheadChannel) m_reader).read();
+
+        single.clear();
+        int read = m_reader.read( single );
+        return read <= 0 ? -1 : single.get( 0 ) & 0xFF;
+    }
+
+    /**
+     * Wrap the bytes which have been read into a buffer, to be returned to Lua.
+     *
+     * The buffer's array is only handed over if we filled it. Otherwise a short read into a large buffer would keep the
+     * whole array alive for as long as the resulting string, so we copy the bytes out instead.
+     *
+     * @param buffer The buffer which has been read into.
+     * @return The bytes read into this buffer.
+     */
+    private static OwnedByteArray wrap( ByteBuffer buffer )
+    {
+        byte[] array = buffer.array();
+        int length = buffer.position();
+        return OwnedByteArray.of( length == array.length ? array : Arrays.copyOf( array, length ) );
+    }
+
+    /**
+     * Read from the channel until the buffer is full or we reach the end of the channel.
+     *
+     * @param buffer The buffer to read into.
+     * @return Whether anything was read.
+     * @throws IOException If the channel could not be read.
+     */
+    private boolean readFully( ByteBuffer buffer ) throws IOException
+    {
+        while( buffer.hasRemaining() )
+        {
+            if( m_reader.read( buffer ) <= 0 ) break;
+        }
+        return buffer.position() > 0;
+    }
 }
@@ -13,6 +13,7 @@ import dan200.computercraft.shared.util.StringUtil;
 
 import javax.annotation.Nonnull;
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
@@ -84,7 +85,8 @@ public class BinaryWritableHandle extends HandleGeneric
                 checkOpen();
                 try
                 {
-                    // Technically this is not needed
+                    // Write any buffered data. Technically forcing it to disk is not needed.
+                    if( m_writer instanceof Flushable ) ((Flushable) m_writer).flush();
                     if( m_writer instanceof FileChannel ) ((FileChannel) m_writer).force( false );
 
                     return null;
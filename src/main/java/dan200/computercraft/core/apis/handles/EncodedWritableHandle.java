@@ -11,7 +11,9 @@ import dan200.computercraft.api.lua.LuaException;
 import javax.annotation.Nonnull;
 import java.io.BufferedWriter;
 import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.channels.Channels;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
@@ -113,6 +115,19 @@ public class EncodedWritableHandle extends HandleGeneric
         CharsetEncoder encoder = charset.newEncoder()
             .onMalformedInput( CodingErrorAction.REPLACE )
             .onUnmappableCharacter( CodingErrorAction.REPLACE );
-        return new BufferedWriter( Channels.newWriter( channel, encoder, -1 ) );
+        Writer writer = Channels.newWriter( channel, encoder, -1 );
+        if( !(channel instanceof Flushable) ) return new BufferedWriter( writer );
+
+        // If the channel has its own buffer, then make sure flushing the handle flushes that too.
+        Flushable flushable = (Flushable) channel;
+        return new BufferedWriter( writer )
+        {
+            @Override
+            public void flush() throws IOException
+            {
+                super.flush();
+                flushable.flush();
+            }
+        };
     }
 }
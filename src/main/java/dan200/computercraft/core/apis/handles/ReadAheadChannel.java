@@ -0,0 +1,187 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.apis.handles;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * A readable channel which reads ahead from another channel, so small reads do not each hit the underlying file.
+ *
+ * If the underlying channel is seekable, then so is this one. Seeking within the range which has already been read
+ * into the buffer does not touch the underlying channel at all. Otherwise, the buffer is discarded.
+ */
+public class ReadAheadChannel implements SeekableByteChannel
+{
+    private final ReadableByteChannel channel;
+    private final SeekableByteChannel seekable;
+
+    /**
+     * The read-ahead buffer. This is always in "read mode": the bytes between its position and limit have been read
+     * from the underlying channel, but not yet consumed.
+     */
+    private final ByteBuffer buffer;
+
+    public ReadAheadChannel( @Nonnull ReadableByteChannel channel, int size )
+    {
+        this.channel = channel;
+        seekable = channel instanceof SeekableByteChannel ? (SeekableByteChannel) channel : null;
+        buffer = ByteBuffer.allocate( size );
+        buffer.limit( 0 );
+    }
+
+    /**
+     * Determine whether a channel would benefit from being wrapped in a {@link ReadAheadChannel}.
+     *
+     * @param channel The channel to check.
+     * @return Whether this channel reads from somewhere other than memory.
+     */
+    public static boolean shouldBuffer( ReadableByteChannel channel )
+    {
+        return !(channel instanceof ArrayByteChannel) && !(channel instanceof ByteBufferChannel) && !(channel instanceof ReadAheadChannel);
+    }
+
+    /**
+     * Refill the buffer from the underlying channel. This should only be called when the buffer is empty.
+     *
+     * @return The number of bytes read, or {@code -1} if we're at the end of the channel.
+     * @throws IOException If the underlying channel could not be read.
+     */
+    private int fill() throws IOException
+    {
+        buffer.clear();
+        int read;
+        try
+        {
+            read = channel.read( buffer );
+        }
+        finally
+        {
+            buffer.flip();
+        }
+        return read;
+    }
+
+    /**
+     * Read a single byte.
+     *
+     * @return The byte read, from 0 to 255, or {@code -1} if we're at the end of the channel.
+     * @throws IOException If the underlying channel could not be read.
+     */
+    public int read() throws IOException
+    {
+        if( !buffer.hasRemaining() && fill() <= 0 ) return -1;
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read( ByteBuffer destination ) throws IOException
+    {
+        // We keep reading until the destination is full, as the caller expects a read to return as much as the
+        // underlying channel would have done.
+        int total = 0;
+        while( destination.hasRemaining() )
+        {
+            if( !buffer.hasRemaining() )
+            {
+                int read;
+                if( destination.remaining() >= buffer.capacity() )
+                {
+                    // If this read would empty the buffer anyway, just skip it. We clear the buffer so that its
+                    // (now stale) contents are not used when seeking.
+                    buffer.limit( 0 );
+                    read = channel.read( destination );
+                    if( read > 0 )
+                    {
+                        total += read;
+                        continue;
+                    }
+                }
+                else
+                {
+                    read = fill();
+                }
+
+                if( read <= 0 ) return total > 0 ? total : read;
+            }
+
+            int count = Math.min( buffer.remaining(), destination.remaining() );
+            int limit = buffer.limit();
+            buffer.limit( buffer.position() + count );
+            destination.put( buffer );
+            buffer.limit( limit );
+            total += count;
+        }
+
+        return total;
+    }
+
+    @Override
+    public int write( ByteBuffer src )
+    {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException
+    {
+        return getSeekable().position() - buffer.remaining();
+    }
+
+    @Override
+    public SeekableByteChannel position( long newPosition ) throws IOException
+    {
+        SeekableByteChannel seekable = getSeekable();
+
+        // If the new position is within the buffer, just move within it.
+        long end = seekable.position(), start = end - buffer.limit();
+        if( newPosition >= start && newPosition <= end )
+        {
+            buffer.position( (int) (newPosition - start) );
+        }
+        else
+        {
+            seekable.position( newPosition );
+            buffer.limit( 0 );
+        }
+
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException
+    {
+        return getSeekable().size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate( long size )
+    {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen()
+    {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    private SeekableByteChannel getSeekable()
+    {
+        if( seekable == null ) throw new UnsupportedOperationException( "Channel is not seekable" );
+        return seekable;
+    }
+}
@@ -5,6 +5,7 @@
  */
 package dan200.computercraft.core.apis.http.websocket;
 
+import dan200.computercraft.api.lua.OwnedByteArray;
 import dan200.computercraft.core.apis.http.HTTPRequestException;
 import dan200.computercraft.core.apis.http.NetworkUtils;
 import dan200.computercraft.core.tracking.TrackingField;
@@ -75,7 +76,7 @@ public class WebsocketHandler extends SimpleChannelInboundHandler<Object>
             byte[] converted = NetworkUtils.toBytes( frame.content() );
 
             websocket.environment().addTrackingChange( TrackingField.WEBSOCKET_INCOMING, converted.length );
-            websocket.environment().queueEvent( MESSAGE_EVENT, new Object[] { websocket.address(), converted, true } );
+            websocket.environment().queueEvent( MESSAGE_EVENT, new Object[] { websocket.address(), OwnedByteArray.of( converted ), true } );
         }
         else if( frame instanceof CloseWebSocketFrame )
         {
@@ -91,6 +91,16 @@ public class Computer
         return executor.isOn();
     }
 
+    /**
+     * Get the number of this computer's coroutines which currently hold a thread.
+     *
+     * @return The number of running coroutines.
+     */
+    public int getCoroutineCount()
+    {
+        return executor.getCoroutineCount();
+    }
+
     public void turnOn()
     {
         startRequested = true;
@@ -116,6 +126,39 @@ public class Computer
         executor.queueEvent( event, args );
     }
 
+    /**
+     * Mark that something is about to wait on a main thread task. Until the task completes, events are held back rather
+     * than being delivered (and discarded) while waiting.
+     *
+     * @param id The ID of the task.
+     * @see ComputerExecutor#queueTaskStarted(long)
+     */
+    public void queueTaskStarted( long id )
+    {
+        executor.queueTaskStarted( id );
+    }
+
+    /**
+     * Mark that a task passed to {@link #queueTaskStarted(long)} could not be queued.
+     *
+     * @param id The ID of the task.
+     */
+    public void queueTaskCancelled( long id )
+    {
+        executor.queueTaskCancelled( id );
+    }
+
+    /**
+     * Resume whatever is waiting on a main thread task, once it has finished.
+     *
+     * @param id The ID of the completed task.
+     * @see ComputerExecutor#queueTaskComplete(long)
+     */
+    public void queueTaskComplete( long id )
+    {
+        executor.queueTaskComplete( id );
+    }
+
     /**
      * Queue a task to be run on the main thread, using {@link MainThread}.
      *
@@ -189,9 +232,7 @@ public class Computer
         if( internalEnvironment.updateOutput() ) externalOutputChanged.set( true );
 
         // Set output changed if the terminal has changed from blinking to not
-        boolean blinking = m_terminal.getCursorBlink() &&
-            m_terminal.getCursorX() >= 0 && m_terminal.getCursorX() < m_terminal.getWidth() &&
-            m_terminal.getCursorY() >= 0 && m_terminal.getCursorY() < m_terminal.getHeight();
+        boolean blinking = isTerminalBlinking();
         if( blinking != m_blinking )
         {
             m_blinking = blinking;
@@ -199,6 +240,29 @@ public class Computer
         }
     }
 
+    /**
+     * Determine whether this computer is dormant: it is off, and calling {@link #tick()} would not change any of its
+     * state. Dormant computers do not need to be ticked, though it is harmless to do so.
+     *
+     * This should only be called on the main thread.
+     *
+     * @return Whether this computer is dormant.
+     */
+    public boolean isDormant()
+    {
+        return !startRequested && (m_ticksSinceStart < 0 || m_ticksSinceStart > START_DELAY)
+            && !executor.isOn() && !externalOutputChanged.get()
+            && isTerminalBlinking() == m_blinking
+            && internalEnvironment.isDormant();
+    }
+
+    private boolean isTerminalBlinking()
+    {
+        return m_terminal.getCursorBlink() &&
+            m_terminal.getCursorX() >= 0 && m_terminal.getCursorX() < m_terminal.getWidth() &&
+            m_terminal.getCursorY() >= 0 && m_terminal.getCursorY() < m_terminal.getHeight();
+    }
+
     void markChanged()
     {
         externalOutputChanged.set( true );
@@ -20,6 +20,8 @@ import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.shared.util.Colour;
 import dan200.computercraft.shared.util.IoUtil;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -28,6 +30,7 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -58,6 +61,8 @@ final class ComputerExecutor
     private static IMount romMount;
     private static final Object romMountLock = new Object();
 
+    private static final AtomicLong nextQueueOrder = new AtomicLong();
+
     private final Computer computer;
     private final List<ILuaAPI> apis = new ArrayList<>();
     final TimeoutState timeout = new TimeoutState();
@@ -116,6 +121,14 @@ final class ComputerExecutor
      */
     long vRuntimeStart;
 
+    /**
+     * A unique id for this executor, used to order executors with the same {@link #virtualRuntime}. Unlike
+     * {@link Object#hashCode()}, this is never shared with another executor, so executors are never considered equal.
+     *
+     * @see ComputerQueue#ORDER
+     */
+    final long queueOrder = nextQueueOrder.getAndIncrement();
+
     /**
      * The command that {@link #work()} should execute on the computer thread.
      *
@@ -134,6 +147,29 @@ final class ComputerExecutor
      */
     private final Queue<Event> eventQueue = new ArrayDeque<>( 4 );
 
+    /**
+     * The IDs of main thread tasks which have finished, and whose callers should be resumed.
+     *
+     * These are kept separate from {@link #eventQueue}, so completions are never dropped when the event queue is
+     * full, and are delivered before any pending events. This is bounded by the size of the {@link MainThread} queue.
+     *
+     * @see #queueTaskComplete(long)
+     */
+    private final Queue<Long> completedTasks = new ArrayDeque<>( 4 );
+
+    /**
+     * The IDs of main thread tasks which are being waited on, but have not yet completed.
+     *
+     * While this is non-empty, we hold back any events in {@link #eventQueue}. Otherwise the Lua machine would discard
+     * them, as the caller is waiting on a {@code task_complete} event. This is only ever for a tick or so.
+     *
+     * This is cleared when the computer is turned on or off. Task IDs are never reused, so a task started before a
+     * reboot which completes afterwards is not mistaken for one of the new session's tasks.
+     *
+     * @see #queueTaskStarted(long)
+     */
+    private final LongSet pendingTasks = new LongOpenHashSet();
+
     /**
      * Whether we interrupted an event and so should resume it instead of executing another task.
      *
@@ -190,6 +226,12 @@ final class ComputerExecutor
         return isOn;
     }
 
+    int getCoroutineCount()
+    {
+        ILuaMachine machine = this.machine;
+        return machine == null ? 0 : machine.getCoroutineCount();
+    }
+
     FileSystem getFileSystem()
     {
         return fileSystem;
@@ -285,6 +327,60 @@ final class ComputerExecutor
             if( closed || command != null || eventQueue.size() >= QUEUE_LIMIT ) return;
 
             eventQueue.offer( new Event( event, args ) );
+
+            // If we're waiting on a task, this will be picked up once it completes.
+            if( pendingTasks.isEmpty() ) enqueue();
+        }
+    }
+
+    /**
+     * Mark that a main thread task is about to be queued, which will be completed with
+     * {@link #queueTaskComplete(long)} or {@link #queueTaskCancelled(long)}.
+     *
+     * @param id The ID of the task.
+     */
+    void queueTaskStarted( long id )
+    {
+        synchronized( queueLock )
+        {
+            pendingTasks.add( id );
+        }
+    }
+
+    /**
+     * Mark that a main thread task could not be queued after all.
+     *
+     * @param id The ID of the task.
+     */
+    void queueTaskCancelled( long id )
+    {
+        synchronized( queueLock )
+        {
+            if( !pendingTasks.remove( id ) ) return;
+
+            // We may have been holding back events for this task, so make sure we run them now.
+            if( pendingTasks.isEmpty() && isOn && !eventQueue.isEmpty() ) enqueue();
+        }
+    }
+
+    /**
+     * Resume a caller of {@link dan200.computercraft.api.lua.ILuaContext#executeMainThreadTask} once its task has
+     * finished. This delivers a {@code task_complete} event containing just the task's ID, bypassing the usual event
+     * queue and its limit.
+     *
+     * @param id The ID of the completed task.
+     */
+    void queueTaskComplete( long id )
+    {
+        if( !isOn ) return;
+
+        synchronized( queueLock )
+        {
+            // Ignore tasks we are not waiting on, such as those started before the computer rebooted.
+            if( !pendingTasks.remove( id ) ) return;
+            if( closed || command != null ) return;
+
+            completedTasks.offer( id );
             enqueue();
         }
     }
@@ -425,6 +521,8 @@ final class ComputerExecutor
             synchronized( queueLock )
             {
                 eventQueue.clear();
+                completedTasks.clear();
+                pendingTasks.clear();
             }
 
             // Init filesystem
@@ -468,6 +566,8 @@ final class ComputerExecutor
             synchronized( queueLock )
             {
                 eventQueue.clear();
+                completedTasks.clear();
+                pendingTasks.clear();
             }
 
             // Shutdown Lua machine
@@ -528,7 +628,7 @@ final class ComputerExecutor
 
         synchronized( queueLock )
         {
-            if( eventQueue.isEmpty() && command == null ) return onComputerQueue = false;
+            if( !hasWork() ) return onComputerQueue = false;
             return true;
         }
     }
@@ -556,6 +656,7 @@ final class ComputerExecutor
 
         StateCommand command;
         Event event = null;
+        Long completedTask = null;
         synchronized( queueLock )
         {
             command = this.command;
@@ -569,10 +670,14 @@ final class ComputerExecutor
                     // We're not on and had no command, but we had work queued. This should never happen, so clear
                     // the event queue just in case.
                     eventQueue.clear();
+                    completedTasks.clear();
                     return;
                 }
 
-                event = eventQueue.poll();
+                // Resume anything waiting on a main thread task before handling other events, and don't handle
+                // other events at all while tasks are outstanding.
+                completedTask = completedTasks.poll();
+                if( completedTask == null && pendingTasks.isEmpty() ) event = eventQueue.poll();
             }
         }
 
@@ -607,12 +712,26 @@ final class ComputerExecutor
                     break;
             }
         }
+        else if( completedTask != null )
+        {
+            resumeMachine( "task_complete", new Object[] { completedTask } );
+        }
         else if( event != null )
         {
             resumeMachine( event.name, event.args );
         }
     }
 
+    /**
+     * Determine whether {@link #work()} has anything to do. This should be called with {@link #queueLock} held.
+     *
+     * @return Whether we have a command, completed task or (deliverable) event to process.
+     */
+    private boolean hasWork()
+    {
+        return command != null || !completedTasks.isEmpty() || (pendingTasks.isEmpty() && !eventQueue.isEmpty());
+    }
+
     private void displayFailure( String message, String extra )
     {
         Terminal terminal = computer.getTerminal();
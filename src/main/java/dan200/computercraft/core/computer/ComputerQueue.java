@@ -0,0 +1,117 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.ComputerCraft;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.function.Predicate;
+
+/**
+ * The queue of {@link ComputerExecutor}s waiting to be run by {@link ComputerThread}'s runners.
+ *
+ * Implementations are responsible for maintaining each executor's {@link ComputerExecutor#virtualRuntime}, and should
+ * hand out the executor with the lowest virtual runtime (or as close to it as is practical).
+ *
+ * Each runner is identified by its index within {@link ComputerThread}. This will be less than the current number of
+ * runners, unless the queue has been {@link #resize(int) resized} since the runner last took work.
+ *
+ * @see GlobalComputerQueue
+ * @see StealingComputerQueue
+ */
+interface ComputerQueue
+{
+    /**
+     * Orders executors by their virtual runtime, falling back to their {@link ComputerExecutor#queueOrder} in order to
+     * be consistent. This must never consider two executors equal, as the queues would then discard one of them.
+     */
+    Comparator<ComputerExecutor> ORDER = ( a, b ) -> {
+        if( a == b ) return 0; // Should never happen, but let's be consistent here
+
+        long at = a.virtualRuntime, bt = b.virtualRuntime;
+        if( at == bt ) return Long.compare( a.queueOrder, b.queueOrder );
+        return at < bt ? -1 : 1;
+    };
+
+    /**
+     * Add an executor which is not currently on the queue, adjusting its virtual runtime relative to the executors
+     * already present.
+     *
+     * @param executor The executor to add.
+     * @see ComputerThread#queue(ComputerExecutor)
+     */
+    void enqueue( @Nonnull ComputerExecutor executor );
+
+    /**
+     * Wait for an executor to become available, and remove it from the queue.
+     *
+     * @param runner The index of the runner which will execute this task.
+     * @return The executor to run, or {@code null} if this runner was removed by {@link #resize(int)} while waiting.
+     * @throws InterruptedException If the runner was interrupted while waiting.
+     */
+    @Nullable
+    ComputerExecutor take( int runner ) throws InterruptedException;
+
+    /**
+     * Update the virtual runtime of an executor which has finished executing, and requeue it if it has more work to do.
+     *
+     * Note, the runner may have been removed by {@link #resize(int)} while executing, and so its index may be out of
+     * range.
+     *
+     * @param runner   The index of the runner which executed this task.
+     * @param executor The executor which has finished executing.
+     */
+    void afterWork( int runner, @Nonnull ComputerExecutor executor );
+
+    /**
+     * Get the number of executors waiting to run.
+     *
+     * @return The number of queued executors.
+     */
+    int size();
+
+    /**
+     * Remove all executors from this queue.
+     */
+    void clear();
+
+    /**
+     * Change the number of runners pulling from this queue.
+     *
+     * Any runners waiting in {@link #take(int)} whose index is no longer in range will be woken up, and return
+     * {@code null}. Any executors which were queued for those runners will be moved to the remaining ones.
+     *
+     * @param runners The new number of runners. This must be at least 1.
+     */
+    void resize( int runners );
+
+    /**
+     * Construct the queue implementation selected by the config.
+     *
+     * @param runners The number of runners which will pull from this queue.
+     * @return The constructed queue.
+     */
+    static ComputerQueue create( int runners )
+    {
+        return create( runners, ComputerExecutor::afterWork, ComputerCraft.computer_work_stealing );
+    }
+
+    /**
+     * Construct a queue.
+     *
+     * @param runners     The number of runners which will pull from this queue.
+     * @param hasMoreWork Called after an executor has finished executing, to determine if it should be requeued. This
+     *                    is normally {@link ComputerExecutor#afterWork()}.
+     * @param stealing    Whether to use the work-stealing implementation.
+     * @return The constructed queue.
+     */
+    static ComputerQueue create( int runners, Predicate<ComputerExecutor> hasMoreWork, boolean stealing )
+    {
+        return stealing ? new StealingComputerQueue( runners, hasMoreWork ) : new GlobalComputerQueue( runners, hasMoreWork );
+    }
+}
@@ -9,14 +9,14 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.shared.util.ThreadUtils;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
-import java.util.TreeSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.LockSupport;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static dan200.computercraft.core.computer.TimeoutState.ABORT_TIMEOUT;
 import static dan200.computercraft.core.computer.TimeoutState.TIMEOUT;
@@ -43,6 +43,13 @@ import static dan200.computercraft.core.computer.TimeoutState.TIMEOUT;
  * In reality, it's unlikely that more than a few computers are waiting to execute at once, so this will not have much
  * effect unless you have a computer hogging execution time. However, it is pretty effective in those situations.
  *
+ * The number of runners is adjusted at runtime, between {@link ComputerCraft#computer_threads} and
+ * {@link ComputerCraft#maxComputerThreads}. See {@link Monitor#checkSize(TaskRunner[])} for how this is decided.
+ *
+ * The queue itself is managed by a {@link ComputerQueue}. By default this is a single queue shared by all runners
+ * ({@link GlobalComputerQueue}), though one may opt into per-runner queues with work stealing
+ * ({@link StealingComputerQueue}) instead.
+ *
  * @see TimeoutState For how hard timeouts are handled.
  * @see ComputerExecutor For how computers actually do execution.
  */
@@ -76,6 +83,24 @@ public final class ComputerThread
      */
     private static final long LATENCY_MAX_TASKS = DEFAULT_LATENCY / DEFAULT_MIN_PERIOD;
 
+    /**
+     * The number of times the monitor should wake up before considering whether to resize the thread pool.
+     *
+     * @see Monitor#checkSize(TaskRunner[])
+     */
+    private static final int RESIZE_SAMPLES = 10;
+
+    /**
+     * The minimum fraction of their period computers must use, on average, before we consider adding another thread.
+     * If computers are finishing well within their period, then adding more threads is unlikely to help.
+     */
+    private static final double GROW_UTILISATION = 0.5;
+
+    /**
+     * The average queue length below which we consider removing a thread.
+     */
+    private static final double SHRINK_QUEUE_LENGTH = 0.1;
+
     /**
      * Lock used for modifications to the array of current threads.
      */
@@ -94,30 +119,30 @@ public final class ComputerThread
     /**
      * The array of current runners, and their owning threads.
      */
-    private static TaskRunner[] runners;
+    private static volatile TaskRunner[] runners;
 
-    private static long latency;
-    private static long minPeriod;
-
-    private static final ReentrantLock computerLock = new ReentrantLock();
+    /**
+     * Runners which have been removed by {@link #resize(int)}, but whose thread has not yet exited. These may still be
+     * executing a task, and so must be observed by the {@link Monitor} until they finish.
+     */
+    private static final List<TaskRunner> retiredRunners = new CopyOnWriteArrayList<>();
 
-    private static final Condition hasWork = computerLock.newCondition();
+    private static volatile long latency;
+    private static volatile long minPeriod;
 
     /**
-     * Active queues to execute.
+     * The total time computers have executed for, and the total period they were allotted, since we last considered
+     * resizing the thread pool.
+     *
+     * @see Monitor#checkSize(TaskRunner[])
      */
-    private static final TreeSet<ComputerExecutor> computerQueue = new TreeSet<>( ( a, b ) -> {
-        if( a == b ) return 0; // Should never happen, but let's be consistent here
-
-        long at = a.virtualRuntime, bt = b.virtualRuntime;
-        if( at == bt ) return Integer.compare( a.hashCode(), b.hashCode() );
-        return at < bt ? -1 : 1;
-    } );
+    private static final LongAdder usedTime = new LongAdder();
+    private static final LongAdder allottedTime = new LongAdder();
 
     /**
-     * The minimum {@link ComputerExecutor#virtualRuntime} time on the tree.
+     * The queue of computers waiting to execute.
      */
-    private static long minimumVirtualRuntime = 0;
+    private static volatile ComputerQueue computerQueue;
 
     private static final ThreadFactory monitorFactory = ThreadUtils.factory( "Computer-Monitor" );
     private static final ThreadFactory runnerFactory = ThreadUtils.factory( "Computer-Runner" );
@@ -135,16 +160,12 @@ public final class ComputerThread
 
             if( runners == null )
             {
-                // TODO: Change the runners length on config reloads
-                runners = new TaskRunner[ComputerCraft.computer_threads];
-
-                // latency and minPeriod are scaled by 1 + floor(log2(threads)). We can afford to execute tasks for
-                // longer when executing on more than one thread.
-                long factor = 64 - Long.numberOfLeadingZeros( runners.length );
-                latency = DEFAULT_LATENCY * factor;
-                minPeriod = DEFAULT_MIN_PERIOD * factor;
+                runners = new TaskRunner[minThreads()];
+                updatePeriods( runners.length );
+                computerQueue = ComputerQueue.create( runners.length );
             }
 
+            TaskRunner[] runners = ComputerThread.runners;
             for( int i = 0; i < runners.length; i++ )
             {
                 TaskRunner runner = runners[i];
@@ -153,7 +174,7 @@ public final class ComputerThread
                     // Mark the old runner as dead, just in case.
                     if( runner != null ) runner.running = false;
                     // And start a new runner
-                    runnerFactory.newThread( runners[i] = new TaskRunner() ).start();
+                    runnerFactory.newThread( runners[i] = new TaskRunner( i ) ).start();
                 }
             }
 
@@ -162,126 +183,131 @@ public final class ComputerThread
     }
 
     /**
-     * Attempt to stop the computer thread. This interrupts each runner, and clears the task queue.
+     * Change the number of runners. New runners are started immediately, while removed runners will finish their
+     * current task and then exit. Until then, the {@link Monitor} will continue to time out their tasks.
+     *
+     * @param size The new number of runners.
      */
-    public static void stop()
+    static void resize( int size )
     {
         synchronized( threadLock )
         {
-            running = false;
-            if( runners != null )
+            TaskRunner[] oldRunners = runners;
+            if( !running || oldRunners == null || oldRunners.length == size ) return;
+
+            // Stop any removed runners. We must do this before resizing the queue, as that will wake them up.
+            for( int i = size; i < oldRunners.length; i++ )
             {
-                for( TaskRunner runner : runners )
-                {
-                    if( runner == null ) continue;
+                TaskRunner runner = oldRunners[i];
+                if( runner == null ) continue;
 
-                    runner.running = false;
-                    if( runner.owner != null ) runner.owner.interrupt();
-                }
+                runner.running = false;
+                retiredRunners.add( runner );
             }
-        }
 
-        computerLock.lock();
-        try
-        {
-            computerQueue.clear();
-        }
-        finally
-        {
-            computerLock.unlock();
+            TaskRunner[] newRunners = Arrays.copyOf( oldRunners, size );
+            computerQueue.resize( size );
+            updatePeriods( size );
+
+            for( int i = oldRunners.length; i < size; i++ )
+            {
+                runnerFactory.newThread( newRunners[i] = new TaskRunner( i ) ).start();
+            }
+
+            runners = newRunners;
+
+            ComputerCraft.log.info( "Resized computer thread pool from {} to {} threads.", oldRunners.length, size );
         }
     }
 
     /**
-     * Mark a computer as having work, enqueuing it on the thread.
+     * Update {@link #latency} and {@link #minPeriod} for a given number of threads.
      *
-     * You must be holding {@link ComputerExecutor}'s {@code queueLock} when calling this method - it should only
-     * be called from {@code enqueue}.
+     * These are scaled by 1 + floor(log2(threads)). We can afford to execute tasks for longer when executing on more
+     * than one thread.
      *
-     * @param executor The computer to execute work on.
+     * @param threads The number of runner threads.
      */
-    static void queue( @Nonnull ComputerExecutor executor )
+    private static void updatePeriods( int threads )
     {
-        computerLock.lock();
-        try
-        {
-            if( executor.onComputerQueue ) throw new IllegalStateException( "Cannot queue already queued executor" );
-            executor.onComputerQueue = true;
-
-            updateRuntimes( null );
-
-            // We're not currently on the queue, so update its current execution time to
-            // ensure its at least as high as the minimum.
-            long newRuntime = minimumVirtualRuntime;
-
-            if( executor.virtualRuntime == 0 )
-            {
-                // Slow down new computers a little bit.
-                newRuntime += scaledPeriod();
-            }
-            else
-            {
-                // Give a small boost to computers which have slept a little.
-                newRuntime -= latency / 2;
-            }
-
-            executor.virtualRuntime = Math.max( newRuntime, executor.virtualRuntime );
+        long factor = 64 - Long.numberOfLeadingZeros( threads );
+        latency = DEFAULT_LATENCY * factor;
+        minPeriod = DEFAULT_MIN_PERIOD * factor;
+    }
 
-            // Add to the queue, and signal the workers.
-            computerQueue.add( executor );
-            hasWork.signal();
-        }
-        finally
-        {
-            computerLock.unlock();
-        }
+    private static int minThreads()
+    {
+        return Math.max( 1, ComputerCraft.computer_threads );
     }
 
+    private static int maxThreads()
+    {
+        return Math.max( minThreads(), ComputerCraft.maxComputerThreads );
+    }
 
     /**
-     * Update the {@link ComputerExecutor#virtualRuntime}s of all running tasks, and then update the
-     * {@link #minimumVirtualRuntime} based on the current tasks.
-     *
-     * This is called before queueing tasks, to ensure that {@link #minimumVirtualRuntime} is up-to-date.
+     * Get the number of threads computers are currently being run on.
      *
-     * @param current The machine which we updating runtimes from.
+     * @return The current number of runner threads.
      */
-    private static void updateRuntimes( @Nullable ComputerExecutor current )
+    public static int getThreadCount()
     {
-        long minRuntime = Long.MAX_VALUE;
+        TaskRunner[] runners = ComputerThread.runners;
+        return runners == null ? 0 : runners.length;
+    }
 
-        // If we've a task on the queue, use that as our base time.
-        if( !computerQueue.isEmpty() ) minRuntime = computerQueue.first().virtualRuntime;
+    /**
+     * Get the number of computers currently waiting to execute.
+     *
+     * @return The current queue length.
+     */
+    public static int getQueueLength()
+    {
+        ComputerQueue queue = computerQueue;
+        return queue == null ? 0 : queue.size();
+    }
 
-        // Update all the currently executing tasks
-        long now = System.nanoTime();
-        int tasks = 1 + computerQueue.size();
-        TaskRunner[] currentRunners = runners;
-        if( currentRunners != null )
+    /**
+     * Attempt to stop the computer thread. This interrupts each runner, and clears the task queue.
+     */
+    public static void stop()
+    {
+        synchronized( threadLock )
         {
-            for( TaskRunner runner : currentRunners )
+            running = false;
+            if( runners != null )
             {
-                if( runner == null ) continue;
-                ComputerExecutor executor = runner.currentExecutor.get();
-                if( executor == null ) continue;
+                for( TaskRunner runner : runners )
+                {
+                    if( runner == null ) continue;
 
-                // We do two things here: first we update the task's virtual runtime based on when we
-                // last checked, and then we check the minimum.
-                minRuntime = Math.min( minRuntime, executor.virtualRuntime += (now - executor.vRuntimeStart) / tasks );
-                executor.vRuntimeStart = now;
+                    runner.running = false;
+                    if( runner.owner != null ) runner.owner.interrupt();
+                }
             }
-        }
 
-        // And update the most recently executed one (if set).
-        if( current != null )
-        {
-            minRuntime = Math.min( minRuntime, current.virtualRuntime += (now - current.vRuntimeStart) / tasks );
+            for( TaskRunner runner : retiredRunners )
+            {
+                if( runner.owner != null ) runner.owner.interrupt();
+            }
+            retiredRunners.clear();
         }
 
-        if( minRuntime > minimumVirtualRuntime && minRuntime < Long.MAX_VALUE )
-        {
-            minimumVirtualRuntime = minRuntime;
-        }
+        ComputerQueue queue = computerQueue;
+        if( queue != null ) queue.clear();
+    }
+
+    /**
+     * Mark a computer as having work, enqueuing it on the thread.
+     *
+     * You must be holding {@link ComputerExecutor}'s {@code queueLock} when calling this method - it should only
+     * be called from {@code enqueue}.
+     *
+     * @param executor The computer to execute work on.
+     */
+    static void queue( @Nonnull ComputerExecutor executor )
+    {
+        computerQueue.enqueue( executor );
     }
 
     /**
@@ -303,22 +329,13 @@ public final class ComputerThread
             );
         }
 
-        computerLock.lock();
-        try
-        {
-            updateRuntimes( executor );
+        // Keep track of how much of its period this computer used.
+        TimeoutState timeout = executor.timeout;
+        long period = timeout.nanoPeriod();
+        usedTime.add( Math.min( timeout.nanoCurrent(), period ) );
+        allottedTime.add( period );
 
-            // If we've no more tasks, just return.
-            if( !executor.afterWork() ) return;
-
-            // Otherwise, add to the queue, and signal any waiting workers.
-            computerQueue.add( executor );
-            hasWork.signal();
-        }
-        finally
-        {
-            computerLock.unlock();
-        }
+        computerQueue.afterWork( runner.index, executor );
     }
 
     /**
@@ -330,12 +347,35 @@ public final class ComputerThread
      * @see #LATENCY_MAX_TASKS
      */
     static long scaledPeriod()
+    {
+        return scaledPeriod( computerQueue.size() );
+    }
+
+    /**
+     * The scaled period for a single task, given a specific number of queued tasks.
+     *
+     * @param queued The number of tasks currently waiting to execute.
+     * @return The scaled period for the task
+     * @see #scaledPeriod()
+     */
+    static long scaledPeriod( int queued )
     {
         // +1 to include the current task
-        int count = 1 + computerQueue.size();
+        int count = 1 + queued;
         return count < LATENCY_MAX_TASKS ? latency / count : minPeriod;
     }
 
+    /**
+     * The target latency between executing two tasks on a single machine, scaled by the number of threads.
+     *
+     * @return The current latency.
+     * @see #DEFAULT_LATENCY
+     */
+    static long latency()
+    {
+        return latency;
+    }
+
     /**
      * Determine if the thread has computers queued up.
      *
@@ -343,17 +383,23 @@ public final class ComputerThread
      */
     static boolean hasPendingWork()
     {
-        return !computerQueue.isEmpty();
+        return computerQueue.size() > 0;
     }
 
     /**
-     * Observes all currently active {@link TaskRunner}s and terminates their tasks once they have exceeded the hard
-     * abort limit.
+     * Observes all currently active {@link TaskRunner}s (and any removed ones which are still finishing a task) and
+     * terminates their tasks once they have exceeded the hard abort limit.
+     *
+     * This is also responsible for growing and shrinking the number of runners, see {@link #checkSize(TaskRunner[])}.
      *
      * @see TimeoutState
      */
     private static final class Monitor implements Runnable
     {
+        private int samples;
+        private long queuedSamples;
+        private long busySamples;
+
         @Override
         public void run()
         {
@@ -378,50 +424,44 @@ public final class ComputerThread
                                 ComputerCraft.log.warn( "Previous runner ({}) has crashed, restarting!",
                                     runner != null && runner.owner != null ? runner.owner.getName() : runner );
                                 if( runner != null ) runner.running = false;
-                                runnerFactory.newThread( runners[i] = new TaskRunner() ).start();
+                                synchronized( threadLock )
+                                {
+                                    if( running && runners == currentRunners && currentRunners[i] == runner )
+                                    {
+                                        runnerFactory.newThread( currentRunners[i] = new TaskRunner( i ) ).start();
+                                    }
+                                }
+                                continue;
                             }
 
-                            // If the runner has no work, skip
-                            ComputerExecutor executor = runner.currentExecutor.get();
-                            if( executor == null ) continue;
-
-                            // If we're still within normal execution times (TIMEOUT) or soft abort (ABORT_TIMEOUT),
-                            // then we can let the Lua machine do its work.
-                            long afterStart = executor.timeout.nanoCumulative();
-                            long afterHardAbort = afterStart - TIMEOUT - ABORT_TIMEOUT;
-                            if( afterHardAbort < 0 ) continue;
-
-                            // Set the hard abort flag.
-                            executor.timeout.hardAbort();
-                            executor.abort();
-
-                            if( afterHardAbort >= ABORT_TIMEOUT )
+                            if( checkTimeout( runner ) )
                             {
-                                // If we've hard aborted but we're still not dead, dump the stack trace and interrupt
-                                // the task.
-                                timeoutTask( executor, runner.owner, afterStart );
-                                runner.owner.interrupt();
-                            }
-                            else if( afterHardAbort >= ABORT_TIMEOUT * 2 )
-                            {
-                                // If we've hard aborted and interrupted, and we're still not dead, then mark the runner
-                                // as dead, finish off the task, and spawn a new runner.
-                                timeoutTask( executor, runner.owner, afterStart );
-                                runner.running = false;
-                                runner.owner.interrupt();
-
-                                ComputerExecutor thisExecutor = runner.currentExecutor.getAndSet( null );
-                                if( thisExecutor != null ) afterWork( runner, executor );
-
+                                // The runner has been killed, so spawn a new one.
                                 synchronized( threadLock )
                                 {
-                                    if( running && runners.length > i && runners[i] == runner )
+                                    if( running && runners == currentRunners && runners[i] == runner )
                                     {
-                                        runnerFactory.newThread( currentRunners[i] = new TaskRunner() ).start();
+                                        runnerFactory.newThread( currentRunners[i] = new TaskRunner( i ) ).start();
                                     }
                                 }
                             }
                         }
+
+                        checkSize( currentRunners );
+                    }
+
+                    // Runners removed by a resize may still be executing a task, so we must time those out too. Once
+                    // their thread has exited, we can stop tracking them.
+                    for( TaskRunner runner : retiredRunners )
+                    {
+                        if( runner.owner == null || !runner.owner.isAlive() )
+                        {
+                            retiredRunners.remove( runner );
+                        }
+                        else
+                        {
+                            checkTimeout( runner );
+                        }
                     }
                 }
             }
@@ -429,6 +469,112 @@ public final class ComputerThread
             {
             }
         }
+
+        /**
+         * Check whether a runner's current task has exceeded the hard abort limit, aborting and then interrupting it
+         * if so.
+         *
+         * @param runner The runner to check.
+         * @return Whether the runner has been marked as dead, and so should be replaced.
+         */
+        private static boolean checkTimeout( TaskRunner runner )
+        {
+            // If the runner has no work, skip
+            ComputerExecutor executor = runner.currentExecutor.get();
+            if( executor == null ) return false;
+
+            // If we're still within normal execution times (TIMEOUT) or soft abort (ABORT_TIMEOUT),
+            // then we can let the Lua machine do its work.
+            long afterStart = executor.timeout.nanoCumulative();
+            long afterHardAbort = afterStart - TIMEOUT - ABORT_TIMEOUT;
+            if( afterHardAbort < 0 ) return false;
+
+            // Set the hard abort flag.
+            executor.timeout.hardAbort();
+            executor.abort();
+
+            if( afterHardAbort >= ABORT_TIMEOUT )
+            {
+                // If we've hard aborted but we're still not dead, dump the stack trace and interrupt
+                // the task.
+                timeoutTask( executor, runner.owner, afterStart );
+                runner.owner.interrupt();
+            }
+            else if( afterHardAbort >= ABORT_TIMEOUT * 2 )
+            {
+                // If we've hard aborted and interrupted, and we're still not dead, then mark the runner
+                // as dead, finish off the task, and spawn a new runner.
+                timeoutTask( executor, runner.owner, afterStart );
+                runner.running = false;
+                runner.owner.interrupt();
+
+                ComputerExecutor thisExecutor = runner.currentExecutor.getAndSet( null );
+                if( thisExecutor != null ) afterWork( runner, executor );
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Sample the current load, and grow or shrink the thread pool if needed.
+         *
+         * Every {@link #RESIZE_SAMPLES} wakeups, we look at the average queue length, the average number of busy
+         * runners, and what fraction of their period computers actually used. We then:
+         *
+         * <ul>
+         * <li>Add a runner if computers are waiting to run, and those which did run used most of their period
+         * (see {@link #GROW_UTILISATION}).</li>
+         * <li>Remove a runner if the queue is mostly empty, and at least one runner has been idle.</li>
+         * </ul>
+         *
+         * The number of runners is always clamped between {@link ComputerCraft#computer_threads} and
+         * {@link ComputerCraft#maxComputerThreads}, so changes to the config will take effect here.
+         *
+         * @param currentRunners The current runners.
+         */
+        private void checkSize( TaskRunner[] currentRunners )
+        {
+            int busy = 0;
+            for( TaskRunner runner : currentRunners )
+            {
+                if( runner != null && runner.currentExecutor.get() != null ) busy++;
+            }
+
+            queuedSamples += computerQueue.size();
+            busySamples += busy;
+            if( ++samples < RESIZE_SAMPLES ) return;
+
+            double queued = (double) queuedSamples / samples;
+            double busyRunners = (double) busySamples / samples;
+            samples = 0;
+            queuedSamples = busySamples = 0;
+
+            long allotted = allottedTime.sumThenReset();
+            long used = usedTime.sumThenReset();
+            double utilisation = allotted <= 0 ? 0 : (double) used / allotted;
+
+            int size = currentRunners.length, min = minThreads(), max = maxThreads();
+            int target = size;
+            if( size < min )
+            {
+                target = min;
+            }
+            else if( size > max )
+            {
+                target = max;
+            }
+            else if( queued >= 1 && utilisation >= GROW_UTILISATION && size < max )
+            {
+                target = size + 1;
+            }
+            else if( queued < SHRINK_QUEUE_LENGTH && busyRunners < size - 1 && size > min )
+            {
+                target = size - 1;
+            }
+
+            if( target != size ) resize( target );
+        }
     }
 
     /**
@@ -440,11 +586,17 @@ public final class ComputerThread
      */
     private static final class TaskRunner implements Runnable
     {
+        final int index;
         Thread owner;
         volatile boolean running = true;
 
         final AtomicReference<ComputerExecutor> currentExecutor = new AtomicReference<>();
 
+        TaskRunner( int index )
+        {
+            this.index = index;
+        }
+
         @Override
         public void run()
         {
@@ -457,17 +609,7 @@ public final class ComputerThread
                 ComputerExecutor executor;
                 try
                 {
-                    computerLock.lockInterruptibly();
-                    try
-                    {
-                        while( computerQueue.isEmpty() ) hasWork.await();
-                        executor = computerQueue.pollFirst();
-                        assert executor != null : "hasWork should ensure we never receive null work";
-                    }
-                    finally
-                    {
-                        computerLock.unlock();
-                    }
+                    executor = computerQueue.take( index );
                 }
                 catch( InterruptedException ignored )
                 {
@@ -476,6 +618,9 @@ public final class ComputerThread
                     continue;
                 }
 
+                // We've been removed from the pool by a resize, so our running flag will have been reset.
+                if( executor == null ) continue;
+
                 // If we're trying to executing some task on this computer while someone else is doing work, something
                 // is seriously wrong.
                 while( !executor.executingThread.compareAndSet( null, owner ) )
@@ -18,7 +18,7 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 import javax.annotation.Nonnull;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.PriorityQueue;
 
 /**
  * Represents the "environment" that a {@link Computer} exists in.
@@ -38,6 +38,11 @@ import java.util.Iterator;
  *
  * <h1>Peripheral</h1>
  * We also keep track of peripherals. These are read on both threads, and only written on the main thread.
+ *
+ * <h1>Timers</h1>
+ * Timers are stored in a min-heap ordered by the tick they are due on, so each tick only needs to look at the timers
+ * which actually fire. Cancelled timers are removed from {@link #timers}, and lazily dropped from the heap once they
+ * reach the top (or when the heap becomes mostly cancelled timers). Both are guarded by {@link #timers}.
  */
 public final class Environment implements IAPIEnvironment
 {
@@ -58,6 +63,8 @@ public final class Environment implements IAPIEnvironment
     private IPeripheralChangeListener peripheralListener = null;
 
     private final Int2ObjectMap<Timer> timers = new Int2ObjectOpenHashMap<>();
+    private final PriorityQueue<Timer> timerQueue = new PriorityQueue<>();
+    private long currentTick = 0;
     private int nextTimerToken = 0;
 
     Environment( Computer computer )
@@ -215,6 +222,7 @@ public final class Environment implements IAPIEnvironment
         synchronized( timers )
         {
             timers.clear();
+            timerQueue.clear();
         }
     }
 
@@ -231,20 +239,48 @@ public final class Environment implements IAPIEnvironment
 
         synchronized( timers )
         {
-            // Countdown all of our active timers
-            Iterator<Int2ObjectMap.Entry<Timer>> it = timers.int2ObjectEntrySet().iterator();
-            while( it.hasNext() )
+            currentTick++;
+
+            // Fire any timers which are now due. As the queue is ordered by due tick, we can stop at the first timer
+            // which is still pending.
+            int fired = 0;
+            Timer timer;
+            while( (timer = timerQueue.peek()) != null && timer.due <= currentTick )
             {
-                Int2ObjectMap.Entry<Timer> entry = it.next();
-                Timer timer = entry.getValue();
-                timer.ticksLeft--;
-                if( timer.ticksLeft <= 0 )
-                {
-                    // Queue the "timer" event
-                    queueEvent( TIMER_EVENT, new Object[] { entry.getIntKey() } );
-                    it.remove();
-                }
+                timerQueue.remove();
+
+                // Skip timers which have been cancelled.
+                if( timers.get( timer.id ) != timer ) continue;
+                timers.remove( timer.id );
+
+                // Queue the "timer" event
+                queueEvent( TIMER_EVENT, new Object[] { timer.id } );
+                fired++;
             }
+
+            if( fired > 0 ) addTrackingChange( TrackingField.TIMERS_FIRED, fired );
+        }
+    }
+
+    /**
+     * Determine whether {@link #tick()} and {@link #updateOutput()} would do nothing, as there are no pending timers
+     * or changes to redstone.
+     *
+     * @return Whether this environment has no pending work.
+     * @see Computer#isDormant()
+     */
+    boolean isDormant()
+    {
+        if( inputChanged ) return false;
+
+        synchronized( internalOutput )
+        {
+            if( internalOutputChanged ) return false;
+        }
+
+        synchronized( timers )
+        {
+            return timerQueue.isEmpty();
         }
     }
 
@@ -343,11 +379,19 @@ public final class Environment implements IAPIEnvironment
     @Override
     public int startTimer( long ticks )
     {
+        int id;
         synchronized( timers )
         {
-            timers.put( nextTimerToken, new Timer( ticks ) );
-            return nextTimerToken++;
+            id = nextTimerToken++;
+
+            // Timers always wait for at least one tick, even if they were started with a 0 or negative delay.
+            Timer timer = new Timer( id, currentTick + Math.max( ticks, 1 ) );
+            timers.put( id, timer );
+            timerQueue.add( timer );
         }
+
+        addTrackingChange( TrackingField.TIMERS_STARTED, 1 );
+        return id;
     }
 
     @Override
@@ -355,7 +399,15 @@ public final class Environment implements IAPIEnvironment
     {
         synchronized( timers )
         {
-            timers.remove( id );
+            if( timers.remove( id ) == null ) return;
+
+            // If most of the queue consists of cancelled timers, rebuild it, so programs which repeatedly start and
+            // cancel long timers do not grow the queue without bound.
+            if( timerQueue.size() > 16 && timerQueue.size() > timers.size() * 2 )
+            {
+                timerQueue.clear();
+                timerQueue.addAll( timers.values() );
+            }
         }
     }
 
@@ -365,13 +417,23 @@ public final class Environment implements IAPIEnvironment
         Tracking.addValue( computer, field, change );
     }
 
-    private static class Timer
+    private static final class Timer implements Comparable<Timer>
     {
-        long ticksLeft;
+        final int id;
+        final long due;
+
+        Timer( int id, long due )
+        {
+            this.id = id;
+            this.due = due;
+        }
 
-        Timer( long ticksLeft )
+        @Override
+        public int compareTo( @Nonnull Timer o )
         {
-            this.ticksLeft = ticksLeft;
+            // Fire timers in the order they were started if they are due on the same tick.
+            int compare = Long.compare( due, o.due );
+            return compare != 0 ? compare : Integer.compare( id, o.id );
         }
     }
 }
@@ -0,0 +1,220 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A {@link ComputerQueue} which stores all executors in a single {@link TreeSet}, guarded by one lock.
+ *
+ * This gives exact ordering by virtual runtime, and updates the runtime of all currently executing computers whenever
+ * a computer is queued. However, every runner contends on the same lock, which may become a bottleneck when running
+ * with many threads.
+ */
+final class GlobalComputerQueue implements ComputerQueue
+{
+    private final Predicate<ComputerExecutor> hasMoreWork;
+
+    private final ReentrantLock computerLock = new ReentrantLock();
+
+    private final Condition hasWork = computerLock.newCondition();
+
+    /**
+     * Active queues to execute.
+     */
+    private final TreeSet<ComputerExecutor> computerQueue = new TreeSet<>( ORDER );
+
+    /**
+     * The executor each runner is currently executing, or {@code null} if it is idle.
+     */
+    private ComputerExecutor[] executing;
+
+    /**
+     * The minimum {@link ComputerExecutor#virtualRuntime} time on the tree.
+     */
+    private long minimumVirtualRuntime = 0;
+
+    GlobalComputerQueue( int runners, Predicate<ComputerExecutor> hasMoreWork )
+    {
+        this.hasMoreWork = hasMoreWork;
+        executing = new ComputerExecutor[runners];
+    }
+
+    @Override
+    public void enqueue( @Nonnull ComputerExecutor executor )
+    {
+        computerLock.lock();
+        try
+        {
+            if( executor.onComputerQueue ) throw new IllegalStateException( "Cannot queue already queued executor" );
+            executor.onComputerQueue = true;
+
+            updateRuntimes( null );
+
+            // We're not currently on the queue, so update its current execution time to
+            // ensure its at least as high as the minimum.
+            long newRuntime = minimumVirtualRuntime;
+
+            if( executor.virtualRuntime == 0 )
+            {
+                // Slow down new computers a little bit.
+                newRuntime += ComputerThread.scaledPeriod( computerQueue.size() );
+            }
+            else
+            {
+                // Give a small boost to computers which have slept a little.
+                newRuntime -= ComputerThread.latency() / 2;
+            }
+
+            executor.virtualRuntime = Math.max( newRuntime, executor.virtualRuntime );
+
+            // Add to the queue, and signal the workers.
+            computerQueue.add( executor );
+            hasWork.signal();
+        }
+        finally
+        {
+            computerLock.unlock();
+        }
+    }
+
+    @Nullable
+    @Override
+    public ComputerExecutor take( int runner ) throws InterruptedException
+    {
+        computerLock.lockInterruptibly();
+        try
+        {
+            while( computerQueue.isEmpty() )
+            {
+                if( runner >= executing.length ) return null;
+                hasWork.await();
+            }
+            if( runner >= executing.length )
+            {
+                // Pass the work on to another runner.
+                hasWork.signal();
+                return null;
+            }
+
+            ComputerExecutor executor = computerQueue.pollFirst();
+            assert executor != null : "hasWork should ensure we never receive null work";
+
+            executor.vRuntimeStart = System.nanoTime();
+            executing[runner] = executor;
+            return executor;
+        }
+        finally
+        {
+            computerLock.unlock();
+        }
+    }
+
+    @Override
+    public void afterWork( int runner, @Nonnull ComputerExecutor executor )
+    {
+        computerLock.lock();
+        try
+        {
+            if( runner < executing.length && executing[runner] == executor ) executing[runner] = null;
+            updateRuntimes( executor );
+
+            // If we've no more tasks, just return.
+            if( !hasMoreWork.test( executor ) ) return;
+
+            // Otherwise, add to the queue, and signal any waiting workers.
+            computerQueue.add( executor );
+            hasWork.signal();
+        }
+        finally
+        {
+            computerLock.unlock();
+        }
+    }
+
+    /**
+     * Update the {@link ComputerExecutor#virtualRuntime}s of all running tasks, and then update the
+     * {@link #minimumVirtualRuntime} based on the current tasks.
+     *
+     * This is called before queueing tasks, to ensure that {@link #minimumVirtualRuntime} is up-to-date.
+     *
+     * @param current The machine which we updating runtimes from.
+     */
+    private void updateRuntimes( @Nullable ComputerExecutor current )
+    {
+        long minRuntime = Long.MAX_VALUE;
+
+        // If we've a task on the queue, use that as our base time.
+        if( !computerQueue.isEmpty() ) minRuntime = computerQueue.first().virtualRuntime;
+
+        // Update all the currently executing tasks
+        long now = System.nanoTime();
+        int tasks = 1 + computerQueue.size();
+        for( ComputerExecutor executor : executing )
+        {
+            if( executor == null ) continue;
+
+            // We do two things here: first we update the task's virtual runtime based on when we
+            // last checked, and then we check the minimum.
+            minRuntime = Math.min( minRuntime, executor.virtualRuntime += (now - executor.vRuntimeStart) / tasks );
+            executor.vRuntimeStart = now;
+        }
+
+        // And update the most recently executed one (if set).
+        if( current != null )
+        {
+            minRuntime = Math.min( minRuntime, current.virtualRuntime += (now - current.vRuntimeStart) / tasks );
+        }
+
+        if( minRuntime > minimumVirtualRuntime && minRuntime < Long.MAX_VALUE )
+        {
+            minimumVirtualRuntime = minRuntime;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return computerQueue.size();
+    }
+
+    @Override
+    public void resize( int runners )
+    {
+        computerLock.lock();
+        try
+        {
+            executing = Arrays.copyOf( executing, runners );
+
+            // Wake up all runners, so any which have been removed can exit.
+            hasWork.signalAll();
+        }
+        finally
+        {
+            computerLock.unlock();
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        computerLock.lock();
+        try
+        {
+            computerQueue.clear();
+        }
+        finally
+        {
+            computerLock.unlock();
+        }
+    }
+}
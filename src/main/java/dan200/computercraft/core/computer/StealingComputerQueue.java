@@ -0,0 +1,407 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * A {@link ComputerQueue} where each runner has its own run queue, and idle runners steal work from their peers.
+ *
+ * Each run queue is ordered by virtual runtime, as with {@link GlobalComputerQueue}. In order to preserve fairness
+ * across queues:
+ *
+ * <ul>
+ * <li>The minimum virtual runtime is shared between all queues, and is used to place newly queued executors.</li>
+ * <li>When taking work, a runner will pick from another queue if that queue's head is more than one
+ * {@link ComputerThread#latency()} behind its own.</li>
+ * </ul>
+ *
+ * Unlike {@link GlobalComputerQueue}, we do not update the virtual runtime of currently executing computers when
+ * queuing a new one. Instead, their runtime is only accounted for once they have finished executing. This avoids
+ * having to walk every runner (and take a global lock) on each operation.
+ *
+ * New executors are placed on an idle runner's queue where possible, or the shortest queue otherwise. Executors which
+ * still have work after running are requeued on the queue of the runner they ran on.
+ */
+final class StealingComputerQueue implements ComputerQueue
+{
+    /**
+     * How long an idle runner should wait before attempting to steal work again, if there are executors queued
+     * elsewhere.
+     */
+    private static final long STEAL_INTERVAL = TimeUnit.MILLISECONDS.toNanos( 1 );
+
+    private final Predicate<ComputerExecutor> hasMoreWork;
+
+    private volatile RunQueue[] queues;
+
+    /**
+     * Lock used when modifying the {@link #queues} array.
+     */
+    private final Object resizeLock = new Object();
+
+    /**
+     * The total number of queued executors, across all queues.
+     */
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * The minimum {@link ComputerExecutor#virtualRuntime} across all queues. This only ever increases.
+     */
+    private final AtomicLong minimumVirtualRuntime = new AtomicLong();
+
+    /**
+     * Where to start searching for an idle queue. This is rotated so that work is spread evenly amongst runners.
+     */
+    private final AtomicInteger nextQueue = new AtomicInteger();
+
+    StealingComputerQueue( int runners, Predicate<ComputerExecutor> hasMoreWork )
+    {
+        this.hasMoreWork = hasMoreWork;
+        RunQueue[] queues = new RunQueue[runners];
+        for( int i = 0; i < runners; i++ ) queues[i] = new RunQueue();
+        this.queues = queues;
+    }
+
+    @Override
+    public void enqueue( @Nonnull ComputerExecutor executor )
+    {
+        if( executor.onComputerQueue ) throw new IllegalStateException( "Cannot queue already queued executor" );
+        executor.onComputerQueue = true;
+
+        // We're not currently on the queue, so update its current execution time to ensure its at least as high as the
+        // minimum.
+        long newRuntime = minimumVirtualRuntime.get();
+        if( executor.virtualRuntime == 0 )
+        {
+            // Slow down new computers a little bit.
+            newRuntime += ComputerThread.scaledPeriod( size.get() );
+        }
+        else
+        {
+            // Give a small boost to computers which have slept a little.
+            newRuntime -= ComputerThread.latency() / 2;
+        }
+
+        executor.virtualRuntime = Math.max( newRuntime, executor.virtualRuntime );
+
+        // It's important that we increment the size before searching for an idle queue, as runners mark themselves as
+        // idle before checking the size. This ensures we never have an idle runner and unclaimed work.
+        size.incrementAndGet();
+        push( pickQueue(), executor );
+    }
+
+    /**
+     * Find the queue to add a new executor to. We prefer idle runners, and otherwise the shortest queue.
+     *
+     * @return The index of the chosen queue.
+     */
+    private int pickQueue()
+    {
+        RunQueue[] queues = this.queues;
+        int start = Math.floorMod( nextQueue.getAndIncrement(), queues.length );
+
+        int best = start, bestSize = Integer.MAX_VALUE;
+        for( int offset = 0; offset < queues.length; offset++ )
+        {
+            int index = (start + offset) % queues.length;
+            RunQueue queue = queues[index];
+            if( queue.idle ) return index;
+
+            int queueSize = queue.size;
+            if( queueSize < bestSize )
+            {
+                best = index;
+                bestSize = queueSize;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Add an executor to a specific queue. If the queue has been removed by {@link #resize(int)}, then we'll pick
+     * another one.
+     *
+     * @param index    The index of the queue to add to. This may be out of range if the queues have been resized.
+     * @param executor The executor to add.
+     */
+    private void push( int index, ComputerExecutor executor )
+    {
+        while( true )
+        {
+            RunQueue[] queues = this.queues;
+            if( queues[index % queues.length].offer( executor ) ) return;
+        }
+    }
+
+    @Nullable
+    @Override
+    public ComputerExecutor take( int runner ) throws InterruptedException
+    {
+        while( true )
+        {
+            RunQueue[] queues = this.queues;
+            if( runner >= queues.length ) return null;
+
+            RunQueue own = queues[runner];
+            ComputerExecutor executor = poll( queues, own );
+            if( executor != null ) return executor;
+
+            own.lock.lockInterruptibly();
+            try
+            {
+                if( own.retired ) return null;
+
+                own.idle = true;
+                if( own.executors.isEmpty() )
+                {
+                    // If there's work elsewhere, only wait a short while before attempting to steal it. Otherwise
+                    // we'll be woken up when someone pushes to our queue.
+                    if( size.get() > 0 )
+                    {
+                        own.hasWork.awaitNanos( STEAL_INTERVAL );
+                    }
+                    else
+                    {
+                        own.hasWork.await();
+                    }
+                }
+            }
+            finally
+            {
+                own.idle = false;
+                own.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Attempt to take an executor, either from our own queue or from a peer's.
+     *
+     * @param queues The current set of queues.
+     * @param own    This runner's queue.
+     * @return The taken executor, or {@code null} if none could be found.
+     */
+    @Nullable
+    private ComputerExecutor poll( RunQueue[] queues, RunQueue own )
+    {
+        // Find the queue whose head has the lowest runtime. We only prefer another queue over our own if it is
+        // sufficiently far behind, to avoid contending on other queues' locks.
+        long tolerance = ComputerThread.latency();
+        RunQueue best = null;
+        long bestRuntime = Long.MAX_VALUE;
+        for( RunQueue queue : queues )
+        {
+            long head = queue.head;
+            if( head == Long.MAX_VALUE ) continue;
+            if( queue != own ) head += tolerance;
+            if( head < bestRuntime )
+            {
+                best = queue;
+                bestRuntime = head;
+            }
+        }
+
+        if( best == null ) return null;
+
+        // If another runner is busy with this queue, we'll just try again (or wait) later.
+        ComputerExecutor executor = best == own ? best.poll() : best.tryPoll();
+        if( executor == null && best != own ) executor = own.poll();
+        if( executor == null ) return null;
+
+        size.decrementAndGet();
+        updateMinimum( queues, executor.virtualRuntime );
+        executor.vRuntimeStart = System.nanoTime();
+        return executor;
+    }
+
+    private void updateMinimum( RunQueue[] queues, long taken )
+    {
+        long minRuntime = taken;
+        for( RunQueue queue : queues ) minRuntime = Math.min( minRuntime, queue.head );
+
+        while( true )
+        {
+            long current = minimumVirtualRuntime.get();
+            if( minRuntime <= current || minimumVirtualRuntime.compareAndSet( current, minRuntime ) ) return;
+        }
+    }
+
+    @Override
+    public void afterWork( int runner, @Nonnull ComputerExecutor executor )
+    {
+        long now = System.nanoTime();
+        executor.virtualRuntime += (now - executor.vRuntimeStart) / (1 + size.get());
+
+        // If we've no more tasks, just return.
+        if( !hasMoreWork.test( executor ) ) return;
+
+        // Otherwise, add to our own queue. Another runner will steal it if we're busy for too long.
+        size.incrementAndGet();
+        push( runner, executor );
+    }
+
+    @Override
+    public int size()
+    {
+        return size.get();
+    }
+
+    @Override
+    public void resize( int runners )
+    {
+        synchronized( resizeLock )
+        {
+            RunQueue[] old = queues;
+            if( runners == old.length ) return;
+
+            RunQueue[] queues = Arrays.copyOf( old, runners );
+            for( int i = old.length; i < runners; i++ ) queues[i] = new RunQueue();
+            this.queues = queues;
+
+            // Retire any removed queues, waking their runners and moving their executors elsewhere.
+            for( int i = runners; i < old.length; i++ )
+            {
+                RunQueue queue = old[i];
+                List<ComputerExecutor> orphans;
+                queue.lock.lock();
+                try
+                {
+                    queue.retired = true;
+                    orphans = new ArrayList<>( queue.executors );
+                    queue.executors.clear();
+                    queue.update();
+                    queue.hasWork.signalAll();
+                }
+                finally
+                {
+                    queue.lock.unlock();
+                }
+
+                for( ComputerExecutor executor : orphans ) push( i, executor );
+            }
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        for( RunQueue queue : queues )
+        {
+            queue.lock.lock();
+            try
+            {
+                size.addAndGet( -queue.executors.size() );
+                queue.executors.clear();
+                queue.update();
+            }
+            finally
+            {
+                queue.lock.unlock();
+            }
+        }
+    }
+
+    private static final class RunQueue
+    {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition hasWork = lock.newCondition();
+        final TreeSet<ComputerExecutor> executors = new TreeSet<>( ORDER );
+
+        /**
+         * Whether this queue's runner is waiting for work.
+         */
+        volatile boolean idle;
+
+        /**
+         * Whether this queue has been removed by {@link #resize(int)}. No further executors may be added to it.
+         */
+        boolean retired;
+
+        /**
+         * The virtual runtime of the first executor in this queue, or {@link Long#MAX_VALUE} if empty. This allows
+         * peeking at other queues without acquiring their lock.
+         */
+        volatile long head = Long.MAX_VALUE;
+
+        /**
+         * The number of executors in this queue, which may be read without acquiring the lock.
+         */
+        volatile int size;
+
+        boolean offer( ComputerExecutor executor )
+        {
+            lock.lock();
+            try
+            {
+                if( retired ) return false;
+
+                executors.add( executor );
+                update();
+                hasWork.signal();
+                return true;
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        @Nullable
+        ComputerExecutor poll()
+        {
+            lock.lock();
+            try
+            {
+                return pollLocked();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        @Nullable
+        ComputerExecutor tryPoll()
+        {
+            if( !lock.tryLock() ) return null;
+            try
+            {
+                return pollLocked();
+            }
+            finally
+            {
+                lock.unlock();
+            }
+        }
+
+        @Nullable
+        private ComputerExecutor pollLocked()
+        {
+            ComputerExecutor executor = executors.pollFirst();
+            if( executor != null ) update();
+            return executor;
+        }
+
+        private void update()
+        {
+            head = executors.isEmpty() ? Long.MAX_VALUE : executors.first().virtualRuntime;
+            size = executors.size();
+        }
+    }
+}
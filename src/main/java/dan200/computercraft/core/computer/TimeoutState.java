@@ -83,6 +83,17 @@ public final class TimeoutState
         return System.nanoTime() - currentStart;
     }
 
+    /**
+     * The length of the period this execution round was allotted, before it may be paused.
+     *
+     * @return The allotted period, in nanoseconds.
+     * @see ComputerThread#scaledPeriod()
+     */
+    long nanoPeriod()
+    {
+        return currentDeadline - currentStart;
+    }
+
     /**
      * Recompute the {@link #isSoftAborted()} and {@link #isPaused()} flags.
      */
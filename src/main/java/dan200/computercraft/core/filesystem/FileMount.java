@@ -9,31 +9,70 @@ import com.google.common.collect.Sets;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.filesystem.FileOperationException;
 import dan200.computercraft.api.filesystem.IWritableMount;
+import dan200.computercraft.core.apis.handles.ByteBufferChannel;
+import dan200.computercraft.shared.util.ThreadUtils;
 
 import javax.annotation.Nonnull;
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collections;
 import java.util.List;
 import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FileMount implements IWritableMount
 {
     private static final int MINIMUM_FILE_SIZE = 500;
+    private static final long UNKNOWN = -1;
+
+    private static final String USAGE_SUFFIX = ".size";
+
+    /**
+     * How long to wait after a mount is modified before saving its used space.
+     */
+    private static final long USAGE_FLUSH_DELAY = 5;
+
+    private static final ScheduledExecutorService usageFlusher = Executors.newSingleThreadScheduledExecutor(
+        ThreadUtils.factory( "FileMount-Usage" )
+    );
+
+    /**
+     * Files at least this large are memory-mapped when read from a read-only mount, rather than being read through a
+     * {@link FileChannel}.
+     */
+    private static final long MAP_THRESHOLD = 256 * 1024;
+
     private static final Set<OpenOption> READ_OPTIONS = Collections.singleton( StandardOpenOption.READ );
     private static final Set<OpenOption> WRITE_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING );
     private static final Set<OpenOption> APPEND_OPTIONS = Sets.newHashSet( StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND );
 
-    private class WritableCountingChannel implements WritableByteChannel
+    /**
+     * The total capacity of all write buffers currently allocated, across every mount.
+     *
+     * @see ComputerCraft#fileWriteBufferLimit
+     */
+    private static final AtomicLong bufferedBytes = new AtomicLong();
+
+    private class WritableCountingChannel implements WritableByteChannel, Flushable
     {
 
         private final WritableByteChannel m_inner;
         long m_ignoredBytesLeft;
 
+        /**
+         * Bytes which have been written (and counted against the mount's capacity), but not yet written to disk. This
+         * is allocated on the first small write, and is {@code null} if the server-wide buffer limit was reached.
+         */
+        private ByteBuffer m_buffer;
+
         WritableCountingChannel( WritableByteChannel inner, long bytesToIgnore )
         {
             m_inner = inner;
@@ -41,10 +80,22 @@ public class FileMount implements IWritableMount
         }
 
         @Override
-        public int write( @Nonnull ByteBuffer b ) throws IOException
+        public synchronized int write( @Nonnull ByteBuffer b ) throws IOException
         {
-            count( b.remaining() );
-            return m_inner.write( b );
+            if( !m_inner.isOpen() ) throw new ClosedChannelException();
+
+            // Count the bytes first, so we fail before anything is buffered if we're out of space.
+            int length = b.remaining();
+            count( length );
+
+            ByteBuffer buffer = getBuffer( length );
+            if( buffer == null ) return m_inner.write( b );
+
+            if( length > buffer.remaining() ) flushBuffer();
+            if( length >= buffer.capacity() ) return m_inner.write( b );
+
+            buffer.put( b );
+            return length;
         }
 
         void count( long n ) throws IOException
@@ -57,10 +108,66 @@ public class FileMount implements IWritableMount
 
                 long bytesLeft = m_capacity - m_usedSpace;
                 if( newBytes > bytesLeft ) throw new IOException( "Out of space" );
-                m_usedSpace += newBytes;
+                addUsedSpace( newBytes );
             }
         }
 
+        private ByteBuffer getBuffer( int length )
+        {
+            if( m_buffer != null ) return m_buffer;
+
+            // Large writes gain nothing from being buffered, so don't reserve a buffer for them.
+            int size = ComputerCraft.fileWriteBuffer;
+            if( size <= 0 || length >= size ) return null;
+
+            long limit = ComputerCraft.fileWriteBufferLimit;
+            while( true )
+            {
+                long current = bufferedBytes.get();
+                if( current + size > limit ) return null;
+                if( bufferedBytes.compareAndSet( current, current + size ) ) break;
+            }
+
+            return m_buffer = ByteBuffer.allocate( size );
+        }
+
+        /**
+         * Write any buffered bytes to the underlying channel.
+         *
+         * @throws IOException If the bytes could not be written.
+         */
+        synchronized void flushBuffer() throws IOException
+        {
+            ByteBuffer buffer = m_buffer;
+            if( buffer == null || buffer.position() == 0 ) return;
+
+            buffer.flip();
+            try
+            {
+                while( buffer.hasRemaining() ) m_inner.write( buffer );
+            }
+            finally
+            {
+                buffer.clear();
+            }
+        }
+
+        /**
+         * Get the number of bytes which have been written, but are still in the buffer.
+         *
+         * @return The number of buffered bytes.
+         */
+        synchronized int buffered()
+        {
+            return m_buffer == null ? 0 : m_buffer.position();
+        }
+
+        @Override
+        public void flush() throws IOException
+        {
+            flushBuffer();
+        }
+
         @Override
         public boolean isOpen()
         {
@@ -68,9 +175,22 @@ public class FileMount implements IWritableMount
         }
 
         @Override
-        public void close() throws IOException
+        public synchronized void close() throws IOException
         {
-            m_inner.close();
+            try
+            {
+                if( m_inner.isOpen() ) flushBuffer();
+            }
+            finally
+            {
+                if( m_buffer != null )
+                {
+                    bufferedBytes.addAndGet( -m_buffer.capacity() );
+                    m_buffer = null;
+                }
+
+                m_inner.close();
+            }
         }
     }
 
@@ -85,7 +205,7 @@ public class FileMount implements IWritableMount
         }
 
         @Override
-        public SeekableByteChannel position( long newPosition ) throws IOException
+        public synchronized SeekableByteChannel position( long newPosition ) throws IOException
         {
             if( !isOpen() ) throw new ClosedChannelException();
             if( newPosition < 0 )
@@ -93,6 +213,8 @@ public class FileMount implements IWritableMount
                 throw new IllegalArgumentException( "Cannot seek before the beginning of the stream" );
             }
 
+            flushBuffer();
+
             long delta = newPosition - m_inner.position();
             if( delta < 0 )
             {
@@ -120,27 +242,70 @@ public class FileMount implements IWritableMount
         }
 
         @Override
-        public long position() throws IOException
+        public synchronized long position() throws IOException
         {
-            return m_inner.position();
+            return m_inner.position() + buffered();
         }
 
         @Override
-        public long size() throws IOException
+        public synchronized long size() throws IOException
         {
-            return m_inner.size();
+            return Math.max( m_inner.size(), m_inner.position() + buffered() );
         }
     }
 
     private File m_rootPath;
     private long m_capacity;
-    private long m_usedSpace;
+
+    /**
+     * Whether to memory-map large files. We only do this for mounts with no capacity, as these are used for read-only
+     * resources (see {@link ComputerCraft#createResourceMount(Class, String, String)}). Mapping writable files is
+     * unsafe, as they may be truncated while mapped, and cannot be deleted on some platforms while a mapping exists.
+     */
+    private final boolean m_mapLargeFiles;
+
+    /**
+     * The space used by this mount, or {@link #UNKNOWN} if it has not yet been measured. This should only be read after
+     * calling {@link #measure()}.
+     */
+    private volatile long m_usedSpace;
+
+    /**
+     * A file next to the mount's root which holds its used space, avoiding walking the whole directory tree every time
+     * the mount is created.
+     *
+     * This file is only present when its contents are up-to-date: it is deleted as soon as the mount is modified, and
+     * rewritten a short while afterwards.
+     */
+    private final File m_usageFile;
+
+    /**
+     * Whether {@link #m_usedSpace} has changed since it was last written to {@link #m_usageFile}. This is guarded by
+     * {@link #m_usageLock}.
+     */
+    private volatile boolean m_usageDirty;
+
+    /**
+     * The number of times {@link #m_usedSpace} has been changed by this mount, used by {@link #remeasureUsedSpace()} to
+     * detect writes made while it was walking the tree. This is guarded by {@link #m_usageLock}.
+     */
+    private long m_usageChanges;
+    private final Object m_usageLock = new Object();
 
     public FileMount( File rootPath, long capacity )
     {
         m_rootPath = rootPath;
         m_capacity = capacity + MINIMUM_FILE_SIZE;
-        m_usedSpace = created() ? measureUsedSpace( m_rootPath ) : MINIMUM_FILE_SIZE;
+        m_mapLargeFiles = capacity <= 0;
+        m_usageFile = new File( rootPath.getParentFile(), rootPath.getName() + USAGE_SUFFIX );
+        m_usedSpace = created() ? readUsedSpace( m_rootPath, m_usageFile ) : MINIMUM_FILE_SIZE;
+
+        // The saved usage cannot account for files changed within subdirectories while the game was not running, so
+        // check it in the background once the mount has loaded, rather than trusting it forever.
+        if( m_usedSpace != UNKNOWN && created() )
+        {
+            usageFlusher.schedule( this::remeasureUsedSpace, USAGE_FLUSH_DELAY, TimeUnit.SECONDS );
+        }
     }
 
     // IMount implementation
@@ -219,7 +384,30 @@ public class FileMount implements IWritableMount
         if( created() )
         {
             File file = getRealPath( path );
-            if( file.exists() && !file.isDirectory() ) return FileChannel.open( file.toPath(), READ_OPTIONS );
+            if( file.exists() && !file.isDirectory() )
+            {
+                FileChannel channel = FileChannel.open( file.toPath(), READ_OPTIONS );
+                if( !m_mapLargeFiles ) return channel;
+
+                long size = channel.size();
+                if( size < MAP_THRESHOLD || size > Integer.MAX_VALUE ) return channel;
+
+                ByteBuffer mapped;
+                try
+                {
+                    mapped = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+                }
+                catch( IOException e )
+                {
+                    // Mapping can fail for platform-specific reasons (such as running out of address space), so just
+                    // fall back to normal reads.
+                    return channel;
+                }
+
+                // The mapping remains valid once the channel has been closed.
+                channel.close();
+                return new ByteBufferChannel( mapped );
+            }
         }
 
         throw new FileOperationException( path, "No such file" );
@@ -266,7 +454,7 @@ public class FileMount implements IWritableMount
 
         if( file.mkdirs() )
         {
-            m_usedSpace += dirsToCreate * MINIMUM_FILE_SIZE;
+            addUsedSpace( dirsToCreate * MINIMUM_FILE_SIZE );
         }
         else
         {
@@ -282,7 +470,11 @@ public class FileMount implements IWritableMount
         if( created() )
         {
             File file = getRealPath( path );
-            if( file.exists() ) deleteRecursively( file );
+            if( file.exists() )
+            {
+                measure();
+                deleteRecursively( file );
+            }
         }
     }
 
@@ -303,7 +495,7 @@ public class FileMount implements IWritableMount
         boolean success = file.delete();
         if( success )
         {
-            m_usedSpace -= Math.max( MINIMUM_FILE_SIZE, fileSize );
+            addUsedSpace( -Math.max( MINIMUM_FILE_SIZE, fileSize ) );
         }
         else
         {
@@ -335,15 +527,16 @@ public class FileMount implements IWritableMount
         File file = getRealPath( path );
         if( file.exists() && file.isDirectory() ) throw new FileOperationException( path, "Cannot write to directory" );
 
+        measure();
         if( file.exists() )
         {
-            m_usedSpace -= Math.max( file.length(), MINIMUM_FILE_SIZE );
+            addUsedSpace( -Math.max( file.length(), MINIMUM_FILE_SIZE ) );
         }
         else if( getRemainingSpace() < MINIMUM_FILE_SIZE )
         {
             throw new FileOperationException( path, "Out of space" );
         }
-        m_usedSpace += MINIMUM_FILE_SIZE;
+        addUsedSpace( MINIMUM_FILE_SIZE );
 
         return new SeekableCountingChannel( Files.newByteChannel( file.toPath(), WRITE_OPTIONS ), MINIMUM_FILE_SIZE );
     }
@@ -362,6 +555,7 @@ public class FileMount implements IWritableMount
         if( file.isDirectory() ) throw new FileOperationException( path, "Cannot write to directory" );
 
         // Allowing seeking when appending is not recommended, so we use a separate channel.
+        measure();
         return new WritableCountingChannel(
             Files.newByteChannel( file.toPath(), APPEND_OPTIONS ),
             Math.max( MINIMUM_FILE_SIZE - file.length(), 0 )
@@ -371,6 +565,7 @@ public class FileMount implements IWritableMount
     @Override
     public long getRemainingSpace()
     {
+        measure();
         return Math.max( m_capacity - m_usedSpace, 0 );
     }
 
@@ -403,6 +598,130 @@ public class FileMount implements IWritableMount
         }
     }
 
+    /**
+     * Ensure {@link #m_usedSpace} is known, walking the directory tree if needed. This must be called before the mount
+     * is modified, so that the walk does not observe the modification as well.
+     */
+    private void measure()
+    {
+        if( m_usedSpace == UNKNOWN ) m_usedSpace = measureUsedSpace( m_rootPath );
+    }
+
+    private void addUsedSpace( long delta )
+    {
+        measure();
+        synchronized( m_usageLock )
+        {
+            m_usedSpace += delta;
+            m_usageChanges++;
+            markUsageDirty();
+        }
+    }
+
+    /**
+     * Mark {@link #m_usedSpace} as changed, removing the saved usage and scheduling it to be rewritten. This must be
+     * called with {@link #m_usageLock} held.
+     */
+    private void markUsageDirty()
+    {
+        if( m_usageDirty ) return;
+        m_usageDirty = true;
+
+        // The saved usage is no longer correct, so remove it until we next flush.
+        if( m_usageFile.exists() && !m_usageFile.delete() )
+        {
+            ComputerCraft.log.warn( "Cannot delete {}", m_usageFile );
+        }
+
+        usageFlusher.schedule( this::flushUsedSpace, USAGE_FLUSH_DELAY, TimeUnit.SECONDS );
+    }
+
+    /**
+     * Walk the directory tree and replace {@link #m_usedSpace} with the measured value. This is run in the background
+     * after loading the used space from {@link #m_usageFile}, correcting it if the mount was changed externally.
+     */
+    void remeasureUsedSpace()
+    {
+        long changes;
+        synchronized( m_usageLock )
+        {
+            changes = m_usageChanges;
+        }
+
+        long usedSpace = measureUsedSpace( m_rootPath );
+
+        synchronized( m_usageLock )
+        {
+            if( changes != m_usageChanges )
+            {
+                // The mount was written to during the walk, so the result may or may not include those writes. Try
+                // again once it has settled down.
+                usageFlusher.schedule( this::remeasureUsedSpace, USAGE_FLUSH_DELAY, TimeUnit.SECONDS );
+                return;
+            }
+
+            if( usedSpace == m_usedSpace || !created() ) return;
+
+            ComputerCraft.log.debug( "Saved used space for {} was {}, but is actually {}", m_rootPath, m_usedSpace, usedSpace );
+            m_usedSpace = usedSpace;
+            markUsageDirty();
+        }
+    }
+
+    /**
+     * Write the current used space to the {@link #m_usageFile}, if it has changed.
+     */
+    void flushUsedSpace()
+    {
+        synchronized( m_usageLock )
+        {
+            if( !m_usageDirty ) return;
+            m_usageDirty = false;
+
+            long usedSpace = m_usedSpace;
+            if( usedSpace == UNKNOWN || !created() ) return;
+
+            // Write to a temporary file and move it into place, so we never leave a partially written file.
+            File temp = new File( m_usageFile.getParentFile(), m_usageFile.getName() + ".tmp" );
+            try
+            {
+                Files.write( temp.toPath(), Long.toString( usedSpace ).getBytes( StandardCharsets.UTF_8 ) );
+                Files.move( temp.toPath(), m_usageFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            }
+            catch( IOException e )
+            {
+                ComputerCraft.log.warn( "Cannot save used space to {}", m_usageFile, e );
+            }
+        }
+    }
+
+    /**
+     * Read the used space from a mount's {@link #m_usageFile}.
+     *
+     * @param root      The root of the mount.
+     * @param usageFile The file storing the used space.
+     * @return The used space, or {@link #UNKNOWN} if the file is missing or out of date.
+     */
+    private static long readUsedSpace( File root, File usageFile )
+    {
+        // If files were added to or removed from the root while the game was not running, the root will have been
+        // modified more recently than the usage file. We cannot detect changes to subdirectories here, so these are
+        // corrected by remeasureUsedSpace once the mount has loaded.
+        long modified = usageFile.lastModified();
+        if( modified == 0 || modified < root.lastModified() ) return UNKNOWN;
+
+        try
+        {
+            String contents = new String( Files.readAllBytes( usageFile.toPath() ), StandardCharsets.UTF_8 ).trim();
+            long usedSpace = Long.parseLong( contents );
+            return usedSpace >= MINIMUM_FILE_SIZE ? usedSpace : UNKNOWN;
+        }
+        catch( IOException | NumberFormatException e )
+        {
+            return UNKNOWN;
+        }
+    }
+
     private static class Visitor extends SimpleFileVisitor<Path>
     {
         long size;
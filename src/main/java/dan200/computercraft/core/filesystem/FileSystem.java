@@ -24,6 +24,9 @@ import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
@@ -40,6 +43,13 @@ public class FileSystem
     private final FileSystemWrapperMount m_wrapper = new FileSystemWrapperMount( this );
     private final Map<String, MountWrapper> mounts = new HashMap<>();
 
+    /**
+     * Guards {@link #mounts} and the contents of each mount. Operations which only read from the file system take the
+     * read lock, so reads from the computer and from API users of {@link #getMountWrapper()} only wait on writes and
+     * mount changes, rather than on each other.
+     */
+    private final ReadWriteLock m_lock = new ReentrantReadWriteLock();
+
     private final HashMap<WeakReference<FileSystemWrapper<?>>, ChannelWrapper<?>> m_openFiles = new HashMap<>();
     private final ReferenceQueue<FileSystemWrapper<?>> m_openFileQueue = new ReferenceQueue<>();
 
@@ -64,41 +74,65 @@ public class FileSystem
         }
     }
 
-    public synchronized void mount( String label, String location, IMount mount ) throws FileSystemException
+    public void mount( String label, String location, IMount mount ) throws FileSystemException
     {
-        if( mount == null ) throw new NullPointerException();
-        location = sanitizePath( location );
-        if( location.contains( ".." ) ) throw new FileSystemException( "Cannot mount below the root" );
-        mount( new MountWrapper( label, location, mount ) );
+        m_lock.writeLock().lock();
+        try
+        {
+            if( mount == null ) throw new NullPointerException();
+            location = sanitizePath( location );
+            if( location.contains( ".." ) ) throw new FileSystemException( "Cannot mount below the root" );
+            mount( new MountWrapper( label, location, mount ) );
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
+        }
     }
 
-    public synchronized void mountWritable( String label, String location, IWritableMount mount ) throws FileSystemException
+    public void mountWritable( String label, String location, IWritableMount mount ) throws FileSystemException
     {
-        if( mount == null )
+        m_lock.writeLock().lock();
+        try
         {
-            throw new NullPointerException();
+            if( mount == null )
+            {
+                throw new NullPointerException();
+            }
+            location = sanitizePath( location );
+            if( location.contains( ".." ) )
+            {
+                throw new FileSystemException( "Cannot mount below the root" );
+            }
+            mount( new MountWrapper( label, location, mount ) );
         }
-        location = sanitizePath( location );
-        if( location.contains( ".." ) )
+        finally
         {
-            throw new FileSystemException( "Cannot mount below the root" );
+            m_lock.writeLock().unlock();
         }
-        mount( new MountWrapper( label, location, mount ) );
     }
 
-    private synchronized void mount( MountWrapper wrapper )
+    private void mount( MountWrapper wrapper )
     {
         String location = wrapper.getLocation();
         mounts.remove( location );
         mounts.put( location, wrapper );
     }
 
-    public synchronized void unmount( String path )
+    public void unmount( String path )
     {
-        mounts.remove( sanitizePath( path ) );
+        m_lock.writeLock().lock();
+        try
+        {
+            mounts.remove( sanitizePath( path ) );
+        }
+        finally
+        {
+            m_lock.writeLock().unlock();
+        }
     }
 
-    public synchronized String combine( String path, String childPath )
+    public String combine( String path, String childPath )
     {
         path = sanitizePath( path, true );
         childPath = sanitizePath( childPath, true );
@@ -145,178 +179,302 @@ public class FileSystem
         return lastSlash >= 0 ? path.substring( lastSlash + 1 ) : path;
     }
 
-    public synchronized long getSize( String path ) throws FileSystemException
+    public long getSize( String path ) throws FileSystemException
     {
-        return getMount( sanitizePath( path ) ).getSize( sanitizePath( path ) );
+        m_lock.readLock().lock();
+        try
+        {
+            return getMount( sanitizePath( path ) ).getSize( sanitizePath( path ) );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized BasicFileAttributes getAttributes( String path ) throws FileSystemException
+    public BasicFileAttributes getAttributes( String path ) throws FileSystemException
     {
-        return getMount( sanitizePath( path ) ).getAttributes( sanitizePath( path ) );
+        m_lock.readLock().lock();
+        try
+        {
+            return getMount( sanitizePath( path ) ).getAttributes( sanitizePath( path ) );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized String[] list( String path ) throws FileSystemException
+    public String[] list( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
 
-        // Gets a list of the files in the mount
-        List<String> list = new ArrayList<>();
-        mount.list( path, list );
+            // Gets a list of the files in the mount
+            List<String> list = new ArrayList<>();
+            mount.list( path, list );
 
-        // Add any mounts that are mounted at this location
-        for( MountWrapper otherMount : mounts.values() )
-        {
-            if( getDirectory( otherMount.getLocation() ).equals( path ) )
+            // Add any mounts that are mounted at this location
+            for( MountWrapper otherMount : mounts.values() )
             {
-                list.add( getName( otherMount.getLocation() ) );
+                if( getDirectory( otherMount.getLocation() ).equals( path ) )
+                {
+                    list.add( getName( otherMount.getLocation() ) );
+                }
             }
-        }
 
-        // Return list
-        String[] array = new String[list.size()];
-        list.toArray( array );
-        Arrays.sort( array );
-        return array;
+            // Return list
+            String[] array = new String[list.size()];
+            list.toArray( array );
+            Arrays.sort( array );
+            return array;
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    private void findIn( String dir, List<String> matches, Pattern wildPattern ) throws FileSystemException
+    /**
+     * Find all paths below a directory which match a glob.
+     *
+     * As wildcards never match a {@code /}, any match must have one path segment for each of the glob's segments. This
+     * allows us to match one segment at a time, only descending into directories which match the glob so far.
+     *
+     * @param dir      The directory to search in.
+     * @param segments The remaining segments of the glob.
+     * @param patterns The compiled pattern for each segment, or {@code null} if the segment has no wildcards.
+     * @param depth    The index of the segment to match against {@code dir}'s children.
+     * @param matches  The list to add matching paths to.
+     * @throws FileSystemException If a directory could not be listed.
+     */
+    private void findIn( String dir, String[] segments, Pattern[] patterns, int depth, List<String> matches ) throws FileSystemException
     {
-        String[] list = list( dir );
-        for( String entry : list )
+        String segment = segments[depth];
+        Pattern pattern = patterns[depth];
+        boolean last = depth == segments.length - 1;
+
+        for( String entry : list( dir ) )
         {
+            if( pattern == null ? !entry.equals( segment ) : !pattern.matcher( entry ).matches() ) continue;
+
             String entryPath = dir.isEmpty() ? entry : dir + "/" + entry;
-            if( wildPattern.matcher( entryPath ).matches() )
+            if( last )
             {
                 matches.add( entryPath );
             }
-            if( isDir( entryPath ) )
+            else if( isDir( entryPath ) )
             {
-                findIn( entryPath, matches, wildPattern );
+                findIn( entryPath, segments, patterns, depth + 1, matches );
             }
         }
     }
 
-    public synchronized String[] find( String wildPath ) throws FileSystemException
+    public String[] find( String wildPath ) throws FileSystemException
     {
-        // Match all the files on the system
-        wildPath = sanitizePath( wildPath, true );
-
-        // If we don't have a wildcard at all just check the file exists
-        int starIndex = wildPath.indexOf( '*' );
-        if( starIndex == -1 )
+        m_lock.readLock().lock();
+        try
         {
-            return exists( wildPath ) ? new String[] { wildPath } : new String[0];
-        }
+            // Match all the files on the system
+            wildPath = sanitizePath( wildPath, true );
 
-        // Find the all non-wildcarded directories. For instance foo/bar/baz* -> foo/bar
-        int prevDir = wildPath.substring( 0, starIndex ).lastIndexOf( '/' );
-        String startDir = prevDir == -1 ? "" : wildPath.substring( 0, prevDir );
+            // If we don't have a wildcard at all just check the file exists
+            int starIndex = wildPath.indexOf( '*' );
+            if( starIndex == -1 )
+            {
+                return exists( wildPath ) ? new String[] { wildPath } : new String[0];
+            }
 
-        // If this isn't a directory then just abort
-        if( !isDir( startDir ) ) return new String[0];
+            // Find the all non-wildcarded directories. For instance foo/bar/baz* -> foo/bar
+            int prevDir = wildPath.substring( 0, starIndex ).lastIndexOf( '/' );
+            String startDir = prevDir == -1 ? "" : wildPath.substring( 0, prevDir );
 
-        // Scan as normal, starting from this directory
-        Pattern wildPattern = Pattern.compile( "^\\Q" + wildPath.replaceAll( "\\*", "\\\\E[^\\\\/]*\\\\Q" ) + "\\E$" );
-        List<String> matches = new ArrayList<>();
-        findIn( startDir, matches, wildPattern );
+            // If this isn't a directory then just abort
+            if( !isDir( startDir ) ) return new String[0];
 
-        // Return matches
-        String[] array = new String[matches.size()];
-        matches.toArray( array );
-        return array;
-    }
+            // Split the remainder of the glob into segments, and scan starting from this directory
+            String[] segments = wildPath.substring( prevDir + 1 ).split( "/" );
+            Pattern[] patterns = new Pattern[segments.length];
+            for( int i = 0; i < segments.length; i++ )
+            {
+                String segment = segments[i];
+                if( segment.indexOf( '*' ) >= 0 )
+                {
+                    patterns[i] = Pattern.compile( "^\\Q" + segment.replaceAll( "\\*", "\\\\E.*\\\\Q" ) + "\\E$" );
+                }
+            }
 
-    public synchronized boolean exists( String path ) throws FileSystemException
-    {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.exists( path );
-    }
+            List<String> matches = new ArrayList<>();
+            findIn( startDir, segments, patterns, 0, matches );
 
-    public synchronized boolean isDir( String path ) throws FileSystemException
-    {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.isDirectory( path );
+            // Return matches
+            String[] array = new String[matches.size()];
+            matches.toArray( array );
+            return array;
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized boolean isReadOnly( String path ) throws FileSystemException
+    public boolean exists( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.isReadOnly( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.exists( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized String getMountLabel( String path ) throws FileSystemException
+    public boolean isDir( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getLabel();
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.isDirectory( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void makeDir( String path ) throws FileSystemException
+    public boolean isReadOnly( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        mount.makeDirectory( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.isReadOnly( path );
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void delete( String path ) throws FileSystemException
+    public String getMountLabel( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        mount.delete( path );
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getLabel();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    public synchronized void move( String sourcePath, String destPath ) throws FileSystemException
+    public void makeDir( String path ) throws FileSystemException
     {
-        sourcePath = sanitizePath( sourcePath );
-        destPath = sanitizePath( destPath );
-        if( isReadOnly( sourcePath ) || isReadOnly( destPath ) )
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "Access denied" );
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            mount.makeDirectory( path );
         }
-        if( !exists( sourcePath ) )
+        finally
         {
-            throw new FileSystemException( "No such file" );
+            m_lock.writeLock().unlock();
         }
-        if( exists( destPath ) )
+    }
+
+    public void delete( String path ) throws FileSystemException
+    {
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "File exists" );
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            mount.delete( path );
         }
-        if( contains( sourcePath, destPath ) )
+        finally
         {
-            throw new FileSystemException( "Can't move a directory inside itself" );
+            m_lock.writeLock().unlock();
         }
-        copy( sourcePath, destPath );
-        delete( sourcePath );
     }
 
-    public synchronized void copy( String sourcePath, String destPath ) throws FileSystemException
+    public void move( String sourcePath, String destPath ) throws FileSystemException
     {
-        sourcePath = sanitizePath( sourcePath );
-        destPath = sanitizePath( destPath );
-        if( isReadOnly( destPath ) )
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "/" + destPath + ": Access denied" );
+            sourcePath = sanitizePath( sourcePath );
+            destPath = sanitizePath( destPath );
+            if( isReadOnly( sourcePath ) || isReadOnly( destPath ) )
+            {
+                throw new FileSystemException( "Access denied" );
+            }
+            if( !exists( sourcePath ) )
+            {
+                throw new FileSystemException( "No such file" );
+            }
+            if( exists( destPath ) )
+            {
+                throw new FileSystemException( "File exists" );
+            }
+            if( contains( sourcePath, destPath ) )
+            {
+                throw new FileSystemException( "Can't move a directory inside itself" );
+            }
+            copy( sourcePath, destPath );
+            delete( sourcePath );
         }
-        if( !exists( sourcePath ) )
+        finally
         {
-            throw new FileSystemException( "/" + sourcePath + ": No such file" );
+            m_lock.writeLock().unlock();
         }
-        if( exists( destPath ) )
+    }
+
+    public void copy( String sourcePath, String destPath ) throws FileSystemException
+    {
+        m_lock.writeLock().lock();
+        try
         {
-            throw new FileSystemException( "/" + destPath + ": File exists" );
+            sourcePath = sanitizePath( sourcePath );
+            destPath = sanitizePath( destPath );
+            if( isReadOnly( destPath ) )
+            {
+                throw new FileSystemException( "/" + destPath + ": Access denied" );
+            }
+            if( !exists( sourcePath ) )
+            {
+                throw new FileSystemException( "/" + sourcePath + ": No such file" );
+            }
+            if( exists( destPath ) )
+            {
+                throw new FileSystemException( "/" + destPath + ": File exists" );
+            }
+            if( contains( sourcePath, destPath ) )
+            {
+                throw new FileSystemException( "/" + sourcePath + ": Can't copy a directory inside itself" );
+            }
+            copyRecursive( sourcePath, getMount( sourcePath ), destPath, getMount( destPath ), 0 );
         }
-        if( contains( sourcePath, destPath ) )
+        finally
         {
-            throw new FileSystemException( "/" + sourcePath + ": Can't copy a directory inside itself" );
+            m_lock.writeLock().unlock();
         }
-        copyRecursive( sourcePath, getMount( sourcePath ), destPath, getMount( destPath ), 0 );
     }
 
-    private synchronized void copyRecursive( String sourcePath, MountWrapper sourceMount, String destinationPath, MountWrapper destinationMount, int depth ) throws FileSystemException
+    private void copyRecursive( String sourcePath, MountWrapper sourceMount, String destinationPath, MountWrapper destinationMount, int depth ) throws FileSystemException
     {
         if( !sourceMount.exists( sourcePath ) ) return;
         if( depth >= MAX_COPY_DEPTH ) throw new FileSystemException( "Too many directories to copy" );
@@ -371,7 +529,7 @@ public class FileSystem
         }
     }
 
-    private synchronized <T extends Closeable> FileSystemWrapper<T> openFile( @Nonnull Channel channel, @Nonnull T file ) throws FileSystemException
+    private <T extends Closeable> FileSystemWrapper<T> openFile( @Nonnull Channel channel, @Nonnull T file ) throws FileSystemException
     {
         synchronized( m_openFiles )
         {
@@ -390,7 +548,7 @@ public class FileSystem
         }
     }
 
-    synchronized void removeFile( FileSystemWrapper<?> handle )
+    void removeFile( FileSystemWrapper<?> handle )
     {
         synchronized( m_openFiles )
         {
@@ -398,50 +556,82 @@ public class FileSystem
         }
     }
 
-    public synchronized <T extends Closeable> FileSystemWrapper<T> openForRead( String path, Function<ReadableByteChannel, T> open ) throws FileSystemException
+    public <T extends Closeable> FileSystemWrapper<T> openForRead( String path, Function<ReadableByteChannel, T> open ) throws FileSystemException
     {
-        cleanup();
+        m_lock.readLock().lock();
+        try
+        {
+            cleanup();
 
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        ReadableByteChannel channel = mount.openForRead( path );
-        if( channel != null )
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            ReadableByteChannel channel = mount.openForRead( path );
+            if( channel != null )
+            {
+                return openFile( channel, open.apply( channel ) );
+            }
+            return null;
+        }
+        finally
         {
-            return openFile( channel, open.apply( channel ) );
+            m_lock.readLock().unlock();
         }
-        return null;
     }
 
-    public synchronized <T extends Closeable> FileSystemWrapper<T> openForWrite( String path, boolean append, Function<WritableByteChannel, T> open ) throws FileSystemException
+    public <T extends Closeable> FileSystemWrapper<T> openForWrite( String path, boolean append, Function<WritableByteChannel, T> open ) throws FileSystemException
     {
-        cleanup();
+        m_lock.writeLock().lock();
+        try
+        {
+            cleanup();
 
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        WritableByteChannel channel = append ? mount.openForAppend( path ) : mount.openForWrite( path );
-        if( channel != null )
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            WritableByteChannel channel = append ? mount.openForAppend( path ) : mount.openForWrite( path );
+            if( channel != null )
+            {
+                return openFile( channel, open.apply( channel ) );
+            }
+            return null;
+        }
+        finally
         {
-            return openFile( channel, open.apply( channel ) );
+            m_lock.writeLock().unlock();
         }
-        return null;
     }
 
-    public synchronized long getFreeSpace( String path ) throws FileSystemException
+    public long getFreeSpace( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getFreeSpace();
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getFreeSpace();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
     @Nonnull
-    public synchronized OptionalLong getCapacity( String path ) throws FileSystemException
+    public OptionalLong getCapacity( String path ) throws FileSystemException
     {
-        path = sanitizePath( path );
-        MountWrapper mount = getMount( path );
-        return mount.getCapacity();
+        m_lock.readLock().lock();
+        try
+        {
+            path = sanitizePath( path );
+            MountWrapper mount = getMount( path );
+            return mount.getCapacity();
+        }
+        finally
+        {
+            m_lock.readLock().unlock();
+        }
     }
 
-    private synchronized MountWrapper getMount( String path ) throws FileSystemException
+    private MountWrapper getMount( String path ) throws FileSystemException
     {
         // Return the deepest mount that contains a given path
         Iterator<MountWrapper> it = mounts.values().iterator();
@@ -479,7 +669,34 @@ public class FileSystem
 
     private static final Pattern threeDotsPattern = Pattern.compile( "^\\.{3,}$" );
 
+    /**
+     * The maximum number of sanitised paths to cache. When exceeded, the cache is emptied.
+     */
+    private static final int MAX_CACHED_PATHS = 1024;
+
+    /**
+     * The maximum length of a path for it to be cached. This avoids holding on to very large strings.
+     */
+    private static final int MAX_CACHED_PATH_LENGTH = 256;
+
+    private static final Map<String, String> sanitizedPaths = new ConcurrentHashMap<>();
+    private static final Map<String, String> sanitizedWildcardPaths = new ConcurrentHashMap<>();
+
     private static String sanitizePath( String path, boolean allowWildcards )
+    {
+        if( path.length() > MAX_CACHED_PATH_LENGTH ) return sanitizePathUncached( path, allowWildcards );
+
+        Map<String, String> cache = allowWildcards ? sanitizedWildcardPaths : sanitizedPaths;
+        String sanitized = cache.get( path );
+        if( sanitized != null ) return sanitized;
+
+        sanitized = sanitizePathUncached( path, allowWildcards );
+        if( cache.size() >= MAX_CACHED_PATHS ) cache.clear();
+        cache.put( path, sanitized );
+        return sanitized;
+    }
+
+    private static String sanitizePathUncached( String path, boolean allowWildcards )
     {
         // Allow windowsy slashes
         path = path.replace( '\\', '/' );
@@ -15,17 +15,31 @@ import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritableByteChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.List;
-import java.util.OptionalLong;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 class MountWrapper
 {
+    /**
+     * The maximum number of paths to cache metadata for. When exceeded, the cache is emptied.
+     */
+    private static final int MAX_CACHED_PATHS = 4096;
+
     private String label;
     private String location;
 
     private IMount mount;
     private IWritableMount writableMount;
 
+    /**
+     * Cached metadata for paths within this mount, keyed by their local path.
+     *
+     * This is only used for read-only mounts (such as the ROM and treasure disks), whose contents never change.
+     * Writable mounts may be modified outside the game, or through another mount of the same directory, so are always
+     * queried directly.
+     */
+    private final Map<String, Metadata> cache = new ConcurrentHashMap<>();
+
     MountWrapper( String label, String location, IMount mount )
     {
         this.label = label;
@@ -36,7 +50,9 @@ class MountWrapper
 
     MountWrapper( String label, String location, IWritableMount mount )
     {
-        this( label, location, (IMount) mount );
+        this.label = label;
+        this.location = location;
+        this.mount = mount;
         writableMount = mount;
     }
 
@@ -79,7 +95,7 @@ class MountWrapper
         path = toLocal( path );
         try
         {
-            return mount.exists( path );
+            return getMetadata( path ).exists;
         }
         catch( IOException e )
         {
@@ -92,7 +108,7 @@ class MountWrapper
         path = toLocal( path );
         try
         {
-            return mount.exists( path ) && mount.isDirectory( path );
+            return getMetadata( path ).directory;
         }
         catch( IOException e )
         {
@@ -105,12 +121,18 @@ class MountWrapper
         path = toLocal( path );
         try
         {
-            if( !mount.exists( path ) || !mount.isDirectory( path ) )
+            Metadata metadata = getMetadata( path );
+            if( !metadata.directory ) throw localExceptionOf( path, "Not a directory" );
+
+            String[] children = metadata.children;
+            if( children == null )
             {
-                throw localExceptionOf( path, "Not a directory" );
+                List<String> list = new ArrayList<>();
+                mount.list( path, list );
+                metadata.children = children = list.toArray( new String[0] );
             }
 
-            mount.list( path, contents );
+            Collections.addAll( contents, children );
         }
         catch( IOException e )
         {
@@ -123,8 +145,14 @@ class MountWrapper
         path = toLocal( path );
         try
         {
-            if( !mount.exists( path ) ) throw localExceptionOf( path, "No such file" );
-            return mount.isDirectory( path ) ? 0 : mount.getSize( path );
+            Metadata metadata = getMetadata( path );
+            if( !metadata.exists ) throw localExceptionOf( path, "No such file" );
+            if( metadata.directory ) return 0;
+            if( writableMount != null ) return mount.getSize( path );
+
+            long size = metadata.size;
+            if( size < 0 ) metadata.size = size = mount.getSize( path );
+            return size;
         }
         catch( IOException e )
         {
@@ -138,7 +166,7 @@ class MountWrapper
         path = toLocal( path );
         try
         {
-            if( !mount.exists( path ) ) throw localExceptionOf( path, "No such file" );
+            if( !getMetadata( path ).exists ) throw localExceptionOf( path, "No such file" );
             return mount.getAttributes( path );
         }
         catch( IOException e )
@@ -152,7 +180,8 @@ class MountWrapper
         path = toLocal( path );
         try
         {
-            if( mount.exists( path ) && !mount.isDirectory( path ) )
+            Metadata metadata = getMetadata( path );
+            if( metadata.exists && !metadata.directory )
             {
                 return mount.openChannelForRead( path );
             }
@@ -283,6 +312,27 @@ class MountWrapper
         }
     }
 
+    /**
+     * Get the metadata for a path, reading it from the underlying mount if not cached.
+     *
+     * @param path The local path to look up.
+     * @return This path's metadata.
+     * @throws IOException If the mount could not be queried.
+     */
+    private Metadata getMetadata( String path ) throws IOException
+    {
+        Metadata metadata = writableMount == null ? cache.get( path ) : null;
+        if( metadata != null ) return metadata;
+
+        boolean exists = mount.exists( path );
+        metadata = new Metadata( exists, exists && mount.isDirectory( path ) );
+        if( writableMount != null ) return metadata;
+
+        if( cache.size() >= MAX_CACHED_PATHS ) cache.clear();
+        cache.put( path, metadata );
+        return metadata;
+    }
+
     private String toLocal( String path )
     {
         return FileSystem.toLocal( path, location );
@@ -309,4 +359,26 @@ class MountWrapper
     {
         return new FileSystemException( "/" + path + ": " + message );
     }
+
+    private static final class Metadata
+    {
+        final boolean exists;
+        final boolean directory;
+
+        /**
+         * The size of this file, or -1 if not yet known.
+         */
+        volatile long size = -1;
+
+        /**
+         * The children of this directory, or {@code null} if not yet known.
+         */
+        volatile String[] children;
+
+        Metadata( boolean exists, boolean directory )
+        {
+            this.exists = exists;
+            this.directory = directory;
+        }
+    }
 }
@@ -5,6 +5,7 @@
  */
 package dan200.computercraft.core.lua;
 
+import com.google.common.collect.MapMaker;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.lua.*;
 import dan200.computercraft.core.computer.Computer;
@@ -12,7 +13,6 @@ import dan200.computercraft.core.computer.MainThread;
 import dan200.computercraft.core.computer.TimeoutState;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.core.tracking.TrackingField;
-import dan200.computercraft.shared.util.ThreadUtils;
 import org.squiddev.cobalt.*;
 import org.squiddev.cobalt.compiler.CompileException;
 import org.squiddev.cobalt.compiler.LoadState;
@@ -28,9 +28,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.InputStream;
 import java.util.*;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.squiddev.cobalt.ValueFactory.valueOf;
 import static org.squiddev.cobalt.ValueFactory.varargsOf;
@@ -39,18 +37,36 @@ import static org.squiddev.cobalt.debug.DebugFrame.FLAG_HOOKYIELD;
 
 public class CobaltLuaMachine implements ILuaMachine
 {
-    private static final ThreadPoolExecutor COROUTINES = new ThreadPoolExecutor(
-        0, Integer.MAX_VALUE,
-        5L, TimeUnit.MINUTES,
-        new SynchronousQueue<>(),
-        ThreadUtils.factory( "Coroutine" )
-    );
+    private static final String COROUTINE_LIMIT_MESSAGE = "Too many coroutines";
+
+    /**
+     * Set on the thread of a coroutine which has been refused, until it has errored.
+     *
+     * @see #startCoroutine(Runnable)
+     */
+    private static final ThreadLocal<Boolean> REFUSED_COROUTINE = new ThreadLocal<>();
+
+    private static final Object[] NO_OBJECTS = new Object[0];
+
+    private static final int SMALL_DOUBLE_MIN = -128;
+    private static final Double[] SMALL_DOUBLES = new Double[1024 - SMALL_DOUBLE_MIN + 1];
+    private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits( -0.0 );
+
+    static
+    {
+        for( int i = 0; i < SMALL_DOUBLES.length; i++ ) SMALL_DOUBLES[i] = (double) (i + SMALL_DOUBLE_MIN);
+    }
 
     private final Computer m_computer;
     private final TimeoutState timeout;
     private final TimeoutDebugHandler debug;
     private final ILuaContext context = new CobaltLuaContext();
 
+    /**
+     * The number of coroutines belonging to this computer which currently hold a thread.
+     */
+    private final AtomicInteger activeCoroutines = new AtomicInteger();
+
     private LuaState m_state;
     private LuaTable m_globals;
 
@@ -67,19 +83,7 @@ public class CobaltLuaMachine implements ILuaMachine
         LuaState state = m_state = LuaState.builder()
             .resourceManipulator( new VoidResourceManipulator() )
             .debug( debug )
-            .coroutineExecutor( command -> {
-                Tracking.addValue( m_computer, TrackingField.COROUTINES_CREATED, 1 );
-                COROUTINES.execute( () -> {
-                    try
-                    {
-                        command.run();
-                    }
-                    finally
-                    {
-                        Tracking.addValue( m_computer, TrackingField.COROUTINES_DISPOSED, 1 );
-                    }
-                } );
-            } )
+            .coroutineExecutor( this::startCoroutine )
             .build();
 
         m_globals = new LuaTable();
@@ -216,66 +220,178 @@ public class CobaltLuaMachine implements ILuaMachine
         m_globals = null;
     }
 
+    @Override
+    public int getCoroutineCount()
+    {
+        return activeCoroutines.get();
+    }
+
+    /**
+     * Start a coroutine on the shared {@link CoroutinePool}.
+     *
+     * If this computer has exceeded its coroutine limit, or the pool is saturated, then the coroutine is refused: it is
+     * run on a short-lived thread and errors with {@link #COROUTINE_LIMIT_MESSAGE} on its first instruction (or the
+     * first call to one of our methods). We cannot simply fail to run it, as the resuming coroutine would then wait on
+     * it forever.
+     *
+     * The refusal is marked on the refused coroutine's own thread, so it can never be picked up by another coroutine,
+     * even if this one finishes without running any Lua code.
+     *
+     * @param command The coroutine's body, as provided by Cobalt.
+     */
+    private void startCoroutine( Runnable command )
+    {
+        Tracking.addValue( m_computer, TrackingField.COROUTINES_CREATED, 1 );
+
+        // Reserve our slot before starting the coroutine, so a burst of coroutines cannot all pass the limit check.
+        int limit = ComputerCraft.maxCoroutinesPerComputer;
+        int active = activeCoroutines.incrementAndGet();
+        if( (limit <= 0 || active <= limit) && CoroutinePool.tryExecute( () -> runCoroutine( command, false ) ) )
+        {
+            return;
+        }
+
+        activeCoroutines.decrementAndGet();
+        CoroutinePool.executeOverflow( () -> runCoroutine( command, true ) );
+    }
+
+    private void runCoroutine( Runnable command, boolean refused )
+    {
+        if( refused )
+        {
+            debug.refusedCoroutines.incrementAndGet();
+            REFUSED_COROUTINE.set( Boolean.TRUE );
+        }
+
+        try
+        {
+            command.run();
+        }
+        finally
+        {
+            if( refused )
+            {
+                debug.clearRefused();
+            }
+            else
+            {
+                activeCoroutines.decrementAndGet();
+            }
+            Tracking.addValue( m_computer, TrackingField.COROUTINES_DISPOSED, 1 );
+        }
+    }
+
     private LuaTable wrapLuaObject( ILuaObject object )
     {
-        LuaTable table = new LuaTable();
-        String[] methods = object.getMethodNames();
-        for( int i = 0; i < methods.length; i++ )
+        MethodTable methods = MethodTable.get( object );
+        LuaTable table = new LuaTable( 0, methods.count );
+        for( int i = 0; i < methods.keys.length; i++ )
+        {
+            LuaString key = methods.keys[i];
+            if( key != null ) table.rawset( key, new BoundMethod( object, i, methods ) );
+        }
+        return table;
+    }
+
+    /**
+     * The Lua names of the methods provided by an {@link ILuaObject}. These are shared between all instances of a
+     * class which provide the same methods, so wrapping an object does not need to convert each name again.
+     */
+    private static final class MethodTable
+    {
+        private static final Map<Class<?>, MethodTable> cache = new MapMaker().weakKeys().makeMap();
+
+        final String[] names;
+        final LuaString[] keys;
+        final int count;
+        final boolean lazyTables;
+        final boolean byteStrings;
+
+        private MethodTable( Class<?> klass, String[] names )
         {
-            if( methods[i] != null )
+            this.names = names;
+            keys = new LuaString[names.length];
+            int count = 0;
+            for( int i = 0; i < names.length; i++ )
             {
-                final int method = i;
-                final ILuaObject apiObject = object;
-                final String methodName = methods[i];
-                table.rawset( methodName, new VarArgFunction()
+                if( names[i] == null ) continue;
+                keys[i] = LuaString.valueOf( names[i] );
+                count++;
+            }
+            this.count = count;
+            lazyTables = ILazyTableArguments.class.isAssignableFrom( klass );
+            byteStrings = IByteStringArguments.class.isAssignableFrom( klass );
+        }
+
+        static MethodTable get( ILuaObject object )
+        {
+            // Most objects return the same methods for every instance. However, some (such as peripherals which
+            // provide methods dynamically) do not, so we check the names still match before reusing the table.
+            String[] names = object.getMethodNames();
+            Class<?> klass = object.getClass();
+            MethodTable table = cache.get( klass );
+            if( table != null && Arrays.equals( table.names, names ) ) return table;
+
+            table = new MethodTable( klass, names.clone() );
+            cache.put( klass, table );
+            return table;
+        }
+    }
+
+    /**
+     * A function which calls a method on a specific {@link ILuaObject}.
+     */
+    private final class BoundMethod extends VarArgFunction
+    {
+        private final ILuaObject object;
+        private final int method;
+        private final MethodTable methods;
+
+        BoundMethod( ILuaObject object, int method, MethodTable methods )
+        {
+            this.object = object;
+            this.method = method;
+            this.methods = methods;
+        }
+
+        @Override
+        public Varargs invoke( final LuaState state, Varargs args ) throws LuaError
+        {
+            debug.checkRefused();
+
+            Object[] arguments = toObjects( args, 1, methods.lazyTables, methods.byteStrings );
+            Object[] results;
+            try
+            {
+                results = object.callMethod( context, method, arguments );
+            }
+            catch( InterruptedException e )
+            {
+                throw new InterruptedError( e );
+            }
+            catch( LuaException e )
+            {
+                throw new LuaError( e.getMessage(), e.getLevel() );
+            }
+            catch( Throwable t )
+            {
+                if( ComputerCraft.logPeripheralErrors )
                 {
-                    @Override
-                    public Varargs invoke( final LuaState state, Varargs args ) throws LuaError
-                    {
-                        Object[] arguments = toObjects( args, 1 );
-                        Object[] results;
-                        try
-                        {
-                            results = apiObject.callMethod( context, method, arguments );
-                        }
-                        catch( InterruptedException e )
-                        {
-                            throw new InterruptedError( e );
-                        }
-                        catch( LuaException e )
-                        {
-                            throw new LuaError( e.getMessage(), e.getLevel() );
-                        }
-                        catch( Throwable t )
-                        {
-                            if( ComputerCraft.logPeripheralErrors )
-                            {
-                                ComputerCraft.log.error( "Error calling " + methodName + " on " + apiObject, t );
-                            }
-                            throw new LuaError( "Java Exception Thrown: " + t, 0 );
-                        }
-                        return toValues( results );
-                    }
-                } );
+                    ComputerCraft.log.error( "Error calling " + methods.names[method] + " on " + object, t );
+                }
+                throw new LuaError( "Java Exception Thrown: " + t, 0 );
             }
+            return toValues( results );
         }
-        return table;
     }
 
     @Nonnull
     private LuaValue toValue( @Nullable Object object, @Nonnull Map<Object, LuaValue> values )
     {
-        if( object == null ) return Constants.NIL;
-        if( object instanceof Number ) return valueOf( ((Number) object).doubleValue() );
-        if( object instanceof Boolean ) return valueOf( (Boolean) object );
-        if( object instanceof String ) return valueOf( object.toString() );
-        if( object instanceof byte[] )
-        {
-            byte[] b = (byte[]) object;
-            return valueOf( Arrays.copyOf( b, b.length ) );
-        }
+        LuaValue result = toPrimitiveValue( object );
+        if( result != null ) return result;
 
-        LuaValue result = values.get( object );
+        result = values.get( object );
         if( result != null ) return result;
 
         if( object instanceof ILuaObject )
@@ -325,21 +441,93 @@ public class CobaltLuaMachine implements ILuaMachine
         return Constants.NIL;
     }
 
+    /**
+     * Convert a Java value to Lua, if it is a primitive (and so does not need to be tracked for cycles).
+     *
+     * @param object The object to convert.
+     * @return The converted value, or {@code null} if this is not a primitive.
+     */
+    @Nullable
+    private static LuaValue toPrimitiveValue( @Nullable Object object )
+    {
+        if( object == null ) return Constants.NIL;
+        if( object instanceof String ) return valueOf( (String) object );
+        if( object instanceof Boolean ) return (Boolean) object ? Constants.TRUE : Constants.FALSE;
+        if( object instanceof Integer ) return valueOf( (int) (Integer) object );
+        if( object instanceof Number ) return valueOf( ((Number) object).doubleValue() );
+        if( object instanceof byte[] )
+        {
+            byte[] b = (byte[]) object;
+            return valueOf( Arrays.copyOf( b, b.length ) );
+        }
+        if( object instanceof OwnedByteArray )
+        {
+            OwnedByteArray b = (OwnedByteArray) object;
+            return LuaString.valueOf( b.getBytes(), b.getOffset(), b.getLength() );
+        }
+        if( object instanceof ByteString )
+        {
+            // Byte strings are immutable, so can share their array with Lua.
+            ByteString b = (ByteString) object;
+            return LuaString.valueOf( b.getBytes(), b.getOffset(), b.length() );
+        }
+
+        return null;
+    }
+
     private Varargs toValues( Object[] objects )
     {
         if( objects == null || objects.length == 0 ) return Constants.NONE;
 
-        Map<Object, LuaValue> result = new IdentityHashMap<>( 0 );
+        // Most methods return one or two primitives, so avoid allocating an array or map for these.
+        if( objects.length <= 2 )
+        {
+            LuaValue first = toPrimitiveValue( objects[0] );
+            if( first != null )
+            {
+                if( objects.length == 1 ) return first;
+
+                LuaValue second = toPrimitiveValue( objects[1] );
+                if( second != null ) return varargsOf( first, second );
+            }
+        }
+
+        Map<Object, LuaValue> result = null;
         LuaValue[] values = new LuaValue[objects.length];
         for( int i = 0; i < values.length; i++ )
         {
             Object object = objects[i];
-            values[i] = toValue( object, result );
+            LuaValue value = toPrimitiveValue( object );
+            if( value == null )
+            {
+                if( result == null ) result = new IdentityHashMap<>( 1 );
+                value = toValue( object, result );
+            }
+            values[i] = value;
         }
         return varargsOf( values );
     }
 
-    private static Object toObject( LuaValue value, Map<LuaValue, Object> objects )
+    /**
+     * Box a number, reusing a shared instance for small integers. Most numbers passed to methods are colours,
+     * coordinates or slot indices, so this avoids the majority of allocations when converting arguments.
+     *
+     * @param value The number to box.
+     * @return The boxed number.
+     */
+    static Double toDouble( double value )
+    {
+        int index = (int) value - SMALL_DOUBLE_MIN;
+        if( index >= 0 && index < SMALL_DOUBLES.length && index + SMALL_DOUBLE_MIN == value
+            && Double.doubleToRawLongBits( value ) != NEGATIVE_ZERO )
+        {
+            return SMALL_DOUBLES[index];
+        }
+
+        return value;
+    }
+
+    static Object toObject( LuaValue value, Map<LuaValue, Object> objects )
     {
         switch( value.type() )
         {
@@ -348,7 +536,7 @@ public class CobaltLuaMachine implements ILuaMachine
                 return null;
             case Constants.TINT:
             case Constants.TNUMBER:
-                return value.toDouble();
+                return toDouble( value.toDouble() );
             case Constants.TBOOLEAN:
                 return value.toBoolean();
             case Constants.TSTRING:
@@ -405,14 +593,30 @@ public class CobaltLuaMachine implements ILuaMachine
     }
 
     private static Object[] toObjects( Varargs values, int startIdx )
+    {
+        return toObjects( values, startIdx, false, false );
+    }
+
+    private static Object[] toObjects( Varargs values, int startIdx, boolean lazyTables, boolean byteStrings )
     {
         int count = values.count();
+        if( count < startIdx ) return NO_OBJECTS;
+
         Object[] objects = new Object[count - startIdx + 1];
         for( int n = startIdx; n <= count; n++ )
         {
             int i = n - startIdx;
             LuaValue value = values.arg( n );
-            objects[i] = toObject( value, null );
+            if( byteStrings && value instanceof LuaString )
+            {
+                // Pass the string's bytes straight through, rather than decoding them into a String.
+                LuaString string = (LuaString) value;
+                objects[i] = ByteString.of( string.bytes, string.offset, string.length );
+            }
+            else
+            {
+                objects[i] = lazyTables ? LuaTableView.toObject( value ) : toObject( value, null );
+            }
         }
         return objects;
     }
@@ -426,6 +630,14 @@ public class CobaltLuaMachine implements ILuaMachine
         private int count = 0;
         boolean thrownSoftAbort;
 
+        /**
+         * The number of refused coroutines which have not yet errored. This allows us to skip looking up
+         * {@link #REFUSED_COROUTINE} in the common case.
+         *
+         * @see #startCoroutine(Runnable)
+         */
+        final AtomicInteger refusedCoroutines = new AtomicInteger();
+
         private boolean isPaused;
         private int oldFlags;
         private boolean oldInHook;
@@ -440,6 +652,8 @@ public class CobaltLuaMachine implements ILuaMachine
         {
             di.pc = pc;
 
+            checkRefused();
+
             if( isPaused ) resetPaused( ds, di );
 
             // We check our current pause/abort state every 128 instructions.
@@ -480,6 +694,30 @@ public class CobaltLuaMachine implements ILuaMachine
             handleSoftAbort();
         }
 
+        /**
+         * Error if the current thread belongs to a refused coroutine.
+         *
+         * @throws LuaError If this coroutine has been refused.
+         */
+        void checkRefused() throws LuaError
+        {
+            if( refusedCoroutines.get() > 0 && clearRefused() ) throw new LuaError( COROUTINE_LIMIT_MESSAGE );
+        }
+
+        /**
+         * Clear the refused marker from the current thread.
+         *
+         * @return Whether the current thread was marked as refused.
+         */
+        boolean clearRefused()
+        {
+            if( REFUSED_COROUTINE.get() == null ) return false;
+
+            REFUSED_COROUTINE.remove();
+            refusedCoroutines.decrementAndGet();
+            return true;
+        }
+
         private void resetPaused( DebugState ds, DebugFrame di )
         {
             // Restore the previous paused state
@@ -564,40 +802,116 @@ public class CobaltLuaMachine implements ILuaMachine
         @Override
         public Object[] executeMainThreadTask( @Nonnull final ILuaTask task ) throws LuaException, InterruptedException
         {
-            // Issue task
-            final long taskID = issueMainThreadTask( task );
+            // Rather than sending our results back via an event, we store them in the task and then resume the
+            // computer directly. This avoids converting the results to Lua and back, and means the completion can
+            // never be dropped by a full event queue.
+            PendingTask pending = queueTask( task );
 
             // Wait for response
             while( true )
             {
                 Object[] response = pullEvent( "task_complete" );
-                if( response.length >= 3 && response[1] instanceof Number && response[2] instanceof Boolean )
+                if( pending.isCompletedBy( response ) ) return pending.getResult();
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Object[][] executeMainThreadTasks( @Nonnull ILuaTask... tasks ) throws LuaException, InterruptedException
+        {
+            // Queue everything up front, so they can all be run in the same tick.
+            PendingTask[] pending = new PendingTask[tasks.length];
+            for( int i = 0; i < tasks.length; i++ ) pending[i] = queueTask( tasks[i] );
+
+            int remaining = pending.length;
+            boolean[] completed = new boolean[pending.length];
+            while( remaining > 0 )
+            {
+                Object[] response = pullEvent( "task_complete" );
+                for( int i = 0; i < pending.length; i++ )
                 {
-                    if( ((Number) response[1]).intValue() == taskID )
+                    if( !completed[i] && pending[i].isCompletedBy( response ) )
                     {
-                        Object[] returnValues = new Object[response.length - 3];
-                        if( (Boolean) response[2] )
-                        {
-                            // Extract the return values from the event and return them
-                            System.arraycopy( response, 3, returnValues, 0, returnValues.length );
-                            return returnValues;
-                        }
-                        else
-                        {
-                            // Extract the error message from the event and raise it
-                            if( response.length >= 4 && response[3] instanceof String )
-                            {
-                                throw new LuaException( (String) response[3] );
-                            }
-                            else
-                            {
-                                throw new LuaException();
-                            }
-                        }
+                        completed[i] = true;
+                        remaining--;
+                        break;
                     }
                 }
             }
 
+            Object[][] results = new Object[pending.length][];
+            for( int i = 0; i < pending.length; i++ ) results[i] = pending[i].getResult();
+            return results;
+        }
+
+        private PendingTask queueTask( ILuaTask task ) throws LuaException
+        {
+            PendingTask pending = new PendingTask( task );
+            m_computer.queueTaskStarted( pending.id );
+            if( !m_computer.queueMainThread( pending ) )
+            {
+                m_computer.queueTaskCancelled( pending.id );
+                throw new LuaException( "Task limit exceeded" );
+            }
+            return pending;
+        }
+    }
+
+    /**
+     * A task queued by {@link CobaltLuaContext#executeMainThreadTask(ILuaTask)}. The result is written on the main
+     * thread, and read once the computer has been resumed.
+     */
+    private final class PendingTask implements Runnable
+    {
+        final long id = MainThread.getUniqueTaskID();
+        private final ILuaTask task;
+
+        private Object[] values;
+        private LuaException error;
+        private volatile boolean done;
+
+        PendingTask( ILuaTask task )
+        {
+            this.task = task;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                values = task.execute();
+            }
+            catch( LuaException e )
+            {
+                error = e;
+            }
+            catch( Throwable t )
+            {
+                if( ComputerCraft.logPeripheralErrors ) ComputerCraft.log.error( "Error running task", t );
+                error = new LuaException( "Java Exception Thrown: " + t );
+            }
+
+            done = true;
+            m_computer.queueTaskComplete( id );
+        }
+
+        /**
+         * Determine whether an event signals that this task has completed.
+         *
+         * @param event The event's name and arguments.
+         * @return Whether this task has completed.
+         */
+        boolean isCompletedBy( Object[] event )
+        {
+            // Lua code may queue its own task_complete events, so check the task has actually finished.
+            return event.length == 2 && event[1] instanceof Number && ((Number) event[1]).longValue() == id && done;
+        }
+
+        Object[] getResult() throws LuaException
+        {
+            if( error != null ) throw error;
+            return values == null ? NO_OBJECTS : values;
         }
     }
 
@@ -0,0 +1,156 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.shared.util.ThreadUtils;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manages the threads which Lua coroutines are run on.
+ *
+ * Cobalt runs each coroutine on its own thread, which remains parked for as long as the coroutine is suspended. By
+ * default we spawn as many threads as are required. However, one may instead:
+ *
+ * <ul>
+ * <li>Cap the number of coroutine threads ({@link ComputerCraft#coroutine_threads}). Once this cap is reached,
+ * {@link #tryExecute(Runnable)} will fail, and the caller is expected to refuse the coroutine.</li>
+ * <li>Run coroutines on virtual threads ({@link ComputerCraft#coroutine_virtual_threads}), should the current JVM
+ * support them. These are cheap enough that we do not pool them at all.</li>
+ * </ul>
+ *
+ * The pool is created on first use, and so changes to the config require a restart to take effect.
+ */
+public final class CoroutinePool
+{
+    private static final ThreadFactory overflowFactory = ThreadUtils.factory( "Coroutine-Overflow" );
+
+    /**
+     * The number of coroutines, across all computers, which currently hold a thread.
+     */
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private static final Object lock = new Object();
+    private static volatile Executor executor;
+
+    private CoroutinePool()
+    {
+    }
+
+    /**
+     * Attempt to run a coroutine on the shared pool.
+     *
+     * @param task The coroutine to run.
+     * @return Whether the coroutine was scheduled. This will be {@code false} if the pool is saturated.
+     */
+    static boolean tryExecute( Runnable task )
+    {
+        try
+        {
+            getExecutor().execute( counted( task ) );
+            return true;
+        }
+        catch( RejectedExecutionException e )
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Run a coroutine on a fresh thread, outside of the shared pool.
+     *
+     * This is used for coroutines which have been refused (either due to the pool being saturated, or the computer
+     * hitting its coroutine limit). These still need a thread to run on (otherwise the resuming thread would wait
+     * forever), but will error on their first instruction, so the thread is short-lived.
+     *
+     * @param task The coroutine to run.
+     */
+    static void executeOverflow( Runnable task )
+    {
+        overflowFactory.newThread( counted( task ) ).start();
+    }
+
+    /**
+     * Get the number of coroutines, across all computers, which currently hold a thread. This includes refused
+     * coroutines which have not yet finished, but not idle threads in the pool.
+     *
+     * @return The number of running coroutine threads.
+     */
+    public static int getThreadCount()
+    {
+        return threads.get();
+    }
+
+    private static Runnable counted( Runnable task )
+    {
+        return () -> {
+            threads.incrementAndGet();
+            try
+            {
+                task.run();
+            }
+            finally
+            {
+                threads.decrementAndGet();
+            }
+        };
+    }
+
+    private static Executor getExecutor()
+    {
+        Executor executor = CoroutinePool.executor;
+        if( executor != null ) return executor;
+
+        synchronized( lock )
+        {
+            if( CoroutinePool.executor == null ) CoroutinePool.executor = createExecutor();
+            return CoroutinePool.executor;
+        }
+    }
+
+    private static Executor createExecutor()
+    {
+        if( ComputerCraft.coroutine_virtual_threads )
+        {
+            ThreadFactory factory = getVirtualThreadFactory();
+            if( factory != null ) return task -> factory.newThread( task ).start();
+
+            ComputerCraft.log.warn( "Virtual threads are not supported on this JVM, using the coroutine thread pool instead." );
+        }
+
+        int threads = ComputerCraft.coroutine_threads;
+        return new ThreadPoolExecutor(
+            0, threads <= 0 ? Integer.MAX_VALUE : threads,
+            5L, TimeUnit.MINUTES,
+            new SynchronousQueue<>(),
+            ThreadUtils.factory( "Coroutine" )
+        );
+    }
+
+    /**
+     * Create a factory for virtual threads. As we compile against Java 8, this must be done reflectively.
+     *
+     * @return The virtual thread factory, or {@code null} if they are not supported.
+     */
+    @Nullable
+    private static ThreadFactory getVirtualThreadFactory()
+    {
+        try
+        {
+            Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+            Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            builder = builderClass.getMethod( "name", String.class, long.class ).invoke( builder, "ComputerCraft-Coroutine-", 0L );
+            return (ThreadFactory) builderClass.getMethod( "factory" ).invoke( builder );
+        }
+        catch( ReflectiveOperationException | RuntimeException e )
+        {
+            return null;
+        }
+    }
+}
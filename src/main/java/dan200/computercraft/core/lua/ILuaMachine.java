@@ -63,4 +63,11 @@ public interface ILuaMachine
      * Close the Lua machine, aborting any running functions and deleting the internal state.
      */
     void close();
+
+    /**
+     * Get the number of this machine's coroutines which currently hold a thread.
+     *
+     * @return The number of running coroutines.
+     */
+    int getCoroutineCount();
 }
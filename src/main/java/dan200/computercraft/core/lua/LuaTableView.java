@@ -0,0 +1,191 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.api.lua.ILazyTableArguments;
+import org.squiddev.cobalt.*;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+
+import static org.squiddev.cobalt.ValueFactory.valueOf;
+
+/**
+ * A read-only {@link Map} which reads from a {@link LuaTable} on demand, rather than copying it up front.
+ *
+ * Keys and values are converted in the same way as {@link CobaltLuaMachine#toObject(LuaValue, Map)}, with nested
+ * tables being returned as further views. Lookups may use any {@link Number} as a key, rather than requiring a
+ * {@link Double}.
+ *
+ * These are only passed to objects implementing {@link ILazyTableArguments}. Everything else receives a copy, which
+ * may be created with {@link #materialise(Object[])}.
+ */
+public final class LuaTableView extends AbstractMap<Object, Object>
+{
+    private final LuaTable table;
+    private Set<Entry<Object, Object>> entrySet;
+
+    LuaTableView( @Nonnull LuaTable table )
+    {
+        this.table = table;
+    }
+
+    @Override
+    public Object get( Object key )
+    {
+        LuaValue luaKey = toKey( key );
+        return luaKey == null ? null : toObject( table.rawget( luaKey ) );
+    }
+
+    @Override
+    public boolean containsKey( Object key )
+    {
+        return get( key ) != null;
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return !entrySet().iterator().hasNext();
+    }
+
+    @Nonnull
+    @Override
+    public Set<Entry<Object, Object>> entrySet()
+    {
+        Set<Entry<Object, Object>> entrySet = this.entrySet;
+        if( entrySet == null )
+        {
+            this.entrySet = entrySet = new AbstractSet<Entry<Object, Object>>()
+            {
+                @Nonnull
+                @Override
+                public Iterator<Entry<Object, Object>> iterator()
+                {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size()
+                {
+                    int size = 0;
+                    for( Iterator<?> iterator = iterator(); iterator.hasNext(); iterator.next() ) size++;
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    /**
+     * Convert a Lua value to a Java one, wrapping tables in a view.
+     *
+     * @param value The value to convert.
+     * @return The converted value, or {@code null} if it is {@code nil} or cannot be converted.
+     */
+    @Nullable
+    static Object toObject( @Nonnull LuaValue value )
+    {
+        switch( value.type() )
+        {
+            case Constants.TINT:
+            case Constants.TNUMBER:
+                return CobaltLuaMachine.toDouble( value.toDouble() );
+            case Constants.TBOOLEAN:
+                return value.toBoolean();
+            case Constants.TSTRING:
+                return value.toString();
+            case Constants.TTABLE:
+                return new LuaTableView( (LuaTable) value );
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static LuaValue toKey( Object key )
+    {
+        if( key instanceof Number ) return valueOf( ((Number) key).doubleValue() );
+        if( key instanceof String ) return valueOf( (String) key );
+        if( key instanceof Boolean ) return valueOf( (Boolean) key );
+        return null;
+    }
+
+    /**
+     * Copy any views in a list of arguments into normal maps, for passing to objects which do not implement
+     * {@link ILazyTableArguments}.
+     *
+     * @param arguments The arguments to copy.
+     * @return The original array if there were no views, otherwise a copy with every view replaced.
+     */
+    @Nonnull
+    public static Object[] materialise( @Nonnull Object[] arguments )
+    {
+        Object[] result = arguments;
+        for( int i = 0; i < arguments.length; i++ )
+        {
+            Object argument = arguments[i];
+            if( !(argument instanceof LuaTableView) ) continue;
+
+            if( result == arguments ) result = arguments.clone();
+            result[i] = CobaltLuaMachine.toObject( ((LuaTableView) argument).table, null );
+        }
+        return result;
+    }
+
+    private final class EntryIterator implements Iterator<Entry<Object, Object>>
+    {
+        private LuaValue key = Constants.NIL;
+        private Entry<Object, Object> next;
+        private boolean finished;
+
+        @Override
+        public boolean hasNext()
+        {
+            if( next != null ) return true;
+            if( finished ) return false;
+
+            while( true )
+            {
+                Varargs keyValue;
+                try
+                {
+                    keyValue = table.next( key );
+                }
+                catch( LuaError e )
+                {
+                    // The table was modified while iterating, so there's not much we can do.
+                    finished = true;
+                    return false;
+                }
+
+                key = keyValue.first();
+                if( key.isNil() )
+                {
+                    finished = true;
+                    return false;
+                }
+
+                Object keyObject = toObject( key ), valueObject = toObject( keyValue.arg( 2 ) );
+                if( keyObject != null && valueObject != null )
+                {
+                    next = new SimpleImmutableEntry<>( keyObject, valueObject );
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public Entry<Object, Object> next()
+        {
+            if( !hasNext() ) throw new NoSuchElementException();
+            Entry<Object, Object> result = next;
+            next = null;
+            return result;
+        }
+    }
+}
@@ -5,15 +5,44 @@
  */
 package dan200.computercraft.core.terminal;
 
+import dan200.computercraft.api.lua.ByteString;
 import dan200.computercraft.shared.util.Colour;
 import dan200.computercraft.shared.util.Palette;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.network.PacketBuffer;
 
+import java.util.Arrays;
+
+/**
+ * A grid of characters, each with a text and background colour, plus a cursor and palette.
+ *
+ * Cells are stored packed into two arrays: one byte for each character, and one byte for each pair of colours (the
+ * background colour in the high nibble and the text colour in the low nibble). Rows are stored as a ring buffer, so
+ * scrolling only needs to clear the rows which scroll into view, rather than moving every row.
+ *
+ * Lines may still be accessed as {@link TextBuffer}s with {@link #getLine(int)}, {@link #getTextColourLine(int)} and
+ * {@link #getBackgroundColourLine(int)}, which read from and write to the packed storage directly.
+ */
 public class Terminal
 {
     private static final String base16 = "0123456789abcdef";
 
+    /**
+     * The colour for each byte of a {@link #blit(ByteString, ByteString, ByteString)} colour string. Invalid colours
+     * are white for text and black for backgrounds, as with {@link #getColour(char, Colour)}.
+     */
+    private static final byte[] TEXT_COLOURS = new byte[256];
+    private static final byte[] BACKGROUND_COLOURS = new byte[256];
+
+    static
+    {
+        for( int i = 0; i < 256; i++ )
+        {
+            TEXT_COLOURS[i] = (byte) getColour( (char) i, Colour.White );
+            BACKGROUND_COLOURS[i] = (byte) getColour( (char) i, Colour.Black );
+        }
+    }
+
     private int m_cursorX = 0;
     private int m_cursorY = 0;
     private boolean m_cursorBlink = false;
@@ -23,12 +52,58 @@ public class Terminal
     private int m_width;
     private int m_height;
 
-    private TextBuffer[] m_text;
-    private TextBuffer[] m_textColour;
-    private TextBuffer[] m_backgroundColour;
+    /**
+     * The character in each cell. Logical row {@code y} is stored at physical row {@code (m_top + y) % m_height}.
+     *
+     * @see #offset(int)
+     */
+    private byte[] m_text;
+
+    /**
+     * The colours of each cell, with the background colour in the high nibble and text colour in the low nibble. This
+     * uses the same layout as {@link #m_text}.
+     */
+    private byte[] m_colours;
+
+    /**
+     * The physical row which logical row 0 is stored in.
+     */
+    private int m_top;
+
+    /**
+     * Views over each physical row, created when first requested.
+     */
+    private TextBuffer[] m_textLines;
+    private TextBuffer[] m_textColourLines;
+    private TextBuffer[] m_backgroundColourLines;
 
     private final Palette m_palette = new Palette();
 
+    /**
+     * Which lines have changed since the last call to {@link #writeDelta(PacketBuffer)}.
+     */
+    private boolean[] m_dirtyLines;
+
+    /**
+     * How far this terminal has been scrolled in total. This is sent with every snapshot and delta, so clients scroll
+     * by however far they are behind, rather than by how far the terminal has moved since the last delta. Lines which
+     * are not marked as dirty have moved by the same amount.
+     *
+     * This is allowed to overflow: clients only ever look at the difference between two positions, and a large scroll
+     * leaves every line dirty anyway.
+     */
+    private int m_scrollPosition = 0;
+
+    /**
+     * Whether the next delta must be a full snapshot, such as after the terminal has been resized.
+     */
+    private boolean m_fullDirty = true;
+
+    /**
+     * The palette as of the last delta, encoded with {@link Palette#encodeRGB8(double[])}.
+     */
+    private final int[] m_sentPalette = new int[Palette.PALETTE_SIZE];
+
     private boolean m_changed = false;
     private final Runnable onChanged;
 
@@ -43,15 +118,25 @@ public class Terminal
         m_height = height;
         onChanged = changedCallback;
 
-        m_text = new TextBuffer[m_height];
-        m_textColour = new TextBuffer[m_height];
-        m_backgroundColour = new TextBuffer[m_height];
-        for( int i = 0; i < m_height; i++ )
-        {
-            m_text[i] = new TextBuffer( ' ', m_width );
-            m_textColour[i] = new TextBuffer( base16.charAt( m_cursorColour ), m_width );
-            m_backgroundColour[i] = new TextBuffer( base16.charAt( m_cursorBackgroundColour ), m_width );
-        }
+        allocate();
+        m_dirtyLines = new boolean[m_height];
+    }
+
+    /**
+     * Allocate storage for the current width and height, filled with blank cells in the current colours.
+     */
+    private void allocate()
+    {
+        int size = m_width * m_height;
+        m_text = new byte[size];
+        m_colours = new byte[size];
+        m_top = 0;
+        Arrays.fill( m_text, (byte) ' ' );
+        Arrays.fill( m_colours, getCursorColours() );
+
+        m_textLines = new TextBuffer[m_height];
+        m_textColourLines = new TextBuffer[m_height];
+        m_backgroundColourLines = new TextBuffer[m_height];
     }
 
     public synchronized void reset()
@@ -85,40 +170,25 @@ public class Terminal
 
         int oldHeight = m_height;
         int oldWidth = m_width;
-        TextBuffer[] oldText = m_text;
-        TextBuffer[] oldTextColour = m_textColour;
-        TextBuffer[] oldBackgroundColour = m_backgroundColour;
+        int oldTop = m_top;
+        byte[] oldText = m_text;
+        byte[] oldColours = m_colours;
 
         m_width = width;
         m_height = height;
+        allocate();
 
-        m_text = new TextBuffer[m_height];
-        m_textColour = new TextBuffer[m_height];
-        m_backgroundColour = new TextBuffer[m_height];
-        for( int i = 0; i < m_height; i++ )
+        // Copy across as much of the old terminal as will fit.
+        int copyWidth = Math.min( oldWidth, width );
+        for( int y = 0; y < Math.min( oldHeight, height ); y++ )
         {
-            if( i >= oldHeight )
-            {
-                m_text[i] = new TextBuffer( ' ', m_width );
-                m_textColour[i] = new TextBuffer( base16.charAt( m_cursorColour ), m_width );
-                m_backgroundColour[i] = new TextBuffer( base16.charAt( m_cursorBackgroundColour ), m_width );
-            }
-            else if( m_width == oldWidth )
-            {
-                m_text[i] = oldText[i];
-                m_textColour[i] = oldTextColour[i];
-                m_backgroundColour[i] = oldBackgroundColour[i];
-            }
-            else
-            {
-                m_text[i] = new TextBuffer( ' ', m_width );
-                m_textColour[i] = new TextBuffer( base16.charAt( m_cursorColour ), m_width );
-                m_backgroundColour[i] = new TextBuffer( base16.charAt( m_cursorBackgroundColour ), m_width );
-                m_text[i].write( oldText[i] );
-                m_textColour[i].write( oldTextColour[i] );
-                m_backgroundColour[i].write( oldBackgroundColour[i] );
-            }
+            int oldOffset = ((oldTop + y) % oldHeight) * oldWidth;
+            System.arraycopy( oldText, oldOffset, m_text, y * width, copyWidth );
+            System.arraycopy( oldColours, oldOffset, m_colours, y * width, copyWidth );
         }
+
+        m_dirtyLines = new boolean[m_height];
+        m_fullDirty = true;
         setChanged();
     }
 
@@ -195,9 +265,11 @@ public class Terminal
         int y = m_cursorY;
         if( y >= 0 && y < m_height )
         {
-            m_text[y].write( text, x );
-            m_textColour[y].write( textColour, x );
-            m_backgroundColour[y].write( backgroundColour, x );
+            int offset = offset( y );
+            writeText( offset, x, text );
+            writeColours( offset, x, textColour, false );
+            writeColours( offset, x, backgroundColour, true );
+            m_dirtyLines[y] = true;
             setChanged();
         }
     }
@@ -208,9 +280,76 @@ public class Terminal
         int y = m_cursorY;
         if( y >= 0 && y < m_height )
         {
-            m_text[y].write( text, x );
-            m_textColour[y].fill( base16.charAt( m_cursorColour ), x, x + text.length() );
-            m_backgroundColour[y].fill( base16.charAt( m_cursorBackgroundColour ), x, x + text.length() );
+            int offset = offset( y );
+            writeText( offset, x, text );
+
+            int start = Math.max( x, 0 ), end = Math.min( x + text.length(), m_width );
+            if( start < end ) Arrays.fill( m_colours, offset + start, offset + end, getCursorColours() );
+
+            m_dirtyLines[y] = true;
+            setChanged();
+        }
+    }
+
+    /**
+     * Write a string of bytes at the cursor, using the current colours.
+     *
+     * This is equivalent to {@link #write(String)}, but copies the bytes directly, rather than converting each
+     * character.
+     *
+     * @param text The bytes to write.
+     */
+    public synchronized void write( ByteString text )
+    {
+        int x = m_cursorX;
+        int y = m_cursorY;
+        if( y >= 0 && y < m_height )
+        {
+            int start = Math.max( x, 0 ), end = Math.min( x + text.length(), m_width );
+            if( start < end )
+            {
+                int offset = offset( y );
+                System.arraycopy( text.getBytes(), text.getOffset() + start - x, m_text, offset + start, end - start );
+                Arrays.fill( m_colours, offset + start, offset + end, getCursorColours() );
+            }
+
+            m_dirtyLines[y] = true;
+            setChanged();
+        }
+    }
+
+    /**
+     * Write a string of bytes at the cursor, with the given colours.
+     *
+     * This is equivalent to {@link #blit(String, String, String)}, but copies the bytes directly, rather than converting
+     * each character. All three strings should be the same length.
+     *
+     * @param text             The bytes to write.
+     * @param textColour       The text colour of each byte, as hexadecimal digits.
+     * @param backgroundColour The background colour of each byte, as hexadecimal digits.
+     */
+    public synchronized void blit( ByteString text, ByteString textColour, ByteString backgroundColour )
+    {
+        int x = m_cursorX;
+        int y = m_cursorY;
+        if( y >= 0 && y < m_height )
+        {
+            int start = Math.max( x, 0 );
+            int end = Math.min( Math.min( x + text.length(), m_width ), x + Math.min( textColour.length(), backgroundColour.length() ) );
+            if( start < end )
+            {
+                int offset = offset( y );
+                System.arraycopy( text.getBytes(), text.getOffset() + start - x, m_text, offset + start, end - start );
+
+                byte[] fg = textColour.getBytes(), bg = backgroundColour.getBytes();
+                int fgOffset = textColour.getOffset() - x, bgOffset = backgroundColour.getOffset() - x;
+                for( int i = start; i < end; i++ )
+                {
+                    m_colours[offset + i] = (byte) (BACKGROUND_COLOURS[bg[bgOffset + i] & 0xFF] << 4 | TEXT_COLOURS[fg[fgOffset + i] & 0xFF]);
+                }
+            }
+
+            m_dirtyLines[y] = true;
             setChanged();
         }
     }
@@ -219,40 +358,47 @@ public class Terminal
     {
         if( yDiff != 0 )
         {
-            TextBuffer[] newText = new TextBuffer[m_height];
-            TextBuffer[] newTextColour = new TextBuffer[m_height];
-            TextBuffer[] newBackgroundColour = new TextBuffer[m_height];
-            for( int y = 0; y < m_height; y++ )
+            if( yDiff >= m_height || yDiff <= -m_height )
+            {
+                // Everything has scrolled off screen, so just clear it.
+                for( int y = 0; y < m_height; y++ ) clearRow( y );
+                Arrays.fill( m_dirtyLines, true );
+            }
+            else if( yDiff > 0 )
             {
-                int oldY = y + yDiff;
-                if( oldY >= 0 && oldY < m_height )
+                // Rotate the ring buffer, and then clear the rows which have appeared at the bottom.
+                m_top = Math.floorMod( m_top + yDiff, m_height );
+                System.arraycopy( m_dirtyLines, yDiff, m_dirtyLines, 0, m_height - yDiff );
+                for( int y = m_height - yDiff; y < m_height; y++ )
                 {
-                    newText[y] = m_text[oldY];
-                    newTextColour[y] = m_textColour[oldY];
-                    newBackgroundColour[y] = m_backgroundColour[oldY];
+                    clearRow( y );
+                    m_dirtyLines[y] = true;
                 }
-                else
+            }
+            else
+            {
+                // As above, but the new rows appear at the top.
+                int lines = -yDiff;
+                m_top = Math.floorMod( m_top + yDiff, m_height );
+                System.arraycopy( m_dirtyLines, 0, m_dirtyLines, lines, m_height - lines );
+                for( int y = 0; y < lines; y++ )
                 {
-                    newText[y] = new TextBuffer( ' ', m_width );
-                    newTextColour[y] = new TextBuffer( base16.charAt( m_cursorColour ), m_width );
-                    newBackgroundColour[y] = new TextBuffer( base16.charAt( m_cursorBackgroundColour ), m_width );
+                    clearRow( y );
+                    m_dirtyLines[y] = true;
                 }
             }
-            m_text = newText;
-            m_textColour = newTextColour;
-            m_backgroundColour = newBackgroundColour;
+
+            m_scrollPosition += yDiff;
             setChanged();
         }
     }
 
     public synchronized void clear()
     {
-        for( int y = 0; y < m_height; y++ )
-        {
-            m_text[y].fill( ' ' );
-            m_textColour[y].fill( base16.charAt( m_cursorColour ) );
-            m_backgroundColour[y].fill( base16.charAt( m_cursorBackgroundColour ) );
-        }
+        m_top = 0;
+        Arrays.fill( m_text, (byte) ' ' );
+        Arrays.fill( m_colours, getCursorColours() );
+        Arrays.fill( m_dirtyLines, true );
         setChanged();
     }
 
@@ -261,46 +407,130 @@ public class Terminal
         int y = m_cursorY;
         if( y >= 0 && y < m_height )
         {
-            m_text[y].fill( ' ' );
-            m_textColour[y].fill( base16.charAt( m_cursorColour ) );
-            m_backgroundColour[y].fill( base16.charAt( m_cursorBackgroundColour ) );
+            clearRow( y );
+            m_dirtyLines[y] = true;
             setChanged();
         }
     }
 
+    /**
+     * Get a line of text on this terminal.
+     *
+     * The returned buffer is a view of the terminal's contents, so changes to the terminal will be visible through it
+     * (and vice versa). Characters are stored as bytes, so any written through the view are truncated to 8 bits. The
+     * view stays attached to the same underlying row, and so should not be held on to after the terminal is scrolled
+     * or resized.
+     *
+     * @param y The line to get.
+     * @return The line, or {@code null} if out of bounds.
+     */
     public synchronized TextBuffer getLine( int y )
     {
-        if( y >= 0 && y < m_height )
-        {
-            return m_text[y];
-        }
-        return null;
+        if( y < 0 || y >= m_height ) return null;
+
+        int row = physicalRow( y );
+        TextBuffer line = m_textLines[row];
+        if( line == null ) line = m_textLines[row] = new TextLine( m_text, row * m_width, m_width );
+        return line;
     }
 
     public synchronized void setLine( int y, String text, String textColour, String backgroundColour )
     {
-        m_text[y].write( text );
-        m_textColour[y].write( textColour );
-        m_backgroundColour[y].write( backgroundColour );
+        if( y < 0 || y >= m_height ) throw new IndexOutOfBoundsException( "Line " + y + " out of bounds" );
+
+        int offset = offset( y );
+        writeText( offset, 0, text );
+        writeColours( offset, 0, textColour, false );
+        writeColours( offset, 0, backgroundColour, true );
+        m_dirtyLines[y] = true;
         setChanged();
     }
 
+    /**
+     * Get the text colours of a line on this terminal, as a series of hexadecimal digits.
+     *
+     * As with {@link #getLine(int)}, this is a view of the terminal's contents. Invalid colours written through it are
+     * replaced with the default text colour (white).
+     *
+     * @param y The line to get.
+     * @return The line's text colours, or {@code null} if out of bounds.
+     */
     public synchronized TextBuffer getTextColourLine( int y )
     {
-        if( y >= 0 && y < m_height )
-        {
-            return m_textColour[y];
-        }
-        return null;
+        if( y < 0 || y >= m_height ) return null;
+
+        int row = physicalRow( y );
+        TextBuffer line = m_textColourLines[row];
+        if( line == null ) line = m_textColourLines[row] = new ColourLine( m_colours, row * m_width, m_width, false );
+        return line;
     }
 
+    /**
+     * Get the background colours of a line on this terminal, as a series of hexadecimal digits.
+     *
+     * As with {@link #getLine(int)}, this is a view of the terminal's contents. Invalid colours written through it are
+     * replaced with the default background colour (black).
+     *
+     * @param y The line to get.
+     * @return The line's background colours, or {@code null} if out of bounds.
+     */
     public synchronized TextBuffer getBackgroundColourLine( int y )
     {
-        if( y >= 0 && y < m_height )
-        {
-            return m_backgroundColour[y];
-        }
-        return null;
+        if( y < 0 || y >= m_height ) return null;
+
+        int row = physicalRow( y );
+        TextBuffer line = m_backgroundColourLines[row];
+        if( line == null ) line = m_backgroundColourLines[row] = new ColourLine( m_colours, row * m_width, m_width, true );
+        return line;
+    }
+
+    private int physicalRow( int y )
+    {
+        int row = m_top + y;
+        return row >= m_height ? row - m_height : row;
+    }
+
+    /**
+     * Get the index of the first cell of a line within {@link #m_text} and {@link #m_colours}.
+     *
+     * @param y The logical line.
+     * @return The index of this line's first cell.
+     */
+    private int offset( int y )
+    {
+        return physicalRow( y ) * m_width;
+    }
+
+    private byte getCursorColours()
+    {
+        return (byte) ((m_cursorBackgroundColour & 0xF) << 4 | (m_cursorColour & 0xF));
+    }
+
+    private void clearRow( int y )
+    {
+        int offset = offset( y );
+        Arrays.fill( m_text, offset, offset + m_width, (byte) ' ' );
+        Arrays.fill( m_colours, offset, offset + m_width, getCursorColours() );
+    }
+
+    private void writeText( int offset, int x, String text )
+    {
+        int start = Math.max( x, 0 ), end = Math.min( x + text.length(), m_width );
+        for( int i = start; i < end; i++ ) m_text[offset + i] = (byte) text.charAt( i - x );
+    }
+
+    private void writeColours( int offset, int x, String colours, boolean background )
+    {
+        int start = Math.max( x, 0 ), end = Math.min( x + colours.length(), m_width );
+        for( int i = start; i < end; i++ ) setColour( m_colours, offset + i, colours.charAt( i - x ), background );
+    }
+
+    private static void setColour( byte[] colours, int index, char colour, boolean background )
+    {
+        int current = colours[index];
+        colours[index] = background
+            ? (byte) ((current & 0x0F) | getColour( colour, Colour.Black ) << 4)
+            : (byte) ((current & 0xF0) | getColour( colour, Colour.White ));
     }
 
     /**
@@ -329,31 +559,127 @@ public class Terminal
 
     public synchronized void write( PacketBuffer buffer )
     {
-        buffer.writeInt( m_cursorX );
-        buffer.writeInt( m_cursorY );
-        buffer.writeBoolean( m_cursorBlink );
-        buffer.writeByte( m_cursorBackgroundColour << 4 | m_cursorColour );
+        writeCursor( buffer );
+        buffer.writeInt( m_scrollPosition );
+        for( int y = 0; y < m_height; y++ ) writeLine( buffer, y );
+        m_palette.write( buffer );
+    }
 
+    public synchronized void read( PacketBuffer buffer )
+    {
+        readCursor( buffer );
+        m_scrollPosition = buffer.readInt();
+        for( int y = 0; y < m_height; y++ ) readLine( buffer, y );
+        m_palette.read( buffer );
+        m_fullDirty = true;
+        setChanged();
+    }
+
+    /**
+     * Write the changes made to this terminal since the last call to this method, and then mark it as clean.
+     *
+     * This sends the cursor, how far the terminal has scrolled, any lines which have changed, and any palette entries
+     * which have changed. Should this be no smaller than the terminal itself (such as after it has been resized or
+     * cleared), we write the whole terminal instead, as with {@link #write(PacketBuffer)}.
+     *
+     * It is safe to apply a delta to a terminal which is newer than the one it was computed against, such as a full
+     * snapshot taken after the previous delta. Lines are always sent in full, and the delta contains the terminal's
+     * absolute scroll position, so the client only scrolls by however far it is actually behind.
+     *
+     * @param buffer The buffer to write to.
+     * @return {@code true} if a delta was written (and so should be read with {@link #readDelta(PacketBuffer)}), or
+     * {@code false} if the whole terminal was written.
+     */
+    public synchronized boolean writeDelta( PacketBuffer buffer )
+    {
+        int dirty = 0;
+        for( boolean line : m_dirtyLines )
+        {
+            if( line ) dirty++;
+        }
+
+        if( m_fullDirty || dirty >= m_height )
+        {
+            write( buffer );
+            markClean();
+            return false;
+        }
+
+        writeCursor( buffer );
+        buffer.writeInt( m_scrollPosition );
+
+        buffer.writeVarInt( dirty );
         for( int y = 0; y < m_height; y++ )
         {
-            TextBuffer text = m_text[y];
-            TextBuffer textColour = m_textColour[y];
-            TextBuffer backColour = m_backgroundColour[y];
+            if( !m_dirtyLines[y] ) continue;
+            buffer.writeVarInt( y );
+            writeLine( buffer, y );
+        }
 
-            for( int x = 0; x < m_width; x++ )
-            {
-                buffer.writeByte( text.charAt( x ) & 0xFF );
-                buffer.writeByte( getColour(
-                    backColour.charAt( x ), Colour.Black ) << 4 |
-                    getColour( textColour.charAt( x ), Colour.White )
-                );
-            }
+        int changedColours = 0;
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ )
+        {
+            if( Palette.encodeRGB8( m_palette.getColour( i ) ) != m_sentPalette[i] ) changedColours |= 1 << i;
         }
 
-        m_palette.write( buffer );
+        buffer.writeShort( changedColours );
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ )
+        {
+            if( (changedColours & (1 << i)) != 0 ) m_palette.write( buffer, i );
+        }
+
+        markClean();
+        return true;
     }
 
-    public synchronized void read( PacketBuffer buffer )
+    /**
+     * Apply a delta written by {@link #writeDelta(PacketBuffer)}. This terminal must be the same size as the one the
+     * delta was computed from.
+     *
+     * @param buffer The buffer to read from.
+     */
+    public synchronized void readDelta( PacketBuffer buffer )
+    {
+        readCursor( buffer );
+
+        int position = buffer.readInt();
+        if( position != m_scrollPosition ) scroll( position - m_scrollPosition );
+        m_scrollPosition = position;
+
+        int lines = buffer.readVarInt();
+        for( int i = 0; i < lines; i++ ) readLine( buffer, buffer.readVarInt() );
+
+        int changedColours = buffer.readUnsignedShort();
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ )
+        {
+            if( (changedColours & (1 << i)) != 0 ) m_palette.read( buffer, i );
+        }
+
+        setChanged();
+    }
+
+    /**
+     * Discard any changes made since the last delta, so the next one only contains changes made after this point.
+     *
+     * This should be used when nobody depends on the previous delta, such as when no clients are being sent this
+     * terminal, or all of them are about to be sent a full snapshot.
+     */
+    public synchronized void markClean()
+    {
+        Arrays.fill( m_dirtyLines, false );
+        m_fullDirty = false;
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ ) m_sentPalette[i] = Palette.encodeRGB8( m_palette.getColour( i ) );
+    }
+
+    private void writeCursor( PacketBuffer buffer )
+    {
+        buffer.writeInt( m_cursorX );
+        buffer.writeInt( m_cursorY );
+        buffer.writeBoolean( m_cursorBlink );
+        buffer.writeByte( m_cursorBackgroundColour << 4 | m_cursorColour );
+    }
+
+    private void readCursor( PacketBuffer buffer )
     {
         m_cursorX = buffer.readInt();
         m_cursorY = buffer.readInt();
@@ -362,25 +688,27 @@ public class Terminal
         byte cursorColour = buffer.readByte();
         m_cursorBackgroundColour = (cursorColour >> 4) & 0xF;
         m_cursorColour = cursorColour & 0xF;
+    }
 
-        for( int y = 0; y < m_height; y++ )
+    private void writeLine( PacketBuffer buffer, int y )
+    {
+        // Lines are sent as pairs of characters and colours, which is exactly how we store them.
+        int offset = offset( y );
+        for( int x = 0; x < m_width; x++ )
         {
-            TextBuffer text = m_text[y];
-            TextBuffer textColour = m_textColour[y];
-            TextBuffer backColour = m_backgroundColour[y];
-
-            for( int x = 0; x < m_width; x++ )
-            {
-                text.setChar( x, (char) (buffer.readByte() & 0xFF) );
-
-                byte colour = buffer.readByte();
-                backColour.setChar( x, base16.charAt( (colour >> 4) & 0xF ) );
-                textColour.setChar( x, base16.charAt( colour & 0xF ) );
-            }
+            buffer.writeByte( m_text[offset + x] );
+            buffer.writeByte( m_colours[offset + x] );
         }
+    }
 
-        m_palette.read( buffer );
-        setChanged();
+    private void readLine( PacketBuffer buffer, int y )
+    {
+        int offset = offset( y );
+        for( int x = 0; x < m_width; x++ )
+        {
+            m_text[offset + x] = buffer.readByte();
+            m_colours[offset + x] = buffer.readByte();
+        }
     }
 
     public synchronized NBTTagCompound writeToNBT( NBTTagCompound nbt )
@@ -392,9 +720,9 @@ public class Terminal
         nbt.setInteger( "term_bgColour", m_cursorBackgroundColour );
         for( int n = 0; n < m_height; n++ )
         {
-            nbt.setString( "term_text_" + n, m_text[n].toString() );
-            nbt.setString( "term_textColour_" + n, m_textColour[n].toString() );
-            nbt.setString( "term_textBgColour_" + n, m_backgroundColour[n].toString() );
+            nbt.setString( "term_text_" + n, getLine( n ).toString() );
+            nbt.setString( "term_textColour_" + n, getTextColourLine( n ).toString() );
+            nbt.setString( "term_textBgColour_" + n, getBackgroundColourLine( n ).toString() );
         }
 
         m_palette.writeToNBT( nbt );
@@ -411,24 +739,25 @@ public class Terminal
 
         for( int n = 0; n < m_height; n++ )
         {
-            m_text[n].fill( ' ' );
+            clearRow( n );
+
+            int offset = offset( n );
             if( nbt.hasKey( "term_text_" + n ) )
             {
-                m_text[n].write( nbt.getString( "term_text_" + n ) );
+                writeText( offset, 0, nbt.getString( "term_text_" + n ) );
             }
-            m_textColour[n].fill( base16.charAt( m_cursorColour ) );
             if( nbt.hasKey( "term_textColour_" + n ) )
             {
-                m_textColour[n].write( nbt.getString( "term_textColour_" + n ) );
+                writeColours( offset, 0, nbt.getString( "term_textColour_" + n ), false );
             }
-            m_backgroundColour[n].fill( base16.charAt( m_cursorBackgroundColour ) );
             if( nbt.hasKey( "term_textBgColour_" + n ) )
             {
-                m_backgroundColour[n].write( nbt.getString( "term_textBgColour_" + n ) );
+                writeColours( offset, 0, nbt.getString( "term_textBgColour_" + n ), true );
             }
         }
 
         m_palette.readFromNBT( nbt );
+        m_fullDirty = true;
         setChanged();
     }
 
@@ -438,4 +767,79 @@ public class Terminal
         if( c >= 'a' && c <= 'f' ) return c - 'a' + 10;
         return 15 - def.ordinal();
     }
+
+    /**
+     * A view of the characters on one row of the terminal.
+     */
+    private static final class TextLine extends TextBuffer
+    {
+        private final byte[] text;
+        private final int offset;
+        private final int length;
+
+        TextLine( byte[] text, int offset, int length )
+        {
+            this.text = text;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length()
+        {
+            return length;
+        }
+
+        @Override
+        public char charAt( int i )
+        {
+            if( i < 0 || i >= length ) throw new ArrayIndexOutOfBoundsException( i );
+            return (char) (text[offset + i] & 0xFF);
+        }
+
+        @Override
+        void set( int i, char c )
+        {
+            text[offset + i] = (byte) c;
+        }
+    }
+
+    /**
+     * A view of either the text or background colours on one row of the terminal.
+     */
+    private static final class ColourLine extends TextBuffer
+    {
+        private final byte[] colours;
+        private final int offset;
+        private final int length;
+        private final boolean background;
+
+        ColourLine( byte[] colours, int offset, int length, boolean background )
+        {
+            this.colours = colours;
+            this.offset = offset;
+            this.length = length;
+            this.background = background;
+        }
+
+        @Override
+        public int length()
+        {
+            return length;
+        }
+
+        @Override
+        public char charAt( int i )
+        {
+            if( i < 0 || i >= length ) throw new ArrayIndexOutOfBoundsException( i );
+            int colour = colours[offset + i];
+            return base16.charAt( background ? (colour >> 4) & 0xF : colour & 0xF );
+        }
+
+        @Override
+        void set( int i, char c )
+        {
+            setColour( colours, offset + i, c, background );
+        }
+    }
 }
@@ -5,10 +5,26 @@
  */
 package dan200.computercraft.core.terminal;
 
+/**
+ * A fixed-length line of characters.
+ *
+ * This is either backed by its own array, or (for lines returned by {@link Terminal}) is a view over part of the
+ * terminal's packed storage. In the latter case, reading and writing go straight to the terminal, and so characters
+ * may be normalised when written (see {@link Terminal#getLine(int)}).
+ */
 public class TextBuffer
 {
     private final char[] m_text;
 
+    /**
+     * Construct a buffer which provides its own storage, by overriding {@link #length()}, {@link #charAt(int)} and
+     * {@link #set(int, char)}.
+     */
+    TextBuffer()
+    {
+        m_text = null;
+    }
+
     public TextBuffer( char c, int length )
     {
         m_text = new char[length];
@@ -61,20 +77,24 @@ public class TextBuffer
 
     public String read()
     {
-        return read( 0, m_text.length );
+        return read( 0, length() );
     }
 
     public String read( int start )
     {
-        return read( start, m_text.length );
+        return read( start, length() );
     }
 
     public String read( int start, int end )
     {
         start = Math.max( start, 0 );
-        end = Math.min( end, m_text.length );
+        end = Math.min( end, length() );
         int textLength = Math.max( end - start, 0 );
-        return new String( m_text, start, textLength );
+        if( m_text != null ) return new String( m_text, start, textLength );
+
+        char[] chars = new char[textLength];
+        for( int i = 0; i < textLength; i++ ) chars[i] = charAt( start + i );
+        return new String( chars );
     }
 
     public void write( String text )
@@ -92,10 +112,10 @@ public class TextBuffer
         int pos = start;
         start = Math.max( start, 0 );
         end = Math.min( end, pos + text.length() );
-        end = Math.min( end, m_text.length );
+        end = Math.min( end, length() );
         for( int i = start; i < end; i++ )
         {
-            m_text[i] = text.charAt( i - pos );
+            set( i, text.charAt( i - pos ) );
         }
     }
 
@@ -114,76 +134,76 @@ public class TextBuffer
         int pos = start;
         start = Math.max( start, 0 );
         end = Math.min( end, pos + text.length() );
-        end = Math.min( end, m_text.length );
+        end = Math.min( end, length() );
         for( int i = start; i < end; i++ )
         {
-            m_text[i] = text.charAt( i - pos );
+            set( i, text.charAt( i - pos ) );
         }
     }
 
     public void fill( char c )
     {
-        fill( c, 0, m_text.length );
+        fill( c, 0, length() );
     }
 
     public void fill( char c, int start )
     {
-        fill( c, start, m_text.length );
+        fill( c, start, length() );
     }
 
     public void fill( char c, int start, int end )
     {
         start = Math.max( start, 0 );
-        end = Math.min( end, m_text.length );
+        end = Math.min( end, length() );
         for( int i = start; i < end; i++ )
         {
-            m_text[i] = c;
+            set( i, c );
         }
     }
 
     public void fill( String text )
     {
-        fill( text, 0, m_text.length );
+        fill( text, 0, length() );
     }
 
     public void fill( String text, int start )
     {
-        fill( text, start, m_text.length );
+        fill( text, start, length() );
     }
 
     public void fill( String text, int start, int end )
     {
         int pos = start;
         start = Math.max( start, 0 );
-        end = Math.min( end, m_text.length );
+        end = Math.min( end, length() );
 
         int textLength = text.length();
         for( int i = start; i < end; i++ )
         {
-            m_text[i] = text.charAt( (i - pos) % textLength );
+            set( i, text.charAt( (i - pos) % textLength ) );
         }
     }
 
     public void fill( TextBuffer text )
     {
-        fill( text, 0, m_text.length );
+        fill( text, 0, length() );
     }
 
     public void fill( TextBuffer text, int start )
     {
-        fill( text, start, m_text.length );
+        fill( text, start, length() );
     }
 
     public void fill( TextBuffer text, int start, int end )
     {
         int pos = start;
         start = Math.max( start, 0 );
-        end = Math.min( end, m_text.length );
+        end = Math.min( end, length() );
 
         int textLength = text.length();
         for( int i = start; i < end; i++ )
         {
-            m_text[i] = text.charAt( (i - pos) % textLength );
+            set( i, text.charAt( (i - pos) % textLength ) );
         }
     }
 
@@ -194,14 +214,25 @@ public class TextBuffer
 
     public void setChar( int i, char c )
     {
-        if( i >= 0 && i < m_text.length )
+        if( i >= 0 && i < length() )
         {
-            m_text[i] = c;
+            set( i, c );
         }
     }
 
+    /**
+     * Set a character, without checking it is in bounds.
+     *
+     * @param i The index to set.
+     * @param c The character to set.
+     */
+    void set( int i, char c )
+    {
+        m_text[i] = c;
+    }
+
     public String toString()
     {
-        return new String( m_text );
+        return read();
     }
 }
@@ -30,6 +30,10 @@ public final class TrackingField
     public static final TrackingField FS_OPS = TrackingField.of( "fs", "Filesystem operations", TrackingField::formatDefault );
     public static final TrackingField TURTLE_OPS = TrackingField.of( "turtle", "Turtle operations", TrackingField::formatDefault );
 
+    public static final TrackingField TIMERS_STARTED = TrackingField.of( "timers_started", "Timers started", TrackingField::formatDefault );
+    public static final TrackingField TIMERS_FIRED = TrackingField.of( "timers_fired", "Timers fired", TrackingField::formatDefault );
+    public static final TrackingField ALARMS_SET = TrackingField.of( "alarms", "Alarms set", TrackingField::formatDefault );
+
     public static final TrackingField HTTP_REQUESTS = TrackingField.of( "http", "HTTP requests", TrackingField::formatDefault );
     public static final TrackingField HTTP_UPLOAD = TrackingField.of( "http_upload", "HTTP upload", TrackingField::formatBytes );
     public static final TrackingField HTTP_DOWNLOAD = TrackingField.of( "http_download", "HTTP download", TrackingField::formatBytes );
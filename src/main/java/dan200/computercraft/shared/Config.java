@@ -43,6 +43,8 @@ public final class Config
     private static Property computerSpaceLimit;
     private static Property floppySpaceLimit;
     private static Property maximumFilesOpen;
+    private static Property fileWriteBuffer;
+    private static Property fileWriteBufferLimit;
     private static Property disableLua51Features;
     private static Property defaultComputerSettings;
     private static Property debugEnabled;
@@ -50,6 +52,11 @@ public final class Config
     private static Property commandRequireCreative;
 
     private static Property computerThreads;
+    private static Property maxComputerThreads;
+    private static Property computerWorkStealing;
+    private static Property coroutineThreads;
+    private static Property coroutineVirtualThreads;
+    private static Property maxCoroutinesPerComputer;
     private static Property maxMainGlobalTime;
     private static Property maxMainComputerTime;
 
@@ -73,6 +80,7 @@ public final class Config
     private static Property maxNotesPerTick;
     private static Property monitorRenderer;
     private static Property monitorBandwidth;
+    private static Property monitorPlayerBandwidth;
 
     private static Property turtlesNeedFuel;
     private static Property turtleFuelLimit;
@@ -106,6 +114,16 @@ public final class Config
             maximumFilesOpen.setComment( "Set how many files a computer can have open at the same time. Set to 0 for unlimited." );
             maximumFilesOpen.setMinValue( 0 );
 
+            fileWriteBuffer = config.get( CATEGORY_GENERAL, "file_write_buffer", ComputerCraft.fileWriteBuffer );
+            fileWriteBuffer.setComment( "The number of bytes each open file may buffer before writing to disk. Buffers are written " +
+                "when full, or when the file is flushed or closed. Set to 0 to write directly to disk." );
+            fileWriteBuffer.setMinValue( 0 );
+
+            fileWriteBufferLimit = config.get( CATEGORY_GENERAL, "file_write_buffer_limit", (int) ComputerCraft.fileWriteBufferLimit );
+            fileWriteBufferLimit.setComment( "The total number of bytes which may be buffered across all open files on the server. " +
+                "Once this is reached, newly written files will write directly to disk." );
+            fileWriteBufferLimit.setMinValue( 0 );
+
             disableLua51Features = config.get( CATEGORY_GENERAL, "disable_lua51_features", ComputerCraft.disable_lua51_features );
             disableLua51Features.setComment( "Set this to true to disable Lua 5.1 functions that will be removed in a future " +
                 "update. Useful for ensuring forward compatibility of your programs now." );
@@ -127,7 +145,7 @@ public final class Config
 
             setOrder(
                 CATEGORY_GENERAL,
-                computerSpaceLimit, floppySpaceLimit, maximumFilesOpen,
+                computerSpaceLimit, floppySpaceLimit, maximumFilesOpen, fileWriteBuffer, fileWriteBufferLimit,
                 disableLua51Features, defaultComputerSettings, debugEnabled, logComputerErrors, commandRequireCreative
             );
         }
@@ -142,11 +160,48 @@ public final class Config
             computerThreads = config.get( CATEGORY_EXECUTION, "computer_threads", ComputerCraft.computer_threads );
             computerThreads
                 .setMinValue( 1 )
-                .setRequiresMcRestart( true )
                 .setComment( "Set the number of threads computers can run on. A higher number means more computers can " +
                     "run at once, but may induce lag.\n" +
                     "Please note that some mods may not work with a thread count higher than 1. Use with caution." );
 
+            maxComputerThreads = config.get( CATEGORY_EXECUTION, "max_computer_threads", ComputerCraft.maxComputerThreads );
+            maxComputerThreads
+                .setMinValue( 0 )
+                .setComment( "The maximum number of threads computers can run on. When computers are waiting to run, " +
+                    "additional threads will be started (up to this limit), and then stopped again once they are no " +
+                    "longer needed. computer_threads is used as the minimum number of threads.\n" +
+                    "Set to 0 to always use exactly computer_threads threads." );
+
+            computerWorkStealing = config.get( CATEGORY_EXECUTION, "work_stealing", ComputerCraft.computer_work_stealing );
+            computerWorkStealing
+                .setRequiresMcRestart( true )
+                .setComment( "Give each computer thread its own queue of computers to run, with idle threads taking work " +
+                    "from busy ones. This reduces contention when running with many computer threads, at the cost of " +
+                    "slightly less fair scheduling." );
+
+            coroutineThreads = config.get( CATEGORY_EXECUTION, "coroutine_threads", ComputerCraft.coroutine_threads );
+            coroutineThreads
+                .setMinValue( 0 )
+                .setRequiresMcRestart( true )
+                .setComment( "The maximum number of threads which Lua coroutines may run on, shared between all computers. " +
+                    "Each running coroutine occupies a thread until it finishes. Once this limit is reached, any new " +
+                    "coroutines will error instead.\n" +
+                    "Set to 0 for unlimited." );
+
+            coroutineVirtualThreads = config.get( CATEGORY_EXECUTION, "coroutine_virtual_threads", ComputerCraft.coroutine_virtual_threads );
+            coroutineVirtualThreads
+                .setRequiresMcRestart( true )
+                .setComment( "Run Lua coroutines on virtual threads rather than OS threads. These are much cheaper, " +
+                    "but are only available on newer versions of Java. Otherwise we fall back to normal threads.\n" +
+                    "When enabled, coroutine_threads is ignored." );
+
+            maxCoroutinesPerComputer = config.get( CATEGORY_EXECUTION, "max_coroutines_per_computer", ComputerCraft.maxCoroutinesPerComputer );
+            maxCoroutinesPerComputer
+                .setMinValue( 0 )
+                .setComment( "The maximum number of coroutines a single computer may have running at once. Any " +
+                    "additional coroutines will error when first resumed.\n" +
+                    "Set to 0 for unlimited." );
+
             maxMainGlobalTime = config.get( CATEGORY_EXECUTION, "max_main_global_time", (int) TimeUnit.NANOSECONDS.toMillis( ComputerCraft.maxMainGlobalTime ) );
             maxMainGlobalTime
                 .setMinValue( 1 )
@@ -163,7 +218,8 @@ public final class Config
 
             setOrder(
                 CATEGORY_EXECUTION,
-                computerThreads, maxMainGlobalTime, maxMainComputerTime
+                computerThreads, maxComputerThreads, computerWorkStealing, coroutineThreads, coroutineVirtualThreads, maxCoroutinesPerComputer,
+                maxMainGlobalTime, maxMainComputerTime
             );
         }
 
@@ -288,10 +344,17 @@ public final class Config
             monitorBandwidth.setValidValues( MonitorRenderer.NAMES );
             monitorBandwidth.setMinValue( 0 );
 
+            monitorPlayerBandwidth = config.get( CATEGORY_PERIPHERAL, "monitor_player_bandwidth", (int) ComputerCraft.monitorPlayerBandwidth );
+            monitorPlayerBandwidth.setComment( "The limit to how much monitor data can be sent to a single player *per tick*. " +
+                "Monitors closer to players are sent first, so this stops large, distant monitors from delaying smaller, " +
+                "closer ones. As with monitor_bandwidth, this is measured before compression.\n" +
+                "Set to 0 to disable." );
+            monitorPlayerBandwidth.setMinValue( 0 );
+
             setOrder(
                 CATEGORY_PERIPHERAL,
                 commandBlockEnabled, modemRange, modemHighAltitudeRange, modemRangeDuringStorm, modemHighAltitudeRangeDuringStorm, maxNotesPerTick,
-                monitorRenderer, monitorBandwidth
+                monitorRenderer, monitorBandwidth, monitorPlayerBandwidth
             );
         }
 
@@ -454,6 +517,8 @@ public final class Config
         ComputerCraft.computerSpaceLimit = computerSpaceLimit.getInt();
         ComputerCraft.floppySpaceLimit = floppySpaceLimit.getInt();
         ComputerCraft.maximumFilesOpen = Math.max( 0, maximumFilesOpen.getInt() );
+        ComputerCraft.fileWriteBuffer = Math.max( 0, fileWriteBuffer.getInt() );
+        ComputerCraft.fileWriteBufferLimit = Math.max( 0, fileWriteBufferLimit.getInt() );
         ComputerCraft.disable_lua51_features = disableLua51Features.getBoolean();
         ComputerCraft.default_computer_settings = defaultComputerSettings.getString();
         ComputerCraft.debug_enable = debugEnabled.getBoolean();
@@ -462,6 +527,11 @@ public final class Config
 
         // Execution
         ComputerCraft.computer_threads = computerThreads.getInt();
+        ComputerCraft.maxComputerThreads = Math.max( 0, maxComputerThreads.getInt() );
+        ComputerCraft.computer_work_stealing = computerWorkStealing.getBoolean();
+        ComputerCraft.coroutine_threads = Math.max( 0, coroutineThreads.getInt() );
+        ComputerCraft.coroutine_virtual_threads = coroutineVirtualThreads.getBoolean();
+        ComputerCraft.maxCoroutinesPerComputer = Math.max( 0, maxCoroutinesPerComputer.getInt() );
         ComputerCraft.maxMainGlobalTime = TimeUnit.MILLISECONDS.toNanos( Math.max( 1, maxMainGlobalTime.getLong() ) );
         ComputerCraft.maxMainComputerTime = TimeUnit.MILLISECONDS.toNanos( Math.max( 1, maxMainComputerTime.getLong() ) );
 
@@ -487,6 +557,7 @@ public final class Config
         ComputerCraft.modem_highAltitudeRangeDuringStorm = Math.min( modemHighAltitudeRangeDuringStorm.getInt(), MODEM_MAX_RANGE );
         ComputerCraft.monitorRenderer = MonitorRenderer.ofString( monitorRenderer.getString() );
         ComputerCraft.monitorBandwidth = Math.max( 0, monitorBandwidth.getLong() );
+        ComputerCraft.monitorPlayerBandwidth = Math.max( 0, monitorPlayerBandwidth.getLong() );
 
         // Turtles
         ComputerCraft.turtlesNeedFuel = turtlesNeedFuel.getBoolean();
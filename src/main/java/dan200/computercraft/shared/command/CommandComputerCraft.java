@@ -10,6 +10,8 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.peripheral.IPeripheral;
 import dan200.computercraft.core.computer.Computer;
 import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.core.computer.ComputerThread;
+import dan200.computercraft.core.lua.CoroutinePool;
 import dan200.computercraft.core.tracking.ComputerTracker;
 import dan200.computercraft.core.tracking.Tracking;
 import dan200.computercraft.core.tracking.TrackingContext;
@@ -101,6 +103,10 @@ public final class CommandComputerCraft extends CommandDelegate
                     }
 
                     table.display( context.getSender() );
+                    context.getSender().sendMessage( translate( "commands.computercraft.dump.threads",
+                        ComputerThread.getThreadCount(), ComputerThread.getQueueLength() ) );
+                    context.getSender().sendMessage( translate( "commands.computercraft.dump.coroutines",
+                        CoroutinePool.getThreadCount() ) );
                 }
                 else if( arguments.size() == 1 )
                 {
@@ -113,6 +119,7 @@ public final class CommandComputerCraft extends CommandDelegate
                     table.row( header( "On" ), bool( computer.isOn() ) );
                     table.row( header( "Position" ), linkPosition( context, computer ) );
                     table.row( header( "Family" ), text( computer.getFamily().toString() ) );
+                    table.row( header( "Coroutine threads" ), text( Integer.toString( computer.getComputer().getCoroutineCount() ) ) );
 
                     for( ComputerSide side : ComputerSide.values() )
                     {
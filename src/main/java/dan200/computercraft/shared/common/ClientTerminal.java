@@ -49,7 +49,17 @@ public class ClientTerminal implements ITerminal
     public void read( TerminalState state )
     {
         m_colour = state.colour;
-        if( state.hasTerminal() )
+        if( state.delta )
+        {
+            // Deltas can only be applied on top of the terminal they were computed against. If we don't have a
+            // matching terminal, then we've missed an update, and must wait for the next full snapshot.
+            Terminal terminal = m_terminal;
+            if( terminal != null && terminal.getWidth() == state.width && terminal.getHeight() == state.height )
+            {
+                state.apply( terminal );
+            }
+        }
+        else if( state.hasTerminal() )
         {
             resizeTerminal( state.width, state.height );
             state.apply( m_terminal );
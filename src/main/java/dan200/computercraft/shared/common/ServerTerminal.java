@@ -69,6 +69,17 @@ public class ServerTerminal implements ITerminal
         return m_terminalChangedLastFrame;
     }
 
+    /**
+     * Determine whether this terminal has not changed since before the last {@link #update()}, and so calling it again
+     * would have no effect.
+     *
+     * @return Whether this terminal has no pending changes.
+     */
+    protected boolean isTerminalIdle()
+    {
+        return !m_terminalChangedLastFrame && !m_terminalChanged.get();
+    }
+
     @Override
     public Terminal getTerminal()
     {
@@ -85,4 +96,32 @@ public class ServerTerminal implements ITerminal
     {
         return new TerminalState( m_colour, m_terminal );
     }
+
+    /**
+     * Write the changes to this terminal since the last call to this method.
+     *
+     * This should only be sent to clients which have received every delta since their last full snapshot (from
+     * {@link #write()}).
+     *
+     * @return The terminal's state. This may be a full snapshot, if the terminal has changed significantly.
+     * @see TerminalState#delta(boolean, Terminal)
+     */
+    public TerminalState writeDelta()
+    {
+        return TerminalState.delta( m_colour, m_terminal );
+    }
+
+    /**
+     * Discard the changes made to this terminal since the last delta, as nobody needs them.
+     *
+     * This should be called when there are no clients which have received every delta since their last full snapshot,
+     * as otherwise changes would continue to build up until somebody is sent a delta.
+     *
+     * @see Terminal#markClean()
+     */
+    public void discardDelta()
+    {
+        Terminal terminal = m_terminal;
+        if( terminal != null ) terminal.markClean();
+    }
 }
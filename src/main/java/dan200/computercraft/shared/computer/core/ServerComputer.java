@@ -17,9 +17,11 @@ import dan200.computercraft.core.computer.ComputerSide;
 import dan200.computercraft.core.computer.IComputerEnvironment;
 import dan200.computercraft.shared.common.ServerTerminal;
 import dan200.computercraft.shared.network.NetworkHandler;
+import dan200.computercraft.shared.network.TerminalMessageQueue;
 import dan200.computercraft.shared.network.client.ComputerDataClientMessage;
 import dan200.computercraft.shared.network.client.ComputerDeletedClientMessage;
 import dan200.computercraft.shared.network.client.ComputerTerminalClientMessage;
+import dan200.computercraft.shared.network.client.TerminalState;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.inventory.Container;
@@ -27,12 +29,14 @@ import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Loader;
 import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 
 import javax.annotation.Nullable;
 import java.io.InputStream;
+import java.util.*;
 
 public class ServerComputer extends ServerTerminal implements IComputer, IComputerEnvironment
 {
@@ -49,6 +53,18 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
     private boolean m_changedLastFrame;
     private int m_ticksSincePing;
 
+    /**
+     * Players who have received every terminal update since their last full snapshot, and so can be sent deltas.
+     */
+    private final Set<EntityPlayer> m_terminalSynced = Collections.newSetFromMap( new WeakHashMap<>() );
+
+    /**
+     * Players who are interested in this computer, and have been sent its latest state.
+     *
+     * @see #isInterested(EntityPlayerMP)
+     */
+    private final Set<EntityPlayer> m_stateSynced = Collections.newSetFromMap( new WeakHashMap<>() );
+
     public ServerComputer( World world, int computerID, String label, int instanceID, ComputerFamily family, int terminalWidth, int terminalHeight )
     {
         super( family != ComputerFamily.Normal, terminalWidth, terminalHeight );
@@ -79,7 +95,11 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
 
     public void setWorld( World world )
     {
+        World oldWorld = m_world;
         m_world = world;
+
+        // Players in the new world may not have been sent our state.
+        if( oldWorld != null && oldWorld != world && m_position != null ) broadcastStateToNewListeners();
     }
 
     public BlockPos getPosition()
@@ -89,7 +109,15 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
 
     public void setPosition( BlockPos pos )
     {
+        BlockPos oldPosition = m_position;
         m_position = new BlockPos( pos );
+
+        // If we have moved into another chunk (such as a turtle moving, or a pocket computer being carried), players
+        // who were already watching that chunk may not have been sent our state.
+        if( oldPosition != null && ((oldPosition.getX() >> 4) != (pos.getX() >> 4) || (oldPosition.getZ() >> 4) != (pos.getZ() >> 4)) )
+        {
+            broadcastStateToNewListeners();
+        }
     }
 
     public IAPIEnvironment getAPIEnvironment()
@@ -105,13 +133,28 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
     @Override
     public void update()
     {
+        m_ticksSincePing++;
+
+        // Skip computers which are off and have nothing to do, as updating them would not change anything.
+        if( isDormant() ) return;
+
         super.update();
         m_computer.tick();
 
         m_changedLastFrame = m_computer.pollAndResetChanged() || m_changed;
         m_changed = false;
+    }
 
-        m_ticksSincePing++;
+    /**
+     * Determine whether this computer is dormant, meaning {@link #update()} does not need to do anything besides
+     * counting towards a timeout.
+     *
+     * @return Whether this computer is dormant.
+     * @see Computer#isDormant()
+     */
+    public boolean isDormant()
+    {
+        return !m_changed && !m_changedLastFrame && isTerminalIdle() && m_computer.isDormant();
     }
 
     public void keepAlive()
@@ -153,54 +196,207 @@ public class ServerComputer extends ServerTerminal implements IComputer, IComput
         return new ComputerDataClientMessage( this );
     }
 
-    protected IMessage createTerminalPacket()
-    {
-        return new ComputerTerminalClientMessage( getInstanceID(), write() );
-    }
 
     public void broadcastState( boolean force )
     {
         if( hasOutputChanged() || force )
         {
-            // Send computer state to all clients
-            NetworkHandler.sendToAllPlayers( createComputerPacket() );
+            // Send computer state to clients who can see the computer.
+            List<EntityPlayerMP> players = new ArrayList<>();
+            getStateListeners( players );
+
+            IMessage packet = createComputerPacket();
+            for( EntityPlayerMP player : players ) NetworkHandler.sendToPlayer( player, packet );
+
+            m_stateSynced.clear();
+            m_stateSynced.addAll( players );
         }
 
         if( hasTerminalChanged() || force )
         {
             // Send terminal state to clients who are currently interacting with the computer.
-            FMLCommonHandler handler = FMLCommonHandler.instance();
-            if( handler != null )
+            List<EntityPlayerMP> players = new ArrayList<>();
+            getTerminalListeners( players );
+            broadcastTerminal( players );
+        }
+    }
+
+    /**
+     * Send the computer's state to any players who have become interested in it since it was last sent.
+     *
+     * Players only receive state updates while they are interested in the computer, so this is called when the
+     * computer moves to another chunk, in order to catch up players who were already watching that chunk.
+     *
+     * @see #sendStateIfInterested(EntityPlayerMP)
+     */
+    private void broadcastStateToNewListeners()
+    {
+        List<EntityPlayerMP> players = new ArrayList<>();
+        getStateListeners( players );
+
+        IMessage packet = null;
+        for( EntityPlayerMP player : players )
+        {
+            if( m_stateSynced.contains( player ) ) continue;
+            if( packet == null ) packet = createComputerPacket();
+            NetworkHandler.sendToPlayer( player, packet );
+        }
+
+        // Players who are no longer interested will need catching up when they next are.
+        m_stateSynced.clear();
+        m_stateSynced.addAll( players );
+    }
+
+    /**
+     * Send the computer's state to a player who may have just become interested in it, if they have not already been
+     * sent it.
+     *
+     * Players only receive state updates while they are interested in the computer, so this should be called whenever
+     * a player may have started tracking it, such as when they start watching its chunk or open its container.
+     *
+     * @param player The player who may now be interested in this computer.
+     */
+    public void sendStateIfInterested( EntityPlayerMP player )
+    {
+        if( m_stateSynced.contains( player ) || !isInterested( player ) ) return;
+
+        NetworkHandler.sendToPlayer( player, createComputerPacket() );
+        m_stateSynced.add( player );
+    }
+
+    /**
+     * Find all players who should receive this computer's state.
+     *
+     * @param players The list to add players to.
+     * @see #isInterested(EntityPlayerMP)
+     */
+    private void getStateListeners( List<EntityPlayerMP> players )
+    {
+        FMLCommonHandler handler = FMLCommonHandler.instance();
+        if( handler == null ) return;
+
+        MinecraftServer server = handler.getMinecraftServerInstance();
+        for( EntityPlayerMP player : server.getPlayerList().getPlayers() )
+        {
+            if( isInterested( player ) ) players.add( player );
+        }
+    }
+
+    /**
+     * Determine whether a player needs to know this computer's state, namely if they are tracking the chunk the
+     * computer is in, or interacting with it.
+     *
+     * @param player The player to check.
+     * @return Whether this player should be sent the computer's state.
+     */
+    protected boolean isInterested( EntityPlayerMP player )
+    {
+        if( isInteracting( player ) ) return true;
+
+        World world = m_world;
+        BlockPos position = m_position;
+
+        // If we don't know where this computer is, we have no choice but to send it to everyone.
+        if( world == null || position == null || !(world instanceof WorldServer) ) return true;
+
+        return player.world == world && ((WorldServer) world).getPlayerChunkMap()
+            .isPlayerWatchingChunk( player, position.getX() >> 4, position.getZ() >> 4 );
+    }
+
+    /**
+     * Find all players who should receive this computer's terminal.
+     *
+     * @param players The list to add players to.
+     */
+    protected void getTerminalListeners( List<EntityPlayerMP> players )
+    {
+        FMLCommonHandler handler = FMLCommonHandler.instance();
+        if( handler == null ) return;
+
+        MinecraftServer server = handler.getMinecraftServerInstance();
+        for( EntityPlayerMP player : server.getPlayerList().getPlayers() )
+        {
+            if( isInteracting( player ) ) players.add( player );
+        }
+    }
+
+    /**
+     * Send the current terminal to a set of players. Players which have received every update since their last full
+     * snapshot are sent a delta, while any others are sent a full snapshot.
+     *
+     * @param players The players to send the terminal to.
+     */
+    private void broadcastTerminal( List<EntityPlayerMP> players )
+    {
+        // We must compute the delta before any full snapshots, otherwise changes made between the two would not be
+        // sent to players who have just become synced.
+        IMessage deltaPacket = null, fullPacket = null;
+        TerminalState deltaState = null, fullState = null;
+        for( EntityPlayerMP player : players )
+        {
+            if( m_terminalSynced.contains( player ) )
             {
-                IMessage packet = null;
-                MinecraftServer server = handler.getMinecraftServerInstance();
-                for( EntityPlayerMP player : server.getPlayerList().getPlayers() )
+                deltaState = writeDelta();
+                deltaPacket = new ComputerTerminalClientMessage( getInstanceID(), deltaState );
+
+                // If the terminal has changed too much, the delta will be a full snapshot, which we can send to everyone.
+                if( !deltaState.delta )
                 {
-                    if( isInteracting( player ) )
-                    {
-                        if( packet == null ) packet = createTerminalPacket();
-                        NetworkHandler.sendToPlayer( player, packet );
-                    }
+                    fullState = deltaState;
+                    fullPacket = deltaPacket;
                 }
+                break;
             }
         }
+
+        // If nobody is synced, there's nobody to send the delta to, so it can be thrown away. Otherwise it would
+        // build up until somebody is, and include changes which they have already been sent in a snapshot.
+        if( deltaState == null ) discardDelta();
+
+        for( EntityPlayerMP player : players )
+        {
+            if( deltaPacket != null && m_terminalSynced.contains( player ) )
+            {
+                TerminalMessageQueue.sendToPlayer( player, deltaPacket, deltaState );
+            }
+            else
+            {
+                if( fullPacket == null ) fullPacket = new ComputerTerminalClientMessage( getInstanceID(), fullState = write() );
+                TerminalMessageQueue.sendToPlayer( player, fullPacket, fullState );
+            }
+        }
+
+        // Any players who didn't receive this update will need a full snapshot next time.
+        m_terminalSynced.clear();
+        m_terminalSynced.addAll( players );
     }
 
     public void sendComputerState( EntityPlayer player )
     {
         // Send state to client
         NetworkHandler.sendToPlayer( player, createComputerPacket() );
+        if( player instanceof EntityPlayerMP && isInterested( (EntityPlayerMP) player ) ) m_stateSynced.add( player );
     }
 
     public void sendTerminalState( EntityPlayer player )
     {
+        // If this player is the only one being sent the terminal, nobody depends on the pending delta, so discard it
+        // before taking the snapshot. Other players still need it, but it is safe to send it to this player on top of
+        // the snapshot.
+        m_terminalSynced.remove( player );
+        if( m_terminalSynced.isEmpty() ) discardDelta();
+
         // Send terminal state to client
-        NetworkHandler.sendToPlayer( player, createTerminalPacket() );
+        TerminalState state = write();
+        TerminalMessageQueue.sendToPlayer( player, new ComputerTerminalClientMessage( getInstanceID(), state ), state );
+        m_terminalSynced.add( player );
     }
 
     public void broadcastDelete()
     {
-        // Send deletion to client
+        // Send deletion to client. We make sure any terminal updates are sent first, as otherwise they would
+        // recreate the computer on the client.
+        TerminalMessageQueue.flush();
         NetworkHandler.sendToAllPlayers( new ComputerDeletedClientMessage( getInstanceID() ) );
     }
 
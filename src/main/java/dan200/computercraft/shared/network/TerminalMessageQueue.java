@@ -0,0 +1,121 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.shared.network;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.shared.network.client.TerminalState;
+import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.common.eventhandler.EventPriority;
+import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
+import net.minecraftforge.fml.common.gameevent.TickEvent;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * Holds on to messages containing a {@link TerminalState} until the state has been compressed, so the main thread
+ * does not need to wait for it.
+ *
+ * Messages are sent in the order they were queued, which ensures deltas for a terminal are always received in order,
+ * and after any earlier snapshot. Every message is sent by the start of the next server tick at the latest. All
+ * messages containing terminal states should be sent through this queue, otherwise they may overtake ones which are
+ * still pending.
+ *
+ * This should only be used on the server thread.
+ */
+@Mod.EventBusSubscriber( modid = ComputerCraft.MOD_ID )
+public final class TerminalMessageQueue
+{
+    private static final Queue<PendingMessage> queue = new ArrayDeque<>();
+
+    private TerminalMessageQueue()
+    {
+    }
+
+    /**
+     * Send a message to a player once its terminal state is ready.
+     *
+     * @param player  The player to send the message to.
+     * @param message The message to send.
+     * @param state   The terminal state contained within this message.
+     */
+    public static void sendToPlayer( EntityPlayer player, IMessage message, TerminalState state )
+    {
+        if( queue.isEmpty() && state.isReady() )
+        {
+            NetworkHandler.sendToPlayer( player, message );
+        }
+        else
+        {
+            queue.add( new PendingMessage( player, message, state ) );
+        }
+    }
+
+    /**
+     * Send every queued message, waiting for any states which have not been compressed yet.
+     */
+    public static void flush()
+    {
+        PendingMessage message;
+        while( (message = queue.poll()) != null ) message.send();
+    }
+
+    /**
+     * Send queued messages until we reach one which is not ready yet.
+     */
+    private static void flushReady()
+    {
+        PendingMessage message;
+        while( (message = queue.peek()) != null && message.state.isReady() )
+        {
+            queue.remove();
+            message.send();
+        }
+    }
+
+    public static void reset()
+    {
+        queue.clear();
+    }
+
+    @SubscribeEvent( priority = EventPriority.HIGHEST )
+    public static void onServerTick( TickEvent.ServerTickEvent event )
+    {
+        if( event.phase == TickEvent.Phase.START )
+        {
+            flush();
+        }
+        else
+        {
+            flushReady();
+        }
+    }
+
+    private static final class PendingMessage
+    {
+        final EntityPlayer player;
+        final IMessage message;
+        final TerminalState state;
+
+        PendingMessage( EntityPlayer player, IMessage message, TerminalState state )
+        {
+            this.player = player;
+            this.message = message;
+            this.state = state;
+        }
+
+        void send()
+        {
+            // Skip players who have disconnected since this message was queued.
+            if( player instanceof EntityPlayerMP && ((EntityPlayerMP) player).hasDisconnected() ) return;
+            NetworkHandler.sendToPlayer( player, message );
+        }
+    }
+}
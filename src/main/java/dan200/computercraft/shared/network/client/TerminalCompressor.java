@@ -0,0 +1,121 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.shared.network.client;
+
+import dan200.computercraft.shared.util.ThreadUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses terminal states in the GZIP format, on a small pool of worker threads.
+ *
+ * Each thread keeps its own {@link Deflater} and output buffer, rather than allocating new ones (as
+ * {@link java.util.zip.GZIPOutputStream} does) for every state.
+ *
+ * If the pool's queue is full, states are compressed on the calling thread instead.
+ */
+final class TerminalCompressor
+{
+    private static final byte[] GZIP_HEADER = new byte[] { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+    private static final int GZIP_TRAILER = 8;
+
+    /**
+     * The size of the output buffer each thread starts with.
+     */
+    private static final int INITIAL_BUFFER = 8 * 1024;
+
+    /**
+     * Output buffers larger than this are not kept around after use, to avoid holding on to lots of memory after
+     * compressing a single large terminal.
+     */
+    private static final int MAX_RETAINED_BUFFER = 256 * 1024;
+
+    private static final int THREADS = Math.max( 1, Math.min( 4, Runtime.getRuntime().availableProcessors() / 2 ) );
+    private static final int QUEUE_SIZE = 1024;
+
+    private static final ThreadPoolExecutor executor;
+
+    static
+    {
+        executor = new ThreadPoolExecutor(
+            THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>( QUEUE_SIZE ),
+            ThreadUtils.factory( "Terminal-Compression" ),
+            new ThreadPoolExecutor.CallerRunsPolicy()
+        );
+        executor.allowCoreThreadTimeOut( true );
+    }
+
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial( () -> new Deflater( Deflater.DEFAULT_COMPRESSION, true ) );
+    private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial( () -> new byte[INITIAL_BUFFER] );
+
+    private TerminalCompressor()
+    {
+    }
+
+    /**
+     * Compress a buffer off the current thread.
+     *
+     * @param buffer The buffer to compress. This must be backed by an array, and not modified afterwards.
+     * @return The compressed buffer, once ready.
+     */
+    static CompletableFuture<ByteBuf> compressAsync( ByteBuf buffer )
+    {
+        return CompletableFuture.supplyAsync( () -> compress( buffer ), executor );
+    }
+
+    /**
+     * Compress a buffer on the current thread.
+     *
+     * @param buffer The buffer to compress. This must be backed by an array.
+     * @return The compressed buffer.
+     */
+    static ByteBuf compress( ByteBuf buffer )
+    {
+        byte[] input = buffer.array();
+        int offset = buffer.arrayOffset() + buffer.readerIndex(), length = buffer.readableBytes();
+
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        deflater.setInput( input, offset, length );
+        deflater.finish();
+
+        byte[] output = buffers.get();
+        System.arraycopy( GZIP_HEADER, 0, output, 0, GZIP_HEADER.length );
+        int position = GZIP_HEADER.length;
+        while( !deflater.finished() )
+        {
+            if( position == output.length ) output = Arrays.copyOf( output, output.length * 2 );
+            position += deflater.deflate( output, position, output.length - position );
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update( input, offset, length );
+
+        if( position + GZIP_TRAILER > output.length ) output = Arrays.copyOf( output, position + GZIP_TRAILER );
+        position = writeInt( output, position, (int) crc.getValue() );
+        position = writeInt( output, position, length );
+
+        if( output.length <= MAX_RETAINED_BUFFER ) buffers.set( output );
+
+        return Unpooled.copiedBuffer( output, 0, position );
+    }
+
+    private static int writeInt( byte[] output, int position, int value )
+    {
+        output[position] = (byte) value;
+        output[position + 1] = (byte) (value >> 8);
+        output[position + 2] = (byte) (value >> 16);
+        output[position + 3] = (byte) (value >> 24);
+        return position + 4;
+    }
+}
@@ -10,17 +10,15 @@ import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.shared.util.IoUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketBuffer;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * A snapshot of a terminal's state.
@@ -28,20 +26,41 @@ import java.util.zip.GZIPOutputStream;
  * This is somewhat memory inefficient (we build a buffer, only to write it elsewhere), however it means we get a
  * complete and accurate description of a terminal, which avoids a lot of complexities with resizing terminals, dirty
  * states, etc...
+ *
+ * A state may instead be a delta (see {@link #delta(boolean, Terminal)}), containing only the lines which have changed
+ * since the previous delta. These may only be sent to clients which have received every update since their last full
+ * snapshot.
+ *
+ * Compressed states are compressed off the main thread as soon as they are created (see {@link TerminalCompressor}).
+ * Writing a state before then will wait for compression to finish, so messages should be sent with
+ * {@link dan200.computercraft.shared.network.TerminalMessageQueue} where possible.
  */
 public class TerminalState
 {
+    /**
+     * Deltas smaller than this are not worth compressing, as the GZIP header and trailer outweigh any savings.
+     */
+    private static final int COMPRESSION_THRESHOLD = 256;
+
     public final boolean colour;
 
     public final int width;
     public final int height;
 
+    /**
+     * Whether this state is a delta, rather than a full snapshot.
+     *
+     * @see Terminal#writeDelta(PacketBuffer)
+     */
+    public final boolean delta;
+
     private final boolean compress;
 
     @Nullable
     private final ByteBuf buffer;
 
-    private ByteBuf compressed;
+    @Nullable
+    private CompletableFuture<ByteBuf> compressed;
 
     public TerminalState( boolean colour, @Nullable Terminal terminal )
     {
@@ -49,29 +68,67 @@ public class TerminalState
     }
 
     public TerminalState( boolean colour, @Nullable Terminal terminal, boolean compress )
+    {
+        this( colour, terminal, compress, false );
+    }
+
+    private TerminalState( boolean colour, @Nullable Terminal terminal, boolean compress, boolean delta )
     {
         this.colour = colour;
-        this.compress = compress;
 
         if( terminal == null )
         {
             this.width = this.height = 0;
+            this.delta = false;
+            this.compress = compress;
             this.buffer = null;
         }
         else
         {
-            this.width = terminal.getWidth();
-            this.height = terminal.getHeight();
-
             ByteBuf buf = this.buffer = Unpooled.buffer();
-            terminal.write( new PacketBuffer( buf ) );
+
+            // Ensure the terminal isn't resized while we're writing it.
+            synchronized( terminal )
+            {
+                this.width = terminal.getWidth();
+                this.height = terminal.getHeight();
+
+                if( delta )
+                {
+                    this.delta = terminal.writeDelta( new PacketBuffer( buf ) );
+                }
+                else
+                {
+                    terminal.write( new PacketBuffer( buf ) );
+                    this.delta = false;
+                }
+            }
+
+            this.compress = compress && (!this.delta || buf.readableBytes() >= COMPRESSION_THRESHOLD);
+            if( this.compress ) compressed = TerminalCompressor.compressAsync( buf );
         }
     }
 
+    /**
+     * Create a delta of a terminal's state, containing the changes since the last delta.
+     *
+     * If the terminal has changed too much, this will be a full snapshot instead.
+     *
+     * @param colour   Whether this terminal supports colour.
+     * @param terminal The terminal to write.
+     * @return The terminal's state.
+     * @see Terminal#writeDelta(PacketBuffer)
+     */
+    public static TerminalState delta( boolean colour, @Nullable Terminal terminal )
+    {
+        return new TerminalState( colour, terminal, true, true );
+    }
+
     public TerminalState( PacketBuffer buf )
     {
         this.colour = buf.readBoolean();
         this.compress = buf.readBoolean();
+        this.delta = buf.readBoolean();
 
         if( buf.readBoolean() )
         {
@@ -92,6 +149,7 @@ public class TerminalState
     {
         buf.writeBoolean( colour );
         buf.writeBoolean( compress );
+        buf.writeBoolean( delta );
 
         buf.writeBoolean( buffer != null );
         if( buffer != null )
@@ -115,35 +173,38 @@ public class TerminalState
         return buffer == null ? 0 : buffer.readableBytes();
     }
 
-    public void apply( Terminal terminal )
+    /**
+     * Determine whether this state can be written without waiting for it to be compressed.
+     *
+     * @return Whether this state is ready to be sent.
+     */
+    public boolean isReady()
     {
-        if( buffer == null ) throw new NullPointerException( "buffer" );
-        terminal.read( new PacketBuffer( buffer ) );
+        return compressed == null || compressed.isDone();
     }
 
-    private ByteBuf getCompressed()
+    public void apply( Terminal terminal )
     {
         if( buffer == null ) throw new NullPointerException( "buffer" );
-        if( !compress ) return buffer;
-        if( compressed != null ) return compressed;
-
-        ByteBuf compressed = Unpooled.directBuffer();
-        OutputStream stream = null;
-        try
+        if( delta )
         {
-            stream = new GZIPOutputStream( new ByteBufOutputStream( compressed ) );
-            stream.write( buffer.array(), buffer.arrayOffset(), buffer.readableBytes() );
+            terminal.readDelta( new PacketBuffer( buffer ) );
         }
-        catch( IOException e )
-        {
-            throw new UncheckedIOException( e );
-        }
-        finally
+        else
         {
-            IoUtil.closeQuietly( stream );
+            terminal.read( new PacketBuffer( buffer ) );
         }
+    }
+
+    private ByteBuf getCompressed()
+    {
+        if( buffer == null ) throw new NullPointerException( "buffer" );
+        if( !compress ) return buffer;
 
-        return this.compressed = compressed;
+        // States are normally compressed when they are created, but ones which were read from the network (and so are
+        // only being written again in tests) will not be.
+        if( compressed == null ) compressed = CompletableFuture.completedFuture( TerminalCompressor.compress( buffer ) );
+        return compressed.join();
     }
 
     private static ByteBuf readCompressed( ByteBuf buf, int length, boolean compress )
@@ -0,0 +1,118 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.shared.peripheral.modem;
+
+import dan200.computercraft.api.network.IPacketReceiver;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which channels each {@link ModemPeripheral} on a network has open, allowing packets to only be delivered to
+ * modems which are listening for them.
+ *
+ * Modifications must be guarded by the owning network's lock. {@link #get(int)} may be called without any lock.
+ *
+ * @see IChannelNetwork
+ */
+public final class ChannelIndex
+{
+    private final Map<IPacketReceiver, IntSet> subscriptions = new HashMap<>();
+    private final Map<Integer, Set<IPacketReceiver>> channels = new ConcurrentHashMap<>();
+
+    /**
+     * Add a modem to this index, subscribing it to all of its currently open channels.
+     *
+     * @param modem The modem to add.
+     */
+    public void add( @Nonnull ModemPeripheral modem )
+    {
+        if( !subscriptions.containsKey( modem ) ) subscriptions.put( modem, IntSets.EMPTY_SET );
+        update( modem );
+    }
+
+    /**
+     * Resynchronise a modem's subscriptions with its currently open channels. This does nothing if the modem is not in
+     * this index.
+     *
+     * @param modem The modem whose channels have changed.
+     */
+    public void update( @Nonnull ModemPeripheral modem )
+    {
+        IntSet existing = subscriptions.get( modem );
+        if( existing == null ) return;
+
+        IntSet current = modem.getModemState().getChannels();
+        for( IntIterator it = existing.iterator(); it.hasNext(); )
+        {
+            int channel = it.nextInt();
+            if( !current.contains( channel ) ) unsubscribe( modem, channel );
+        }
+        for( IntIterator it = current.iterator(); it.hasNext(); )
+        {
+            int channel = it.nextInt();
+            if( !existing.contains( channel ) ) subscribe( modem, channel );
+        }
+
+        subscriptions.put( modem, current );
+    }
+
+    /**
+     * Remove a receiver from this index.
+     *
+     * @param receiver The receiver to remove.
+     * @return Whether this receiver was in the index.
+     */
+    public boolean remove( @Nonnull IPacketReceiver receiver )
+    {
+        IntSet existing = subscriptions.remove( receiver );
+        if( existing == null ) return false;
+
+        for( IntIterator it = existing.iterator(); it.hasNext(); ) unsubscribe( receiver, it.nextInt() );
+        return true;
+    }
+
+    /**
+     * Get all modems with a given channel open.
+     *
+     * @param channel The channel to look up.
+     * @return The modems listening on this channel, or {@code null} if there are none.
+     */
+    @Nullable
+    public Set<IPacketReceiver> get( int channel )
+    {
+        return channels.get( channel );
+    }
+
+    /**
+     * Determine whether any modem in this index has a channel open.
+     *
+     * @return If no channels are open.
+     */
+    public boolean isEmpty()
+    {
+        return channels.isEmpty();
+    }
+
+    private void subscribe( IPacketReceiver receiver, int channel )
+    {
+        channels.computeIfAbsent( channel, x -> Collections.newSetFromMap( new ConcurrentHashMap<>() ) ).add( receiver );
+    }
+
+    private void unsubscribe( IPacketReceiver receiver, int channel )
+    {
+        Set<IPacketReceiver> receivers = channels.get( channel );
+        if( receivers != null && receivers.remove( receiver ) && receivers.isEmpty() ) channels.remove( channel );
+    }
+}
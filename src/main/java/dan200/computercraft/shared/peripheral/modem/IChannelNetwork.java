@@ -0,0 +1,27 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.shared.peripheral.modem;
+
+import dan200.computercraft.api.network.IPacketNetwork;
+
+import javax.annotation.Nonnull;
+
+/**
+ * An {@link IPacketNetwork} which only delivers packets to {@link ModemPeripheral}s which have the packet's channel
+ * open.
+ *
+ * @see ChannelIndex
+ */
+public interface IChannelNetwork extends IPacketNetwork
+{
+    /**
+     * Called after a modem on this network has opened or closed a channel. This should be ignored if the modem is not
+     * currently attached to this network.
+     *
+     * @param modem The modem whose channels have changed.
+     */
+    void updateChannels( @Nonnull ModemPeripheral modem );
+}
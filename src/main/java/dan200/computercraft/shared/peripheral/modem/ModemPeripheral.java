@@ -24,9 +24,10 @@ import static dan200.computercraft.api.lua.ArgumentHelper.getInt;
 
 public abstract class ModemPeripheral implements IPeripheral, IPacketSender, IPacketReceiver
 {
-    private IPacketNetwork m_network;
+    private volatile IPacketNetwork m_network;
     private final Set<IComputerAccess> m_computers = new HashSet<>( 1 );
     private final ModemState m_state;
+    private final Runnable m_channelListener = this::onChannelsChanged;
 
     protected ModemPeripheral( ModemState state )
     {
@@ -57,13 +58,28 @@ public abstract class ModemPeripheral implements IPeripheral, IPacketSender, IPa
         if( m_network == network ) return;
 
         // Leave old network
-        if( m_network != null ) m_network.removeReceiver( this );
+        if( m_network != null )
+        {
+            m_state.removeChannelListener( m_channelListener );
+            m_network.removeReceiver( this );
+        }
 
         // Set new network
         m_network = network;
 
-        // Join new network
-        if( m_network != null ) m_network.addReceiver( this );
+        // Join new network. We listen for channel changes first, so that any channels opened while joining are not
+        // missed.
+        if( m_network != null )
+        {
+            m_state.addChannelListener( m_channelListener );
+            m_network.addReceiver( this );
+        }
+    }
+
+    private void onChannelsChanged()
+    {
+        IPacketNetwork network = m_network;
+        if( network instanceof IChannelNetwork ) ((IChannelNetwork) network).updateChannels( this );
     }
 
     protected void switchNetwork()
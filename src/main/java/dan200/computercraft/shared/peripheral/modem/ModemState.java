@@ -9,6 +9,8 @@ import dan200.computercraft.api.lua.LuaException;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ModemState
@@ -19,6 +21,12 @@ public class ModemState
     private boolean open = false;
     private final IntSet channels = new IntOpenHashSet();
 
+    /**
+     * Listeners to notify after a channel is opened or closed. These are called outside of any lock, and so may observe
+     * a later set of channels than the one which triggered them.
+     */
+    private final List<Runnable> channelListeners = new CopyOnWriteArrayList<>();
+
     public ModemState()
     {
         onChanged = null;
@@ -54,34 +62,69 @@ public class ModemState
         }
     }
 
+    /**
+     * Get a snapshot of the currently open channels.
+     *
+     * @return A copy of the open channels.
+     */
+    public IntSet getChannels()
+    {
+        synchronized( channels )
+        {
+            return new IntOpenHashSet( channels );
+        }
+    }
+
     public void open( int channel ) throws LuaException
     {
         synchronized( channels )
         {
-            if( !channels.contains( channel ) )
-            {
-                if( channels.size() >= 128 ) throw new LuaException( "Too many open channels" );
-                channels.add( channel );
-                setOpen( true );
-            }
+            if( channels.contains( channel ) ) return;
+
+            if( channels.size() >= 128 ) throw new LuaException( "Too many open channels" );
+            channels.add( channel );
+            setOpen( true );
         }
+
+        notifyChannels();
     }
 
     public void close( int channel )
     {
         synchronized( channels )
         {
-            channels.remove( channel );
+            if( !channels.remove( channel ) ) return;
             if( channels.isEmpty() ) setOpen( false );
         }
+
+        notifyChannels();
     }
 
     public void closeAll()
     {
+        boolean changed;
         synchronized( channels )
         {
+            changed = !channels.isEmpty();
             channels.clear();
             setOpen( false );
         }
+
+        if( changed ) notifyChannels();
+    }
+
+    public void addChannelListener( Runnable listener )
+    {
+        channelListeners.add( listener );
+    }
+
+    public void removeChannelListener( Runnable listener )
+    {
+        channelListeners.remove( listener );
+    }
+
+    private void notifyChannels()
+    {
+        for( Runnable listener : channelListeners ) listener.run();
     }
 }
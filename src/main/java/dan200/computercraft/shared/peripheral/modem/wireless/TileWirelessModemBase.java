@@ -115,6 +115,7 @@ public abstract class TileWirelessModemBase extends TileGeneric implements IPeri
         {
             hasModemDirection = true;
             modemDirection = getDirection();
+            modem.updateLocation();
         }
     }
 
@@ -9,9 +9,10 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.network.IPacketNetwork;
 import dan200.computercraft.shared.peripheral.modem.ModemPeripheral;
 import dan200.computercraft.shared.peripheral.modem.ModemState;
-import net.minecraft.util.math.Vec3d;
 import net.minecraft.world.World;
 
+import javax.annotation.Nonnull;
+
 public abstract class WirelessModemPeripheral extends ModemPeripheral
 {
     private boolean m_advanced;
@@ -40,24 +41,52 @@ public abstract class WirelessModemPeripheral extends ModemPeripheral
             World world = getWorld();
             if( world != null )
             {
-                Vec3d position = getPosition();
-                double minRange = ComputerCraft.modem_range;
-                double maxRange = ComputerCraft.modem_highAltitudeRange;
                 if( world.isRaining() && world.isThundering() )
                 {
-                    minRange = ComputerCraft.modem_rangeDuringStorm;
-                    maxRange = ComputerCraft.modem_highAltitudeRangeDuringStorm;
+                    return getRange( world, getPosition().y, ComputerCraft.modem_rangeDuringStorm, ComputerCraft.modem_highAltitudeRangeDuringStorm );
                 }
-                if( position.y > 96.0 && maxRange > minRange )
+                else
                 {
-                    return minRange + (position.y - 96.0) * ((maxRange - minRange) / ((world.getHeight() - 1) - 96.0));
+                    return getRange( world, getPosition().y, ComputerCraft.modem_range, ComputerCraft.modem_highAltitudeRange );
                 }
-                return minRange;
             }
             return 0.0;
         }
     }
 
+    /**
+     * Notify the wireless network that this modem's world or position may have changed. This should be called whenever
+     * the modem moves, so that it can be found by {@link WirelessNetwork}'s spatial index.
+     */
+    public void updateLocation()
+    {
+        WirelessNetwork.getUniversal().updateReceiver( this );
+    }
+
+    /**
+     * Get the maximum range a normal (non-advanced) modem may have at a given height, whatever the current weather.
+     *
+     * @param world The world the modem is in.
+     * @param y     The height of the modem.
+     * @return The maximum range of this modem.
+     */
+    static double getMaximumRange( @Nonnull World world, double y )
+    {
+        return Math.max(
+            getRange( world, y, ComputerCraft.modem_range, ComputerCraft.modem_highAltitudeRange ),
+            getRange( world, y, ComputerCraft.modem_rangeDuringStorm, ComputerCraft.modem_highAltitudeRangeDuringStorm )
+        );
+    }
+
+    private static double getRange( World world, double y, double minRange, double maxRange )
+    {
+        if( y > 96.0 && maxRange > minRange )
+        {
+            return minRange + (y - 96.0) * ((maxRange - minRange) / ((world.getHeight() - 1) - 96.0));
+        }
+        return minRange;
+    }
+
     @Override
     protected IPacketNetwork getNetwork()
     {
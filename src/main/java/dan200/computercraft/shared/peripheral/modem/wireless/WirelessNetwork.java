@@ -5,18 +5,22 @@
  */
 package dan200.computercraft.shared.peripheral.modem.wireless;
 
-import dan200.computercraft.api.network.IPacketNetwork;
 import dan200.computercraft.api.network.IPacketReceiver;
 import dan200.computercraft.api.network.IPacketSender;
 import dan200.computercraft.api.network.Packet;
+import dan200.computercraft.shared.peripheral.modem.ChannelIndex;
+import dan200.computercraft.shared.peripheral.modem.IChannelNetwork;
+import dan200.computercraft.shared.peripheral.modem.ModemPeripheral;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
 
 import javax.annotation.Nonnull;
-import java.util.Collections;
-import java.util.Objects;
-import java.util.Set;
+import javax.annotation.Nullable;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
-public class WirelessNetwork implements IPacketNetwork
+public class WirelessNetwork implements IChannelNetwork
 {
     private static WirelessNetwork s_universalNetwork = null;
 
@@ -34,34 +38,254 @@ public class WirelessNetwork implements IPacketNetwork
         s_universalNetwork = null;
     }
 
-    private final Set<IPacketReceiver> m_receivers = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+    /**
+     * The size of each cell in the spatial index, as a power of two.
+     */
+    private static final int CELL_SHIFT = 6;
+
+    /**
+     * The channels open on receivers which may hear packets from any distance and dimension, such as ender modems.
+     * These are not in the spatial index, so are looked up by channel instead.
+     */
+    private final ChannelIndex m_interdimensional = new ChannelIndex();
+
+    /**
+     * Receivers which we cannot index, as we've no way of knowing when they move. These are checked for every packet.
+     */
+    private final Set<IPacketReceiver> m_unindexed = Collections.newSetFromMap( new ConcurrentHashMap<>() );
+
+    /**
+     * The location of every receiver in the spatial index.
+     */
+    private final Map<IPacketReceiver, Location> m_locations = new ConcurrentHashMap<>();
+
+    /**
+     * The spatial index for each world.
+     */
+    private final Map<World, Dimension> m_dimensions = new ConcurrentHashMap<>();
+
+    /**
+     * The channels each modem has open. Modems are only delivered packets on those channels.
+     */
+    private final ChannelIndex m_channels = new ChannelIndex();
 
     @Override
     public void addReceiver( @Nonnull IPacketReceiver receiver )
     {
         Objects.requireNonNull( receiver, "device cannot be null" );
-        m_receivers.add( receiver );
+        if( !(receiver instanceof WirelessModemPeripheral) )
+        {
+            m_unindexed.add( receiver );
+            return;
+        }
+
+        synchronized( this )
+        {
+            m_channels.add( (WirelessModemPeripheral) receiver );
+            if( receiver.isInterdimensional() )
+            {
+                m_interdimensional.add( (WirelessModemPeripheral) receiver );
+            }
+            else if( !m_locations.containsKey( receiver ) )
+            {
+                place( receiver, new Location( receiver ) );
+            }
+        }
     }
 
     @Override
     public void removeReceiver( @Nonnull IPacketReceiver receiver )
     {
         Objects.requireNonNull( receiver, "device cannot be null" );
-        m_receivers.remove( receiver );
+        m_unindexed.remove( receiver );
+        synchronized( this )
+        {
+            m_channels.remove( receiver );
+            m_interdimensional.remove( receiver );
+
+            Location location = m_locations.remove( receiver );
+            if( location != null ) unplace( receiver, location );
+        }
+    }
+
+    @Override
+    public synchronized void updateChannels( @Nonnull ModemPeripheral modem )
+    {
+        m_channels.update( modem );
+        m_interdimensional.update( modem );
+    }
+
+    /**
+     * Update the position of a receiver within the spatial index. This should be called whenever a receiver's world or
+     * position changes. Receivers which are not attached to this network are ignored.
+     *
+     * @param receiver The receiver which may have moved.
+     * @see WirelessModemPeripheral#updateLocation()
+     */
+    public void updateReceiver( @Nonnull IPacketReceiver receiver )
+    {
+        // Most receivers will not have left their cell, so avoid taking the lock where possible.
+        Location existing = m_locations.get( receiver );
+        if( existing == null ) return;
+
+        Location location = new Location( receiver );
+        if( location.equals( existing ) ) return;
+
+        synchronized( this )
+        {
+            existing = m_locations.get( receiver );
+            if( existing == null || location.equals( existing ) ) return;
+
+            unplace( receiver, existing );
+            place( receiver, location );
+        }
+    }
+
+    private void place( IPacketReceiver receiver, Location location )
+    {
+        m_locations.put( receiver, location );
+        if( location.world == null ) return;
+
+        Dimension dimension = m_dimensions.computeIfAbsent( location.world, x -> new Dimension() );
+        dimension.cells
+            .computeIfAbsent( location.cell, x -> Collections.newSetFromMap( new ConcurrentHashMap<>() ) )
+            .add( receiver );
+        dimension.heights.merge( location.height, 1, Integer::sum );
+        dimension.updateHeight();
+    }
+
+    private void unplace( IPacketReceiver receiver, Location location )
+    {
+        if( location.world == null ) return;
+
+        Dimension dimension = m_dimensions.get( location.world );
+        if( dimension == null ) return;
+
+        Set<IPacketReceiver> cell = dimension.cells.get( location.cell );
+        if( cell != null && cell.remove( receiver ) && cell.isEmpty() ) dimension.cells.remove( location.cell );
+
+        dimension.heights.computeIfPresent( location.height, ( k, count ) -> count == 1 ? null : count - 1 );
+        dimension.updateHeight();
+
+        // Don't hold on to unloaded worlds.
+        if( dimension.cells.isEmpty() ) m_dimensions.remove( location.world );
     }
 
     @Override
     public void transmitSameDimension( @Nonnull Packet packet, double range )
     {
         Objects.requireNonNull( packet, "packet cannot be null" );
-        for( IPacketReceiver device : m_receivers ) tryTransmit( device, packet, range, false );
+        for( IPacketReceiver device : m_unindexed ) tryTransmit( device, packet, range, false );
+
+        Set<IPacketReceiver> subscribers = m_channels.get( packet.getChannel() );
+        if( subscribers == null ) return;
+
+        // Modems may be found either by the channels they have open, or by their position. We pick whichever requires
+        // visiting fewer receivers.
+        Set<IPacketReceiver> interdimensional = m_interdimensional.get( packet.getChannel() );
+        int limit = subscribers.size() - (interdimensional == null ? 0 : interdimensional.size());
+        List<Set<IPacketReceiver>> cells = findCells( packet.getSender(), range, limit );
+        if( cells == null )
+        {
+            for( IPacketReceiver device : subscribers ) tryTransmit( device, packet, range, false );
+        }
+        else
+        {
+            // Interdimensional modems are not in any cell, so must be visited separately.
+            if( interdimensional != null )
+            {
+                for( IPacketReceiver device : interdimensional ) tryTransmit( device, packet, range, false );
+            }
+            for( Set<IPacketReceiver> cell : cells )
+            {
+                for( IPacketReceiver device : cell ) tryTransmit( device, packet, range, false );
+            }
+        }
+    }
+
+    /**
+     * Find all cells in the spatial index which a packet may reach, provided they contain fewer than {@code limit}
+     * receivers.
+     *
+     * @param sender The sender of this packet.
+     * @param range  The range of the packet.
+     * @param limit  The maximum number of receivers worth visiting.
+     * @return The cells the packet may reach, or {@code null} if they contain too many receivers.
+     */
+    @Nullable
+    private List<Set<IPacketReceiver>> findCells( IPacketSender sender, double range, int limit )
+    {
+        int remaining = limit;
+        if( remaining <= 0 ) return null;
+
+        World world = sender.getWorld();
+        if( world == null ) return null;
+
+        Dimension dimension = m_dimensions.get( world );
+        if( dimension == null ) return Collections.emptyList();
+
+        // Range is symmetric, so we need to search within the larger of our range and that of any receiver in this
+        // dimension.
+        int maxHeight = dimension.maxHeight;
+        if( maxHeight == Integer.MIN_VALUE ) return Collections.emptyList();
+        double radius = Math.max( range, WirelessModemPeripheral.getMaximumRange( world, maxHeight ) );
+
+        Vec3d position = sender.getPosition();
+        long minX = cellOf( position.x - radius ), maxX = cellOf( position.x + radius );
+        long minZ = cellOf( position.z - radius ), maxZ = cellOf( position.z + radius );
+
+        List<Set<IPacketReceiver>> cells = new ArrayList<>();
+        long cellCount = (maxX - minX + 1) * (maxZ - minZ + 1);
+        if( cellCount >= dimension.cells.size() )
+        {
+            // If we'd end up visiting more cells than actually exist, just visit every cell instead.
+            for( Set<IPacketReceiver> cell : dimension.cells.values() )
+            {
+                if( (remaining -= cell.size()) <= 0 ) return null;
+                cells.add( cell );
+            }
+        }
+        else
+        {
+            if( cellCount >= remaining ) return null;
+            for( long x = minX; x <= maxX; x++ )
+            {
+                for( long z = minZ; z <= maxZ; z++ )
+                {
+                    Set<IPacketReceiver> cell = dimension.cells.get( cellKey( (int) x, (int) z ) );
+                    if( cell == null ) continue;
+                    if( (remaining -= cell.size()) <= 0 ) return null;
+                    cells.add( cell );
+                }
+            }
+        }
+
+        return cells;
     }
 
     @Override
     public void transmitInterdimensional( @Nonnull Packet packet )
     {
         Objects.requireNonNull( packet, "packet cannot be null" );
-        for( IPacketReceiver device : m_receivers ) tryTransmit( device, packet, 0, true );
+        for( IPacketReceiver device : m_unindexed ) tryTransmit( device, packet, 0, true );
+
+        Set<IPacketReceiver> subscribers = m_channels.get( packet.getChannel() );
+        if( subscribers != null )
+        {
+            for( IPacketReceiver device : subscribers ) tryTransmit( device, packet, 0, true );
+        }
+    }
+
+    private static long cellOf( double coordinate )
+    {
+        // Clamp to avoid overflowing with very large (or infinite) ranges.
+        double clamped = Math.max( Integer.MIN_VALUE, Math.min( Integer.MAX_VALUE, coordinate ) );
+        return MathHelper.floor( clamped ) >> CELL_SHIFT;
+    }
+
+    private static long cellKey( int x, int z )
+    {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
     }
 
     private static void tryTransmit( IPacketReceiver receiver, Packet packet, double range, boolean interdimensional )
@@ -90,4 +314,65 @@ public class WirelessNetwork implements IPacketNetwork
     {
         return true;
     }
+
+    /**
+     * The position of a receiver within the spatial index.
+     */
+    private static final class Location
+    {
+        final World world;
+        final long cell;
+
+        /**
+         * The receiver's height, rounded up. Used to determine the maximum range of any receiver in a dimension.
+         */
+        final int height;
+
+        Location( IPacketReceiver receiver )
+        {
+            world = receiver.getWorld();
+            Vec3d position = receiver.getPosition();
+            cell = cellKey( (int) cellOf( position.x ), (int) cellOf( position.z ) );
+            height = MathHelper.ceil( position.y );
+        }
+
+        @Override
+        public boolean equals( Object o )
+        {
+            if( this == o ) return true;
+            if( !(o instanceof Location) ) return false;
+            Location other = (Location) o;
+            return world == other.world && cell == other.cell && height == other.height;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash( System.identityHashCode( world ), cell, height );
+        }
+    }
+
+    /**
+     * The receivers within a single world, bucketed into cells along the X and Z axes.
+     */
+    private static final class Dimension
+    {
+        final Map<Long, Set<IPacketReceiver>> cells = new ConcurrentHashMap<>();
+
+        /**
+         * The number of receivers at each height. This is guarded by the network's lock.
+         */
+        final TreeMap<Integer, Integer> heights = new TreeMap<>();
+
+        /**
+         * The height of the highest receiver, or {@link Integer#MIN_VALUE} if there are none. As modems have a larger
+         * range when higher up, this gives an upper bound on the range of any receiver.
+         */
+        volatile int maxHeight = Integer.MIN_VALUE;
+
+        void updateHeight()
+        {
+            maxHeight = heights.isEmpty() ? Integer.MIN_VALUE : heights.lastKey();
+        }
+    }
 }
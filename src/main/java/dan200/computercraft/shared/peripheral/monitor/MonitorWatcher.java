@@ -7,9 +7,12 @@
 package dan200.computercraft.shared.peripheral.monitor;
 
 import dan200.computercraft.ComputerCraft;
-import dan200.computercraft.shared.network.NetworkHandler;
+import dan200.computercraft.shared.network.TerminalMessageQueue;
 import dan200.computercraft.shared.network.client.MonitorClientMessage;
 import dan200.computercraft.shared.network.client.TerminalState;
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.server.management.PlayerChunkMapEntry;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
@@ -21,15 +24,25 @@ import net.minecraftforge.event.world.ChunkWatchEvent;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.common.eventhandler.SubscribeEvent;
 import net.minecraftforge.fml.common.gameevent.TickEvent;
-import net.minecraftforge.fml.common.network.NetworkRegistry;
+import net.minecraftforge.fml.common.network.simpleimpl.IMessage;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.*;
 
+/**
+ * Sends monitor contents to the players which can see them.
+ *
+ * Monitors are queued whenever their terminal changes, and each monitor only appears on the queue once, so multiple
+ * changes between updates are sent as a single delta. Every tick, queued monitors are sent in order of how close they
+ * are to the players watching them (and how many players there are), subject to both a global
+ * ({@link ComputerCraft#monitorBandwidth}) and per-player ({@link ComputerCraft#monitorPlayerBandwidth}) budget.
+ *
+ * If a player has run out of budget, they miss that monitor's delta, and are sent a full snapshot once they have
+ * budget again. Until then, the monitor remains on the queue.
+ */
 @Mod.EventBusSubscriber( modid = ComputerCraft.MOD_ID )
 public final class MonitorWatcher
 {
-    private static final Queue<TileMonitor> watching = new ArrayDeque<>();
+    private static final List<TileMonitor> watching = new ArrayList<>();
 
     private MonitorWatcher()
     {
@@ -37,10 +50,11 @@ public final class MonitorWatcher
 
     static void enqueue( TileMonitor monitor )
     {
-        if( monitor.enqueued ) return;
+        monitor.changed = true;
+        monitor.cached = null;
 
+        if( monitor.enqueued ) return;
         monitor.enqueued = true;
-        monitor.cached = null;
         watching.add( monitor );
     }
 
@@ -52,51 +66,243 @@ public final class MonitorWatcher
 
         for( TileEntity te : chunk.getTileEntityMap().values() )
         {
-            // Find all origin monitors who are not already on the queue.
+            // Find all origin monitors. Even if they are already on the queue we must send a full snapshot, as the
+            // queued update may only be a delta.
             if( !(te instanceof TileMonitor) ) continue;
 
             TileMonitor monitor = (TileMonitor) te;
             ServerMonitor serverMonitor = getMonitor( monitor );
-            if( serverMonitor == null || monitor.enqueued ) continue;
+            if( serverMonitor == null ) continue;
+
+            // If nobody else is receiving deltas for this monitor, the pending one is not needed by anyone. We
+            // discard it (and take a fresh snapshot), so this player isn't later sent changes they already have.
+            if( !hasSyncedWatchers( monitor, event.getPlayer() ) ) discardDelta( monitor, serverMonitor );
 
-            // We use the cached terminal state if available - this is guaranteed to
-            TerminalState state = monitor.cached;
-            if( state == null ) state = monitor.cached = serverMonitor.write();
-            NetworkHandler.sendToPlayer( event.getPlayer(), new MonitorClientMessage( monitor.getPos(), state ) );
+            TerminalState state = getSnapshot( monitor, serverMonitor );
+            TerminalMessageQueue.sendToPlayer( event.getPlayer(), new MonitorClientMessage( monitor.getPos(), state ), state );
+            if( monitor.stale != null ) monitor.stale.remove( event.getPlayer() );
         }
     }
 
     @SubscribeEvent
     public static void onTick( TickEvent.ServerTickEvent event )
     {
-        if( event.phase != TickEvent.Phase.END ) return;
+        if( event.phase != TickEvent.Phase.END || watching.isEmpty() ) return;
+
+        // Find the players watching each queued monitor, and sort the monitors so those closest to their viewers are
+        // sent first.
+        List<PendingMonitor> pending = new ArrayList<>( watching.size() );
+        for( TileMonitor tile : watching )
+        {
+            ServerMonitor monitor = getMonitor( tile );
+            List<EntityPlayerMP> players = monitor == null ? Collections.emptyList() : getWatchingPlayers( tile );
+            if( players.isEmpty() )
+            {
+                // Nobody can see this monitor, so there's no point sending anything. Players will be sent a full
+                // snapshot when they start watching it, so the pending delta can be thrown away.
+                if( monitor != null ) discardDelta( tile, monitor );
+                tile.enqueued = false;
+                tile.stale = null;
+                continue;
+            }
+
+            pending.add( new PendingMonitor( tile, monitor, players ) );
+        }
+        watching.clear();
+        pending.sort( Comparator.comparingDouble( x -> x.priority ) );
 
         long limit = ComputerCraft.monitorBandwidth;
         boolean obeyLimit = limit > 0;
 
-        TileMonitor tile;
-        while( (!obeyLimit || limit > 0) && (tile = watching.poll()) != null )
+        long playerLimit = ComputerCraft.monitorPlayerBandwidth;
+        Reference2LongMap<EntityPlayerMP> playerBudgets = new Reference2LongOpenHashMap<>();
+        playerBudgets.defaultReturnValue( playerLimit );
+
+        for( PendingMonitor pendingMonitor : pending )
         {
-            tile.enqueued = false;
-            ServerMonitor monitor = getMonitor( tile );
-            if( monitor == null ) continue;
+            TileMonitor tile = pendingMonitor.tile;
+            if( obeyLimit && limit <= 0 )
+            {
+                // We've run out of bandwidth, so try again next tick.
+                watching.add( tile );
+                continue;
+            }
 
-            BlockPos pos = tile.getPos();
-            World world = tile.getWorld();
-            WorldServer serverWorld = world instanceof WorldServer ? (WorldServer) world : DimensionManager.getWorld( world.provider.getDimension() );
-            PlayerChunkMapEntry entry = serverWorld.getPlayerChunkMap().getEntry( pos.getX() >> 4, pos.getZ() >> 4 );
-            if( entry == null || entry.getWatchingPlayers().isEmpty() ) continue;
+            limit -= send( tile, pendingMonitor.monitor, pendingMonitor.players, playerBudgets, playerLimit > 0 );
 
-            NetworkRegistry.TargetPoint point = new NetworkRegistry.TargetPoint( world.provider.getDimension(), pos.getX(), pos.getY(), pos.getZ(), 0 );
-            TerminalState state = tile.cached = monitor.write();
-            NetworkHandler.sendToAllTracking( new MonitorClientMessage( pos, state ), point );
+            if( tile.changed || (tile.stale != null && !tile.stale.isEmpty()) )
+            {
+                watching.add( tile );
+            }
+            else
+            {
+                tile.enqueued = false;
+            }
+        }
+    }
+
+    /**
+     * Send any changes to a monitor to the players watching it.
+     *
+     * @param tile          The origin monitor tile.
+     * @param monitor       The monitor's terminal.
+     * @param players       The players watching this monitor.
+     * @param playerBudgets The remaining bandwidth of each player.
+     * @param obeyLimit     Whether to respect the per-player bandwidth limit.
+     * @return The amount of bandwidth consumed.
+     */
+    private static long send( TileMonitor tile, ServerMonitor monitor, List<EntityPlayerMP> players, Reference2LongMap<EntityPlayerMP> playerBudgets, boolean obeyLimit )
+    {
+        Set<EntityPlayerMP> stale = tile.stale;
+        if( stale != null ) stale.retainAll( players );
+
+        // Players who are out of budget miss this update, and will need a full snapshot instead.
+        List<EntityPlayerMP> receiving = new ArrayList<>( players.size() );
+        for( EntityPlayerMP player : players )
+        {
+            if( !obeyLimit || playerBudgets.getLong( player ) > 0 )
+            {
+                receiving.add( player );
+            }
+            else
+            {
+                if( stale == null ) stale = tile.stale = Collections.newSetFromMap( new WeakHashMap<>() );
+                stale.add( player );
+            }
+        }
 
-            limit -= state.size();
+        if( receiving.isEmpty() ) return 0;
+
+        // If the monitor has changed, send the delta to everyone who has received every previous update. Any players
+        // who are stale are sent a full snapshot, computed after the delta so that it includes its changes.
+        IMessage deltaPacket = null;
+        TerminalState deltaState = null;
+        long deltaSize = 0;
+        if( tile.changed )
+        {
+            tile.changed = false;
+
+            // A full snapshot is as up-to-date as the delta, so can be used for players who start watching later. Any
+            // previously cached one is older than this delta, and so must not be used.
+            deltaState = monitor.writeDelta();
+            tile.cached = deltaState.delta ? null : deltaState;
+            deltaPacket = new MonitorClientMessage( tile.getPos(), deltaState );
+            deltaSize = deltaState.size();
         }
+
+        IMessage snapshotPacket = null;
+        TerminalState snapshotState = null;
+        long snapshotSize = 0, used = 0;
+        for( EntityPlayerMP player : receiving )
+        {
+            long size;
+            if( stale == null || !stale.contains( player ) )
+            {
+                if( deltaPacket == null ) continue;
+                TerminalMessageQueue.sendToPlayer( player, deltaPacket, deltaState );
+                size = deltaSize;
+            }
+            else
+            {
+                if( snapshotPacket == null )
+                {
+                    snapshotState = getSnapshot( tile, monitor );
+                    snapshotPacket = new MonitorClientMessage( tile.getPos(), snapshotState );
+                    used += snapshotSize = snapshotState.size();
+                }
+
+                TerminalMessageQueue.sendToPlayer( player, snapshotPacket, snapshotState );
+                stale.remove( player );
+                size = snapshotSize;
+            }
+
+            if( obeyLimit ) playerBudgets.put( player, playerBudgets.getLong( player ) - size );
+        }
+
+        return used + deltaSize;
+    }
+
+    private static TerminalState getSnapshot( TileMonitor tile, ServerMonitor monitor )
+    {
+        // We use the cached terminal state if available - this is guaranteed to be up-to-date, as it is cleared
+        // whenever the monitor changes.
+        TerminalState state = tile.cached;
+        if( state == null ) state = tile.cached = monitor.write();
+        return state;
+    }
+
+    /**
+     * Discard a monitor's pending delta, as there are no players which need it.
+     *
+     * @param tile    The origin monitor tile.
+     * @param monitor The monitor's terminal.
+     */
+    private static void discardDelta( TileMonitor tile, ServerMonitor monitor )
+    {
+        monitor.discardDelta();
+        tile.changed = false;
+
+        // The cached snapshot may predate changes which have just been discarded, so must be recomputed.
+        tile.cached = null;
+    }
+
+    /**
+     * Determine whether any player besides the given one is watching this monitor and has received every delta.
+     *
+     * @param tile   The origin monitor tile.
+     * @param player The player to ignore.
+     * @return Whether any other player depends on the monitor's pending delta.
+     */
+    private static boolean hasSyncedWatchers( TileMonitor tile, EntityPlayerMP player )
+    {
+        for( EntityPlayerMP other : getWatchingPlayers( tile ) )
+        {
+            if( other != player && (tile.stale == null || !tile.stale.contains( other )) ) return true;
+        }
+        return false;
+    }
+
+    private static List<EntityPlayerMP> getWatchingPlayers( TileMonitor tile )
+    {
+        BlockPos pos = tile.getPos();
+        World world = tile.getWorld();
+        WorldServer serverWorld = world instanceof WorldServer ? (WorldServer) world : DimensionManager.getWorld( world.provider.getDimension() );
+        if( serverWorld == null ) return Collections.emptyList();
+
+        PlayerChunkMapEntry entry = serverWorld.getPlayerChunkMap().getEntry( pos.getX() >> 4, pos.getZ() >> 4 );
+        return entry == null ? Collections.emptyList() : entry.getWatchingPlayers();
     }
 
     private static ServerMonitor getMonitor( TileMonitor monitor )
     {
         return !monitor.isInvalid() && monitor.getXIndex() == 0 && monitor.getYIndex() == 0 ? monitor.getCachedServerMonitor() : null;
     }
+
+    private static final class PendingMonitor
+    {
+        final TileMonitor tile;
+        final ServerMonitor monitor;
+        final List<EntityPlayerMP> players;
+
+        /**
+         * The distance to the nearest player, divided by the number of players. Monitors with a lower value are sent
+         * first.
+         */
+        final double priority;
+
+        PendingMonitor( TileMonitor tile, ServerMonitor monitor, List<EntityPlayerMP> players )
+        {
+            this.tile = tile;
+            this.monitor = monitor;
+            this.players = players;
+
+            BlockPos pos = tile.getPos();
+            double nearest = Double.MAX_VALUE;
+            for( EntityPlayerMP player : players )
+            {
+                nearest = Math.min( nearest, player.getDistanceSq( pos ) );
+            }
+            priority = nearest / players.size();
+        }
+    }
 }
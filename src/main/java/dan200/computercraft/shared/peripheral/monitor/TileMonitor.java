@@ -18,6 +18,7 @@ import dan200.computercraft.shared.peripheral.common.BlockPeripheral;
 import dan200.computercraft.shared.peripheral.common.ITilePeripheral;
 import net.minecraft.block.state.IBlockState;
 import net.minecraft.entity.player.EntityPlayer;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.EnumFacing;
@@ -50,7 +51,9 @@ public class TileMonitor extends TileGeneric implements ITilePeripheral, IPeriph
 
     // MonitorWatcher state.
     boolean enqueued;
+    boolean changed;
     TerminalState cached;
+    Set<EntityPlayerMP> stale;
 
     private int m_width = 1;
     private int m_height = 1;
@@ -13,7 +13,6 @@ import dan200.computercraft.core.computer.ComputerSide;
 import dan200.computercraft.shared.common.IColouredItem;
 import dan200.computercraft.shared.computer.core.ComputerFamily;
 import dan200.computercraft.shared.computer.core.ServerComputer;
-import dan200.computercraft.shared.network.NetworkHandler;
 import dan200.computercraft.shared.pocket.items.ItemPocketComputer;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityLivingBase;
@@ -29,6 +28,7 @@ import net.minecraftforge.common.util.Constants;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class PocketServerComputer extends ServerComputer implements IPocketAccess
@@ -175,11 +175,15 @@ public class PocketServerComputer extends ServerComputer implements IPocketAcces
         }
 
         // If a new entity has picked it up then rebroadcast the terminal to them
-        if( entity != m_entity && entity instanceof EntityPlayerMP ) markTerminalChanged();
+        boolean pickedUp = entity != m_entity && entity instanceof EntityPlayerMP;
+        if( pickedUp ) markTerminalChanged();
 
         m_entity = entity;
         m_stack = stack;
 
+        // They may not have been sent its state either, if they were not tracking where it was.
+        if( pickedUp ) sendStateIfInterested( (EntityPlayerMP) entity );
+
         if( m_upgrade != upgrade )
         {
             m_upgrade = upgrade;
@@ -188,18 +192,23 @@ public class PocketServerComputer extends ServerComputer implements IPocketAcces
     }
 
     @Override
-    public void broadcastState( boolean force )
+    protected boolean isInterested( EntityPlayerMP player )
     {
-        super.broadcastState( force );
+        // The player holding this computer always needs its state, even if they have not yet started tracking the
+        // chunk they're in.
+        return player == m_entity || super.isInterested( player );
+    }
 
-        if( (hasTerminalChanged() || force) && m_entity instanceof EntityPlayerMP )
+    @Override
+    protected void getTerminalListeners( List<EntityPlayerMP> players )
+    {
+        super.getTerminalListeners( players );
+
+        if( m_entity instanceof EntityPlayerMP )
         {
             // Broadcast the state to the current entity if they're not already interacting with it.
             EntityPlayerMP player = (EntityPlayerMP) m_entity;
-            if( player.connection != null && !isInteracting( player ) )
-            {
-                NetworkHandler.sendToPlayer( player, createTerminalPacket() );
-            }
+            if( player.connection != null && !isInteracting( player ) ) players.add( player );
         }
     }
 }
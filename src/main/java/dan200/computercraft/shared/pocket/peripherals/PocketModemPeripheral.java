@@ -27,6 +27,7 @@ public class PocketModemPeripheral extends WirelessModemPeripheral
     {
         this.position = position;
         this.world = world;
+        updateLocation();
     }
 
     @Nonnull
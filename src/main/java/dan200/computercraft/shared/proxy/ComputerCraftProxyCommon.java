@@ -13,6 +13,7 @@ import dan200.computercraft.core.computer.MainThread;
 import dan200.computercraft.shared.Config;
 import dan200.computercraft.shared.command.CommandComputerCraft;
 import dan200.computercraft.shared.common.DefaultBundledRedstoneProvider;
+import dan200.computercraft.shared.computer.blocks.TileComputerBase;
 import dan200.computercraft.shared.computer.core.IComputer;
 import dan200.computercraft.shared.computer.core.IContainerComputer;
 import dan200.computercraft.shared.computer.core.ServerComputer;
@@ -27,6 +28,7 @@ import dan200.computercraft.shared.util.CreativeTabMain;
 import dan200.computercraft.shared.wired.CapabilityWiredElement;
 import net.minecraft.command.CommandHandler;
 import net.minecraft.creativetab.CreativeTabs;
+import net.minecraft.entity.player.EntityPlayerMP;
 import net.minecraft.inventory.Container;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemRecord;
@@ -34,7 +36,9 @@ import net.minecraft.server.MinecraftServer;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntityCommandBlock;
 import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraftforge.event.entity.player.PlayerContainerEvent;
+import net.minecraftforge.event.world.ChunkWatchEvent;
 import net.minecraftforge.fml.client.event.ConfigChangedEvent;
 import net.minecraftforge.fml.common.FMLCommonHandler;
 import net.minecraftforge.fml.common.Loader;
@@ -157,9 +161,30 @@ public class ComputerCraftProxyCommon
                 IComputer computer = ((IContainerComputer) container).getComputer();
                 if( computer instanceof ServerComputer )
                 {
-                    ((ServerComputer) computer).sendTerminalState( event.getEntityPlayer() );
+                    ServerComputer serverComputer = (ServerComputer) computer;
+                    serverComputer.sendTerminalState( event.getEntityPlayer() );
+                    if( event.getEntityPlayer() instanceof EntityPlayerMP )
+                    {
+                        serverComputer.sendStateIfInterested( (EntityPlayerMP) event.getEntityPlayer() );
+                    }
                 }
             }
         }
+
+        @SubscribeEvent
+        public static void onChunkWatch( ChunkWatchEvent.Watch event )
+        {
+            // Send the state of any computers in this chunk to the player who has just started watching it.
+            Chunk chunk = event.getChunkInstance();
+            if( chunk == null ) return;
+
+            for( TileEntity te : chunk.getTileEntityMap().values() )
+            {
+                if( !(te instanceof TileComputerBase) ) continue;
+
+                ServerComputer computer = ((TileComputerBase) te).getServerComputer();
+                if( computer != null ) computer.sendStateIfInterested( event.getPlayer() );
+            }
+        }
     }
 }
@@ -11,6 +11,7 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.api.peripheral.IWorkMonitor;
 import dan200.computercraft.api.turtle.*;
 import dan200.computercraft.core.computer.ComputerSide;
 import dan200.computercraft.shared.TurtleUpgrades;
@@ -40,12 +41,20 @@ import net.minecraftforge.items.wrapper.InvWrapper;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TurtleBrain implements ITurtleAccess
 {
     private static final int ANIM_DURATION = 8;
 
+    /**
+     * The maximum number of commands which may be queued on a single turtle. This is kept well below the computer's
+     * event queue limit, so the response to every queued command can be delivered.
+     */
+    private static final int MAX_QUEUED_COMMANDS = 64;
+
     private TileTurtle m_owner;
     private ComputerProxy m_proxy;
     private GameProfile m_owningPlayer;
@@ -53,7 +62,17 @@ public class TurtleBrain implements ITurtleAccess
     private final IInventory m_inventory = (InventoryDelegate) () -> m_owner;
     private final IItemHandlerModifiable m_inventoryWrapper = new InvWrapper( m_inventory );
 
-    private Queue<TurtleCommandQueueEntry> m_commandQueue = new ArrayDeque<>();
+    /**
+     * Commands waiting to be run. These are added from the computer thread and removed on the server thread.
+     */
+    private final Queue<TurtleCommandQueueEntry> m_commandQueue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The number of commands in {@link #m_commandQueue}. Slots are reserved before a command is added, so this never
+     * exceeds {@link #MAX_QUEUED_COMMANDS}.
+     */
+    private final AtomicInteger m_commandCount = new AtomicInteger();
+
     private int m_commandsIssued = 0;
 
     private Map<TurtleSide, ITurtleUpgrade> m_upgrades = new EnumMap<>( TurtleSide.class );
@@ -598,10 +617,17 @@ public class TurtleBrain implements ITurtleAccess
         setFuelLevel( getFuelLevel() + addition );
     }
 
-    private int issueCommand( ITurtleCommand command )
+    private int issueCommand( ITurtleCommand command ) throws LuaException
     {
-        m_commandQueue.offer( new TurtleCommandQueueEntry( ++m_commandsIssued, command ) );
-        return m_commandsIssued;
+        if( m_commandCount.incrementAndGet() > MAX_QUEUED_COMMANDS )
+        {
+            m_commandCount.decrementAndGet();
+            throw new LuaException( "Too many turtle commands queued" );
+        }
+
+        int commandID = ++m_commandsIssued;
+        m_commandQueue.offer( new TurtleCommandQueueEntry( commandID, command ) );
+        return commandID;
     }
 
     @Nonnull
@@ -873,25 +899,43 @@ public class TurtleBrain implements ITurtleAccess
 
     private void updateCommands()
     {
-        if( m_animation != TurtleAnimation.None || m_commandQueue.isEmpty() ) return;
+        TurtleCommandQueueEntry nextCommand = m_commandQueue.peek();
+        if( nextCommand == null ) return;
+
+        // Read-only commands don't need to wait for the previous command's animation to finish, as they won't
+        // interfere with it.
+        if( m_animation != TurtleAnimation.None && !nextCommand.command.isReadOnly() ) return;
 
         // If we've got a computer, ensure that we're allowed to perform work.
         ServerComputer computer = m_owner.getServerComputer();
-        if( computer != null && !computer.getComputer().getMainThreadMonitor().canWork() ) return;
+        IWorkMonitor monitor = computer == null ? null : computer.getComputer().getMainThreadMonitor();
+        if( monitor != null && !monitor.canWork() ) return;
 
-        // Pull a new command
-        TurtleCommandQueueEntry nextCommand = m_commandQueue.poll();
-        if( nextCommand == null ) return;
+        while( true )
+        {
+            m_commandQueue.remove();
+            m_commandCount.decrementAndGet();
+            runCommand( computer, nextCommand );
+
+            // Keep running any subsequent read-only commands this tick, provided we've the time to do so.
+            if( !nextCommand.command.isReadOnly() ) return;
+            nextCommand = m_commandQueue.peek();
+            if( nextCommand == null || !nextCommand.command.isReadOnly() ) return;
+            if( monitor != null && !monitor.shouldWork() ) return;
+        }
+    }
 
+    private void runCommand( ServerComputer computer, TurtleCommandQueueEntry command )
+    {
         // Execute the command
         long start = System.nanoTime();
-        TurtleCommandResult result = nextCommand.command.execute( this );
+        TurtleCommandResult result = command.command.execute( this );
         long end = System.nanoTime();
 
         // Dispatch the callback
         if( computer == null ) return;
         computer.getComputer().getMainThreadMonitor().trackWork( end - start, TimeUnit.NANOSECONDS );
-        int callbackID = nextCommand.callbackID;
+        int callbackID = command.callbackID;
         if( callbackID < 0 ) return;
 
         if( result != null && result.isSuccess() )
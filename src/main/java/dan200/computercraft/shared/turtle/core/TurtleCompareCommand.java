@@ -120,4 +120,10 @@ public class TurtleCompareCommand implements ITurtleCommand
             ? TurtleCommandResult.success()
             : TurtleCommandResult.failure();
     }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
 }
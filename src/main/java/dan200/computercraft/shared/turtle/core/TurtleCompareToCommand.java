@@ -37,4 +37,10 @@ public class TurtleCompareToCommand implements ITurtleCommand
             return TurtleCommandResult.failure();
         }
     }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
 }
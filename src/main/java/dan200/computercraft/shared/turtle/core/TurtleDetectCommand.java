@@ -43,4 +43,10 @@ public class TurtleDetectCommand implements ITurtleCommand
 
         return TurtleCommandResult.failure();
     }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
 }
@@ -78,4 +78,10 @@ public class TurtleInspectCommand implements ITurtleCommand
         if( value instanceof String || value instanceof Number || value instanceof Boolean ) return value;
         return property.getName( value );
     }
+
+    @Override
+    public boolean isReadOnly()
+    {
+        return true;
+    }
 }
@@ -170,7 +170,10 @@ public class TurtleModem extends AbstractTurtleUpgrade
             IPeripheral peripheral = turtle.getPeripheral( side );
             if( peripheral instanceof Peripheral )
             {
-                ModemState state = ((Peripheral) peripheral).getModemState();
+                Peripheral modem = (Peripheral) peripheral;
+                modem.updateLocation();
+
+                ModemState state = modem.getModemState();
                 if( state.pollChanged() )
                 {
                     turtle.getUpgradeNBTData( side ).setBoolean( "active", state.isOpen() );
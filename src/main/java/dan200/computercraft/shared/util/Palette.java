@@ -10,7 +10,7 @@ import net.minecraft.network.PacketBuffer;
 
 public class Palette
 {
-    private static final int PALETTE_SIZE = 16;
+    public static final int PALETTE_SIZE = 16;
     private final double[][] colours = new double[PALETTE_SIZE][3];
 
     public static final Palette DEFAULT = new Palette();
@@ -95,6 +95,17 @@ public class Palette
         }
     }
 
+    public void write( PacketBuffer buffer, int i )
+    {
+        for( double channel : colours[i] ) buffer.writeByte( (int) (channel * 0xFF) & 0xFF );
+    }
+
+    public void read( PacketBuffer buffer, int i )
+    {
+        double[] colour = colours[i];
+        for( int j = 0; j < colour.length; j++ ) colour[j] = (buffer.readByte() & 0xFF) / 255.0;
+    }
+
     public NBTTagCompound writeToNBT( NBTTagCompound nbt )
     {
         int[] rgb8 = new int[colours.length];
@@ -6,6 +6,7 @@
 package dan200.computercraft.shared.wired;
 
 import com.google.common.collect.ImmutableMap;
+import dan200.computercraft.api.network.IPacketSender;
 import dan200.computercraft.api.network.Packet;
 import dan200.computercraft.api.network.wired.IWiredNetwork;
 import dan200.computercraft.api.network.wired.IWiredNode;
@@ -15,6 +16,8 @@ import net.minecraft.world.World;
 
 import javax.annotation.Nonnull;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -24,6 +27,20 @@ public final class WiredNetwork implements IWiredNetwork
     HashSet<WiredNode> nodes;
     private HashMap<String, IPeripheral> peripherals = new HashMap<>();
 
+    /**
+     * Cached routes from each node which has transmitted a packet. As packets are transmitted while only holding the
+     * read lock, this may be accessed concurrently.
+     *
+     * @see #getRoutes(WiredNode)
+     */
+    private final Map<WiredNode, Routes> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented whenever {@link #routes} is invalidated. This ensures routes computed before an invalidation are
+     * never used, even if they are added to the cache afterwards.
+     */
+    private final AtomicInteger routesVersion = new AtomicInteger();
+
     WiredNetwork( WiredNode node )
     {
         nodes = new HashSet<>( 1 );
@@ -69,6 +86,7 @@ public final class WiredNetwork implements IWiredNetwork
                     nodes.addAll( otherNodes );
                     for( WiredNode node : otherNodes ) node.network = this;
                     other.nodes = null;
+                    other.invalidateRoutes();
 
                     // Move all peripherals across,
                     other.peripherals = null;
@@ -92,6 +110,7 @@ public final class WiredNetwork implements IWiredNetwork
 
             boolean added = wiredU.neighbours.add( wiredV );
             if( added ) wiredV.neighbours.add( wiredU );
+            invalidateRoutes();
 
             InvariantChecker.checkNetwork( this );
             InvariantChecker.checkNode( wiredU );
@@ -122,6 +141,7 @@ public final class WiredNetwork implements IWiredNetwork
             // If there was no connection to remove then split.
             if( !wiredU.neighbours.remove( wiredV ) ) return false;
             wiredV.neighbours.remove( wiredU );
+            invalidateRoutes();
 
             // Determine if there is still some connection from u to v.
             // Note this is an inlining of reachableNodes which short-circuits
@@ -205,6 +225,7 @@ public final class WiredNetwork implements IWiredNetwork
             // Remove this node and move into a separate network.
             nodes.remove( wired );
             for( WiredNode neighbour : neighbours ) neighbour.neighbours.remove( wired );
+            invalidateRoutes();
 
             WiredNetwork wiredNetwork = new WiredNetwork( wired );
 
@@ -305,6 +326,10 @@ public final class WiredNetwork implements IWiredNetwork
 
             wired.peripherals = ImmutableMap.copyOf( newPeripherals );
 
+            // Peripherals don't affect routing, but a node's receivers are generally updated at the same time, so be
+            // conservative here.
+            invalidateRoutes();
+
             // Detach the old peripherals then remove them.
             peripherals.keySet().removeAll( change.peripheralsRemoved().keySet() );
 
@@ -320,14 +345,79 @@ public final class WiredNetwork implements IWiredNetwork
     }
 
     static void transmitPacket( WiredNode start, Packet packet, double range, boolean interdimensional )
+    {
+        IPacketSender sender = packet.getSender();
+        if( start.element.getWorld() != sender.getWorld() )
+        {
+            // The sender should always be in the same world as its node, so this case isn't worth caching.
+            for( TransmitPoint point : findRoutes( start, Double.POSITIVE_INFINITY, true ).values() )
+            {
+                point.node.tryTransmit( packet, point.distance, point.interdimensional, range, interdimensional );
+            }
+            return;
+        }
+
+        // Every route starts at the same distance from the sender, so we can just offset the cached distances.
+        double offset = start.element.getPosition().distanceTo( sender.getPosition() );
+        Routes routes = start.network.getRoutes( start );
+        for( int i = 0; i < routes.nodes.length; i++ )
+        {
+            routes.nodes[i].tryTransmit( packet, offset + routes.distances[i], routes.interdimensional[i], range, interdimensional );
+        }
+    }
+
+    /**
+     * Get the routes from a node to every other node with receivers, computing them if needed.
+     *
+     * This should be called while holding the read lock.
+     *
+     * @param start The node to start from.
+     * @return The routes from this node.
+     */
+    private Routes getRoutes( WiredNode start )
+    {
+        int version = routesVersion.get();
+        Routes existing = routes.get( start );
+        if( existing != null && existing.version == version ) return existing;
+
+        Map<WiredNode, TransmitPoint> points = findRoutes( start, 0, false );
+
+        List<TransmitPoint> reachable = new ArrayList<>();
+        for( TransmitPoint point : points.values() )
+        {
+            if( point.node.hasReceivers() ) reachable.add( point );
+        }
+
+        Routes computed = new Routes( version, reachable );
+        routes.put( start, computed );
+        return computed;
+    }
+
+    /**
+     * Invalidate all cached routes. This should be called whenever this network's topology, or the set of nodes with
+     * receivers, changes.
+     */
+    void invalidateRoutes()
+    {
+        routesVersion.incrementAndGet();
+        routes.clear();
+    }
+
+    /**
+     * Find the shortest path from a node to every other node in the network.
+     *
+     * @param start                 The node to start from.
+     * @param startDistance         The distance the packet had travelled before reaching the start node.
+     * @param startInterdimensional Whether the packet was interdimensional before reaching the start node.
+     * @return The shortest path to each node.
+     */
+    private static Map<WiredNode, TransmitPoint> findRoutes( WiredNode start, double startDistance, boolean startInterdimensional )
     {
         Map<WiredNode, TransmitPoint> points = new HashMap<>();
         TreeSet<TransmitPoint> transmitTo = new TreeSet<>();
 
         {
-            TransmitPoint startEntry = start.element.getWorld() != packet.getSender().getWorld()
-                ? new TransmitPoint( start, Double.POSITIVE_INFINITY, true )
-                : new TransmitPoint( start, start.element.getPosition().distanceTo( packet.getSender().getPosition() ), false );
+            TransmitPoint startEntry = new TransmitPoint( start, startDistance, startInterdimensional );
             points.put( start, startEntry );
             transmitTo.add( startEntry );
         }
@@ -372,10 +462,7 @@ public final class WiredNetwork implements IWiredNetwork
             }
         }
 
-        for( TransmitPoint point : points.values() )
-        {
-            point.node.tryTransmit( packet, point.distance, point.interdimensional, range, interdimensional );
-        }
+        return points;
     }
 
     private void removeSingleNode( WiredNode wired, WiredNetwork wiredNetwork )
@@ -406,6 +493,34 @@ public final class WiredNetwork implements IWiredNetwork
         }
     }
 
+    /**
+     * The shortest routes from a single node to every node with receivers.
+     */
+    private static final class Routes
+    {
+        final int version;
+        final WiredNode[] nodes;
+        final double[] distances;
+        final boolean[] interdimensional;
+
+        Routes( int version, List<TransmitPoint> points )
+        {
+            this.version = version;
+
+            int size = points.size();
+            nodes = new WiredNode[size];
+            distances = new double[size];
+            interdimensional = new boolean[size];
+            for( int i = 0; i < size; i++ )
+            {
+                TransmitPoint point = points.get( i );
+                nodes[i] = point.node;
+                distances[i] = point.distance;
+                interdimensional[i] = point.interdimensional;
+            }
+        }
+    }
+
     private static class TransmitPoint implements Comparable<TransmitPoint>
     {
         final WiredNode node;
@@ -12,15 +12,26 @@ import dan200.computercraft.api.network.wired.IWiredNetwork;
 import dan200.computercraft.api.network.wired.IWiredNode;
 import dan200.computercraft.api.network.wired.IWiredSender;
 import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.shared.peripheral.modem.ChannelIndex;
+import dan200.computercraft.shared.peripheral.modem.IChannelNetwork;
+import dan200.computercraft.shared.peripheral.modem.ModemPeripheral;
 
 import javax.annotation.Nonnull;
 import java.util.*;
 import java.util.concurrent.locks.Lock;
 
-public final class WiredNode implements IWiredNode
+public final class WiredNode implements IWiredNode, IChannelNetwork
 {
+    /**
+     * Receivers which are not modems, and so are delivered every packet.
+     */
     private Set<IPacketReceiver> receivers;
 
+    /**
+     * The channels each modem on this node has open.
+     */
+    private ChannelIndex channels;
+
     final IWiredElement element;
     Map<String, IPeripheral> peripherals = Collections.emptyMap();
 
@@ -36,36 +47,87 @@ public final class WiredNode implements IWiredNode
     @Override
     public synchronized void addReceiver( @Nonnull IPacketReceiver receiver )
     {
-        if( receivers == null ) receivers = new HashSet<>();
-        receivers.add( receiver );
+        boolean hadReceivers = hasReceivers();
+        if( receiver instanceof ModemPeripheral )
+        {
+            if( channels == null ) channels = new ChannelIndex();
+            channels.add( (ModemPeripheral) receiver );
+        }
+        else
+        {
+            if( receivers == null ) receivers = new HashSet<>();
+            receivers.add( receiver );
+        }
+
+        if( !hadReceivers && hasReceivers() ) network.invalidateRoutes();
     }
 
     @Override
     public synchronized void removeReceiver( @Nonnull IPacketReceiver receiver )
     {
+        boolean hadReceivers = hasReceivers();
         if( receivers != null ) receivers.remove( receiver );
+        if( channels != null ) channels.remove( receiver );
+
+        if( hadReceivers && !hasReceivers() ) network.invalidateRoutes();
+    }
+
+    @Override
+    public synchronized void updateChannels( @Nonnull ModemPeripheral modem )
+    {
+        if( channels == null ) return;
+
+        boolean hadReceivers = hasReceivers();
+        channels.update( modem );
+        if( hadReceivers != hasReceivers() ) network.invalidateRoutes();
+    }
+
+    /**
+     * Determine whether this node has any receivers which may accept a packet, and so whether packets need to be routed
+     * to it. Modems without any open channels are not counted.
+     *
+     * @return Whether this node has any receivers.
+     */
+    synchronized boolean hasReceivers()
+    {
+        return (receivers != null && !receivers.isEmpty()) || (channels != null && !channels.isEmpty());
     }
 
     synchronized void tryTransmit( Packet packet, double packetDistance, boolean packetInterdimensional, double range, boolean interdimensional )
     {
-        if( receivers == null ) return;
+        if( receivers != null )
+        {
+            for( IPacketReceiver receiver : receivers )
+            {
+                tryTransmit( receiver, packet, packetDistance, packetInterdimensional, range, interdimensional );
+            }
+        }
+
+        Set<IPacketReceiver> subscribers = channels == null ? null : channels.get( packet.getChannel() );
+        if( subscribers != null )
+        {
+            for( IPacketReceiver receiver : subscribers )
+            {
+                tryTransmit( receiver, packet, packetDistance, packetInterdimensional, range, interdimensional );
+            }
+        }
+    }
 
-        for( IPacketReceiver receiver : receivers )
+    private void tryTransmit( IPacketReceiver receiver, Packet packet, double packetDistance, boolean packetInterdimensional, double range, boolean interdimensional )
+    {
+        if( !packetInterdimensional )
         {
-            if( !packetInterdimensional )
+            double receiveRange = Math.max( range, receiver.getRange() ); // Ensure range is symmetrical
+            if( interdimensional || receiver.isInterdimensional() || packetDistance < receiveRange )
             {
-                double receiveRange = Math.max( range, receiver.getRange() ); // Ensure range is symmetrical
-                if( interdimensional || receiver.isInterdimensional() || packetDistance < receiveRange )
-                {
-                    receiver.receiveSameDimension( packet, packetDistance + element.getPosition().distanceTo( receiver.getPosition() ) );
-                }
+                receiver.receiveSameDimension( packet, packetDistance + element.getPosition().distanceTo( receiver.getPosition() ) );
             }
-            else
+        }
+        else
+        {
+            if( interdimensional || receiver.isInterdimensional() )
             {
-                if( interdimensional || receiver.isInterdimensional() )
-                {
-                    receiver.receiveDifferentDimension( packet );
-                }
+                receiver.receiveDifferentDimension( packet );
             }
         }
     }
@@ -9,9 +9,11 @@ import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.ILuaObject;
 import dan200.computercraft.api.lua.ILuaTask;
 import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.OwnedByteArray;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.Arrays;
 
 public class ObjectWrapper implements ILuaContext
 {
@@ -43,14 +45,27 @@ public class ObjectWrapper implements ILuaContext
         int method = findMethod( name );
         if( method < 0 ) throw new IllegalStateException( "No such method '" + name + "'" );
 
+        Object[] results;
         try
         {
-            return object.callMethod( this, method, args );
+            results = object.callMethod( this, method, args );
         }
         catch( InterruptedException e )
         {
             throw new IllegalStateException( "Should never be interrupted", e );
         }
+
+        // Unwrap byte arrays, so tests do not need to care whether a method transferred ownership or not.
+        if( results != null )
+        {
+            for( int i = 0; i < results.length; i++ )
+            {
+                if( !(results[i] instanceof OwnedByteArray) ) continue;
+                OwnedByteArray bytes = (OwnedByteArray) results[i];
+                results[i] = Arrays.copyOfRange( bytes.getBytes(), bytes.getOffset(), bytes.getOffset() + bytes.getLength() );
+            }
+        }
+        return results;
     }
 
     @SuppressWarnings( "unchecked" )
@@ -6,10 +6,20 @@
 package dan200.computercraft.core.apis.handles;
 
 import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.OwnedByteArray;
 import dan200.computercraft.core.apis.ObjectWrapper;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -59,6 +69,18 @@ public class BinaryReadableHandleTest
         assertEquals( 1000, wrapper.<byte[]>callOf( "read", 11000 ).length );
     }
 
+    @Test
+    public void testShortReadDoesNotRetainBuffer() throws LuaException, InterruptedException
+    {
+        // Both reads have a larger buffer than the stream, so should only return as many bytes as were read.
+        for( int count : new int[] { 4096, 20000 } )
+        {
+            BinaryReadableHandle handle = new BinaryReadableHandle( Channels.newChannel( new ByteArrayInputStream( pattern( 5 ) ) ) );
+            Object[] result = handle.callMethod( new ObjectWrapper( handle ), 0, new Object[] { count } );
+            assertEquals( 5, ((OwnedByteArray) result[0]).getBytes().length );
+        }
+    }
+
     @Test
     public void testReadLine() throws LuaException
     {
@@ -77,6 +99,148 @@ public class BinaryReadableHandleTest
         assertNull( wrapper.call( "readLine", true ) );
     }
 
+    @Test
+    public void testBufferedSeek() throws LuaException, IOException
+    {
+        Path file = createFile( 20000 );
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( channel ) );
+            checkSeek( wrapper );
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+
+    @Test
+    public void testMappedSeek() throws LuaException
+    {
+        ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( new ByteBufferChannel( ByteBuffer.wrap( pattern( 20000 ) ) ) ) );
+        checkSeek( wrapper );
+    }
+
+    @Test
+    public void testBufferedReadLong() throws LuaException, IOException
+    {
+        Path file = createFile( 20000 );
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            ObjectWrapper wrapper = new ObjectWrapper( new BinaryReadableHandle( channel ) );
+            assertEquals( 0, (int) wrapper.callOf( Integer.class, "read" ) );
+            assertArrayEquals( Arrays.copyOfRange( pattern( 20000 ), 1, 101 ), wrapper.callOf( "read", 100 ) );
+            assertArrayEquals( Arrays.copyOfRange( pattern( 20000 ), 101, 9101 ), wrapper.callOf( "read", 9000 ) );
+            assertArrayEquals( Arrays.copyOfRange( pattern( 20000 ), 9101, 20000 ), wrapper.callOf( "readAll" ) );
+            assertNull( wrapper.call( "readAll" ) );
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+
+    private static void checkSeek( ObjectWrapper wrapper ) throws LuaException
+    {
+        for( int i = 0; i < 10; i++ ) assertEquals( i, (int) wrapper.callOf( Integer.class, "read" ) );
+
+        // Seeking within the read-ahead buffer.
+        assertEquals( 5L, wrapper.callOf( "seek", "cur", -5 ) );
+        assertEquals( 5, (int) wrapper.callOf( Integer.class, "read" ) );
+
+        // Seeking outside of it.
+        assertEquals( 15000L, wrapper.callOf( "seek", "set", 15000 ) );
+        assertEquals( 15000 & 0xFF, (int) wrapper.callOf( Integer.class, "read" ) );
+        assertEquals( 1L, wrapper.callOf( "seek", "set", 1 ) );
+        assertEquals( 1, (int) wrapper.callOf( Integer.class, "read" ) );
+
+        assertEquals( 20000L, wrapper.callOf( "seek", "end" ) );
+        assertNull( wrapper.call( "read" ) );
+        assertEquals( 25000L, wrapper.callOf( "seek", "set", 25000 ) );
+        assertNull( wrapper.call( "read" ) );
+        assertArrayEquals( new Object[] { false, "Position is negative" }, wrapper.call( "seek", "set", -1 ) );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkReads() throws LuaException, IOException
+    {
+        int size = 4 * 1024 * 1024;
+        byte[] contents = new byte[size];
+        for( int i = 0; i < size; i++ ) contents[i] = (byte) (i % 80 == 79 ? '\n' : 'A' + i % 26);
+
+        Path file = Files.createTempFile( "cc-binary-handle", ".bin" );
+        try
+        {
+            Files.write( file, contents );
+
+            for( int run = 0; run < 2; run++ )
+            {
+                runBenchmark( "read()", file, size, w -> readUntilEnd( w, "read" ) );
+                runBenchmark( "readLine()", file, size, w -> readUntilEnd( w, "readLine" ) );
+                runBenchmark( "read(8192)", file, size, w -> readUntilEnd( w, "read", 8192 ) );
+                runBenchmark( "readAll()", file, size, w -> readUntilEnd( w, "readAll" ) );
+            }
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+
+    private interface Reader
+    {
+        void read( ObjectWrapper wrapper ) throws LuaException;
+    }
+
+    private static void runBenchmark( String name, Path file, int size, Reader reader ) throws LuaException, IOException
+    {
+        long buffered, mapped;
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            buffered = time( new BinaryReadableHandle( channel ), reader );
+        }
+
+        try( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ ) )
+        {
+            mapped = time( new BinaryReadableHandle( new ByteBufferChannel( channel.map( FileChannel.MapMode.READ_ONLY, 0, size ) ) ), reader );
+        }
+
+        System.out.printf(
+            "%-12s buffered: %7.2f ns/byte, mapped: %7.2f ns/byte\n",
+            name, (double) buffered / size, (double) mapped / size
+        );
+    }
+
+    private static void readUntilEnd( ObjectWrapper wrapper, String method, Object... args ) throws LuaException
+    {
+        while( true )
+        {
+            if( wrapper.call( method, args ) == null ) return;
+        }
+    }
+
+    private static long time( BinaryReadableHandle handle, Reader reader ) throws LuaException
+    {
+        long start = System.nanoTime();
+        reader.read( new ObjectWrapper( handle ) );
+        return System.nanoTime() - start;
+    }
+
+    private static byte[] pattern( int length )
+    {
+        byte[] bytes = new byte[length];
+        for( int i = 0; i < length; i++ ) bytes[i] = (byte) i;
+        return bytes;
+    }
+
+    private static Path createFile( int length ) throws IOException
+    {
+        Path file = Files.createTempFile( "cc-binary-handle", ".bin" );
+        Files.write( file, pattern( length ) );
+        return file;
+    }
+
     private static ObjectWrapper fromLength( int length )
     {
         byte[] input = new byte[length];
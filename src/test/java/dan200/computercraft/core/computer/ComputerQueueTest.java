@@ -0,0 +1,284 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.computer;
+
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.core.terminal.Terminal;
+import org.apache.logging.log4j.LogManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ComputerQueueTest
+{
+    private static final int QUEUED_EXECUTORS = 10_000;
+    private static final int BENCHMARK_OPERATIONS = 2_000_000;
+
+    @BeforeAll
+    public static void setup()
+    {
+        ComputerCraft.log = LogManager.getLogger();
+    }
+
+    @Test
+    public void testGlobalOrdering() throws InterruptedException
+    {
+        testOrdering( false );
+    }
+
+    @Test
+    public void testStealingOrdering() throws InterruptedException
+    {
+        testOrdering( true );
+    }
+
+    @Test
+    public void testGlobalTakesAll() throws InterruptedException
+    {
+        testTakesAll( false );
+    }
+
+    @Test
+    public void testStealingTakesAll() throws InterruptedException
+    {
+        testTakesAll( true );
+    }
+
+    @Test
+    public void testGlobalResize() throws InterruptedException
+    {
+        testResize( false );
+    }
+
+    @Test
+    public void testStealingResize() throws InterruptedException
+    {
+        testResize( true );
+    }
+
+    /**
+     * With a single runner, executors should be handed out in order of virtual runtime.
+     *
+     * @param stealing Whether to use the work stealing queue.
+     * @throws InterruptedException If interrupted while taking from the queue.
+     */
+    private static void testOrdering( boolean stealing ) throws InterruptedException
+    {
+        ComputerQueue queue = ComputerQueue.create( 1, x -> false, stealing );
+        ComputerExecutor[] executors = createExecutors( 100 );
+        for( ComputerExecutor executor : executors ) queue.enqueue( executor );
+
+        assertEquals( executors.length, queue.size() );
+
+        long lastRuntime = Long.MIN_VALUE;
+        for( int i = 0; i < executors.length; i++ )
+        {
+            ComputerExecutor executor = queue.take( 0 );
+            assertTrue( executor.virtualRuntime >= lastRuntime, "Executors must be taken in order" );
+            lastRuntime = executor.virtualRuntime;
+            queue.afterWork( 0, executor );
+        }
+
+        assertEquals( 0, queue.size() );
+    }
+
+    /**
+     * With many runners, every executor should be taken exactly once.
+     *
+     * @param stealing Whether to use the work stealing queue.
+     * @throws InterruptedException If interrupted while waiting for the runners.
+     */
+    private static void testTakesAll( boolean stealing ) throws InterruptedException
+    {
+        int runners = 4;
+        ComputerQueue queue = ComputerQueue.create( runners, x -> false, stealing );
+        ComputerExecutor[] executors = createExecutors( 1000 );
+
+        Set<ComputerExecutor> taken = Collections.synchronizedSet( Collections.newSetFromMap( new IdentityHashMap<>() ) );
+        AtomicInteger remaining = new AtomicInteger( executors.length );
+        CountDownLatch done = new CountDownLatch( 1 );
+
+        Thread[] threads = new Thread[runners];
+        for( int i = 0; i < runners; i++ )
+        {
+            int runner = i;
+            threads[i] = new Thread( () -> {
+                try
+                {
+                    while( true )
+                    {
+                        ComputerExecutor executor = queue.take( runner );
+                        assertTrue( taken.add( executor ), "Executor was taken twice" );
+                        queue.afterWork( runner, executor );
+                        if( remaining.decrementAndGet() == 0 ) done.countDown();
+                    }
+                }
+                catch( InterruptedException ignored )
+                {
+                }
+            } );
+            threads[i].setDaemon( true );
+            threads[i].start();
+        }
+
+        for( ComputerExecutor executor : executors ) queue.enqueue( executor );
+
+        assertTrue( done.await( 10, TimeUnit.SECONDS ), "All executors should be taken" );
+        for( Thread thread : threads ) thread.interrupt();
+
+        assertEquals( executors.length, taken.size() );
+        assertEquals( 0, queue.size() );
+    }
+
+    /**
+     * Growing and shrinking the queue while runners are taking from it should neither lose nor duplicate executors.
+     *
+     * @param stealing Whether to use the work stealing queue.
+     * @throws InterruptedException If interrupted while waiting for the runners.
+     */
+    private static void testResize( boolean stealing ) throws InterruptedException
+    {
+        int[] sizes = new int[] { 4, 2, 8, 1, 6, 3 };
+        ComputerQueue queue = ComputerQueue.create( 1, x -> false, stealing );
+        ComputerExecutor[] executors = createExecutors( 3000 );
+
+        Set<ComputerExecutor> taken = Collections.synchronizedSet( Collections.newSetFromMap( new IdentityHashMap<>() ) );
+        AtomicInteger remaining = new AtomicInteger( executors.length );
+        CountDownLatch done = new CountDownLatch( 1 );
+
+        // As with ComputerThread, removed runners finish their current executor and then exit. They may still be
+        // running when a new runner with the same index is started.
+        Set<Thread> threads = Collections.synchronizedSet( new HashSet<>() );
+        AtomicBoolean[] running = new AtomicBoolean[8];
+        IntConsumer start = runner -> {
+            AtomicBoolean flag = running[runner] = new AtomicBoolean( true );
+            Thread thread = new Thread( () -> {
+                try
+                {
+                    while( flag.get() )
+                    {
+                        ComputerExecutor executor = queue.take( runner );
+                        if( executor == null ) continue;
+
+                        assertTrue( taken.add( executor ), "Executor was taken twice" );
+                        queue.afterWork( runner, executor );
+                        if( remaining.decrementAndGet() == 0 ) done.countDown();
+                    }
+                }
+                catch( InterruptedException ignored )
+                {
+                }
+            } );
+            thread.setDaemon( true );
+            thread.start();
+            threads.add( thread );
+        };
+
+        start.accept( 0 );
+        int size = 1, batch = executors.length / sizes.length;
+        for( int step = 0; step < sizes.length; step++ )
+        {
+            // Enqueue some executors, and then resize while they're being taken.
+            for( int i = step * batch; i < (step + 1) * batch; i++ ) queue.enqueue( executors[i] );
+
+            int newSize = sizes[step];
+            for( int i = newSize; i < size; i++ ) running[i].set( false );
+            queue.resize( newSize );
+            for( int i = size; i < newSize; i++ ) start.accept( i );
+            size = newSize;
+        }
+
+        assertTrue( done.await( 10, TimeUnit.SECONDS ), "All executors should be taken" );
+        for( Thread thread : threads ) thread.interrupt();
+
+        assertEquals( executors.length, taken.size() );
+        assertEquals( 0, queue.size() );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmark() throws InterruptedException
+    {
+        for( int threads : new int[] { 1, 4, 16 } )
+        {
+            for( boolean stealing : new boolean[] { false, true } )
+            {
+                // Run once to warm up, and then again for the actual timing.
+                runBenchmark( threads, stealing );
+                long time = runBenchmark( threads, stealing );
+
+                System.out.printf(
+                    "%-8s scheduler, %2d threads: %d operations in %.3f seconds (%.0f ns/op)\n",
+                    stealing ? "Stealing" : "Global", threads, BENCHMARK_OPERATIONS,
+                    time * 1e-9, (double) time / BENCHMARK_OPERATIONS
+                );
+            }
+        }
+    }
+
+    private static long runBenchmark( int runners, boolean stealing ) throws InterruptedException
+    {
+        ComputerQueue queue = ComputerQueue.create( runners, x -> true, stealing );
+        for( ComputerExecutor executor : createExecutors( QUEUED_EXECUTORS ) ) queue.enqueue( executor );
+
+        AtomicInteger remaining = new AtomicInteger( BENCHMARK_OPERATIONS );
+        CountDownLatch start = new CountDownLatch( 1 );
+        CountDownLatch done = new CountDownLatch( runners );
+
+        for( int i = 0; i < runners; i++ )
+        {
+            int runner = i;
+            Thread thread = new Thread( () -> {
+                try
+                {
+                    start.await();
+                    while( remaining.getAndDecrement() > 0 )
+                    {
+                        ComputerExecutor executor = queue.take( runner );
+                        queue.afterWork( runner, executor );
+                    }
+                }
+                catch( InterruptedException ignored )
+                {
+                }
+                finally
+                {
+                    done.countDown();
+                }
+            } );
+            thread.setDaemon( true );
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        return System.nanoTime() - begin;
+    }
+
+    private static ComputerExecutor[] createExecutors( int count )
+    {
+        ComputerExecutor[] executors = new ComputerExecutor[count];
+        for( int i = 0; i < count; i++ )
+        {
+            Computer computer = new Computer( new BasicEnvironment(), new Terminal( 1, 1 ), i );
+            executors[i] = new ComputerExecutor( computer );
+        }
+        return executors;
+    }
+}
@@ -5,11 +5,24 @@
  */
 package dan200.computercraft.core.computer;
 
+import dan200.computercraft.ComputerCraft;
+import dan200.computercraft.api.lua.ILuaAPI;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaTask;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.core.filesystem.MemoryMount;
+import dan200.computercraft.core.terminal.Terminal;
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import javax.annotation.Nonnull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static java.time.Duration.ofSeconds;
-import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class ComputerTest
 {
@@ -30,4 +43,219 @@ public class ComputerTest
             Assertions.fail( "Expected computer to timeout" );
         } );
     }
+
+    @Test
+    public void testTimeoutAfterShrinking()
+    {
+        // Grow the thread pool before the computer starts, and shrink it once it is running. The computer is most
+        // likely on a runner which has been removed, but its task must still be timed out.
+        MemoryMount mount = new MemoryMount()
+            .addFile( "test.lua", "print('Hello') while true do end" )
+            .addFile( "startup", "assertion.assert(pcall(loadfile('test.lua', nil, _ENV))) os.shutdown()" );
+
+        assertTimeoutPreemptively( ofSeconds( 20 ), () -> {
+            try
+            {
+                ComputerBootstrap.run( mount, computer -> {
+                    ComputerThread.resize( 8 );
+
+                    Thread shrink = new Thread( () -> {
+                        try
+                        {
+                            Thread.sleep( 1000 );
+                            ComputerThread.resize( 1 );
+                        }
+                        catch( InterruptedException ignored )
+                        {
+                        }
+                    } );
+                    shrink.setDaemon( true );
+                    shrink.start();
+                } );
+            }
+            catch( AssertionError e )
+            {
+                if( e.getMessage().equals( "test.lua:1: Too long without yielding" ) ) return;
+                throw e;
+            }
+
+            Assertions.fail( "Expected computer to timeout" );
+        } );
+    }
+
+    @Test
+    public void testTimersFireInOrder()
+    {
+        assertTimeoutPreemptively( ofSeconds( 20 ), () -> ComputerBootstrap.run(
+            "local immediate = os.startTimer(0)\n" +
+                "local slow, cancelled, fast = os.startTimer(0.3), os.startTimer(0.2), os.startTimer(0.1)\n" +
+                "os.cancelTimer(cancelled)\n" +
+                "local fired = {}\n" +
+                "while #fired < 3 do local _, id = os.pullEvent('timer') fired[#fired + 1] = id end\n" +
+                "assertion.assert(fired[1] == immediate and fired[2] == fast and fired[3] == slow)\n"
+        ) );
+    }
+
+    @Test
+    public void testMainThreadTaskWithFullQueue()
+    {
+        // Fill the event queue before waiting on a task. The task's completion must still get through, and the
+        // queued events should be kept until afterwards, rather than discarded while waiting.
+        MemoryMount mount = new MemoryMount()
+            .addFile( "test.lua",
+                "for i = 1, 300 do os.queueEvent('filler') end\n" +
+                    "local ok, value = tasks.run(true)\n" +
+                    "assertion.assert(ok == 'done' and value == 42)\n" +
+                    "local ok, err = pcall(tasks.run, false)\n" +
+                    "assertion.assert(not ok and err:find('Task failed', 1, true))\n" +
+                    "assertion.assert(os.pullEvent() == 'filler')\n"
+            )
+            .addFile( "startup", "assertion.assert(pcall(loadfile('test.lua', nil, _ENV))) os.shutdown()" );
+
+        assertTimeoutPreemptively( ofSeconds( 20 ), () -> ComputerBootstrap.run( mount, computer -> computer.addApi( new TaskApi() ) ) );
+    }
+
+    @Test
+    public void testMainThreadTasksRunTogether()
+    {
+        MemoryMount mount = new MemoryMount()
+            .addFile( "test.lua",
+                "local ticks = { tasks.ticks(20) }\n" +
+                    "assertion.assert(#ticks == 20)\n" +
+                    "for i = 2, #ticks do assertion.assert(ticks[i] == ticks[1]) end\n"
+            )
+            .addFile( "startup", "assertion.assert(pcall(loadfile('test.lua', nil, _ENV))) os.shutdown()" );
+
+        assertTimeoutPreemptively( ofSeconds( 20 ), () -> ComputerBootstrap.run( mount, computer -> computer.addApi( new TaskApi() ) ) );
+    }
+
+    @Test
+    public void testRefusedCoroutinesDoNotLeak()
+    {
+        // Use up every coroutine slot, and then start a coroutine whose body is a Java function. That coroutine never
+        // runs a Lua instruction, but its refusal must not be picked up by the next instruction of another coroutine.
+        MemoryMount mount = new MemoryMount()
+            .addFile( "test.lua",
+                "local held = {}\n" +
+                    "while true do\n" +
+                    "  local co = coroutine.create(function() coroutine.yield() end)\n" +
+                    "  if not coroutine.resume(co) then break end\n" +
+                    "  held[#held + 1] = co\n" +
+                    "end\n" +
+                    "coroutine.wrap(coroutine.yield)()\n" +
+                    "local value = 1\n" +
+                    "local ok, err = coroutine.resume(coroutine.create(function() return value end))\n" +
+                    "assertion.assert(not ok and err:find('Too many coroutines', 1, true))\n"
+            )
+            .addFile( "startup", "assertion.assert(pcall(loadfile('test.lua', nil, _ENV))) os.shutdown()" );
+
+        int limit = ComputerCraft.maxCoroutinesPerComputer;
+        ComputerCraft.maxCoroutinesPerComputer = 8;
+        try
+        {
+            assertTimeoutPreemptively( ofSeconds( 20 ), () -> ComputerBootstrap.run( mount, computer -> { } ) );
+        }
+        finally
+        {
+            ComputerCraft.maxCoroutinesPerComputer = limit;
+        }
+    }
+
+    @Test
+    public void testIdleComputersAreDormant()
+    {
+        Computer computer = createComputer();
+        assertTrue( computer.isDormant(), "New computer should be dormant" );
+
+        computer.getEnvironment().setRedstoneInput( ComputerSide.TOP, 15 );
+        assertFalse( computer.isDormant(), "Computer should wake after a redstone change" );
+
+        computer.tick();
+        assertTrue( computer.isDormant(), "Computer should be dormant once the change was processed" );
+
+        computer.turnOn();
+        assertFalse( computer.isDormant(), "Computer should wake when turned on" );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkIdleComputers()
+    {
+        List<Computer> computers = new ArrayList<>();
+        for( int i = 0; i < 10_000; i++ ) computers.add( createComputer() );
+
+        for( int round = 0; round < 5; round++ )
+        {
+            long start = System.nanoTime();
+            for( int tick = 0; tick < 100; tick++ )
+            {
+                for( Computer computer : computers ) computer.tick();
+            }
+            long ticked = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for( int tick = 0; tick < 100; tick++ )
+            {
+                for( Computer computer : computers ) if( !computer.isDormant() ) computer.tick();
+            }
+            long skipped = System.nanoTime() - start;
+
+            System.out.printf(
+                "%d idle computers: %.3fms/tick when always ticked, %.3fms/tick when skipping dormant computers\n",
+                computers.size(), ticked / 100 / 1e6, skipped / 100 / 1e6
+            );
+        }
+    }
+
+    private static final class TaskApi implements ILuaAPI
+    {
+        @Override
+        public String[] getNames()
+        {
+            return new String[] { "tasks" };
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return new String[] { "run", "ticks" };
+        }
+
+        @Override
+        public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments ) throws LuaException, InterruptedException
+        {
+            switch( method )
+            {
+                case 0:
+                {
+                    // run
+                    boolean succeed = arguments.length > 0 && arguments[0] == Boolean.TRUE;
+                    return context.executeMainThreadTask( () -> {
+                        if( !succeed ) throw new LuaException( "Task failed" );
+                        return new Object[] { "done", 42 };
+                    } );
+                }
+                case 1:
+                {
+                    // ticks: Run several tasks at once, returning the tick each one ran on.
+                    ILuaTask[] tasks = new ILuaTask[((Number) arguments[0]).intValue()];
+                    Arrays.fill( tasks, (ILuaTask) () -> new Object[] { MainThread.currentTick() } );
+
+                    Object[][] results = context.executeMainThreadTasks( tasks );
+                    Object[] ticks = new Object[results.length];
+                    for( int i = 0; i < results.length; i++ ) ticks[i] = results[i][0];
+                    return ticks;
+                }
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static Computer createComputer()
+    {
+        Terminal term = new Terminal( ComputerCraft.terminalWidth_computer, ComputerCraft.terminalHeight_computer );
+        return new Computer( new BasicEnvironment(), term, 0 );
+    }
 }
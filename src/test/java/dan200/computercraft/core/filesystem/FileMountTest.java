@@ -0,0 +1,159 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.filesystem;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileMountTest
+{
+    private static final File ROOT = new File( "test-files/file-mount" );
+    private static final File USAGE = new File( "test-files/file-mount.size" );
+    private static final long CAPACITY = 1_000_000;
+
+    @BeforeEach
+    public void before() throws IOException
+    {
+        FileUtils.deleteDirectory( ROOT );
+        FileUtils.deleteQuietly( USAGE );
+    }
+
+    @Test
+    public void testSavesUsedSpace() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        write( mount, "a.txt", 1000 );
+        long remaining = mount.getRemainingSpace();
+
+        assertFalse( USAGE.exists(), "Usage should not be saved until flushed" );
+        mount.flushUsedSpace();
+        assertTrue( USAGE.exists(), "Usage should be saved after flushing" );
+
+        assertEquals( remaining, new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+    }
+
+    @Test
+    public void testUsesSavedSpace() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        write( mount, "a.txt", 1000 );
+        mount.flushUsedSpace();
+
+        // Pretend the mount is larger than it is, and ensure we use the saved value rather than measuring it again.
+        Files.write( USAGE.toPath(), "20000".getBytes( StandardCharsets.UTF_8 ) );
+        assertEquals( CAPACITY + 500 - 20000, new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+    }
+
+    @Test
+    public void testModifyingDeletesSavedSpace() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        write( mount, "a.txt", 1000 );
+        mount.flushUsedSpace();
+        assertTrue( USAGE.exists() );
+
+        mount.delete( "a.txt" );
+        assertFalse( USAGE.exists(), "Modifying the mount should remove the saved usage" );
+
+        mount.flushUsedSpace();
+        assertEquals( mount.getRemainingSpace(), new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+    }
+
+    @Test
+    public void testIgnoresStaleSavedSpace() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        write( mount, "a.txt", 1000 );
+        mount.flushUsedSpace();
+        long remaining = mount.getRemainingSpace();
+
+        Files.write( USAGE.toPath(), "20000".getBytes( StandardCharsets.UTF_8 ) );
+        assertTrue( USAGE.setLastModified( ROOT.lastModified() - 10_000 ) );
+
+        assertEquals( remaining, new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+    }
+
+    @Test
+    public void testCorrectsSavedSpace() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        mount.makeDirectory( "dir" );
+        write( mount, "dir/a.txt", 1000 );
+        mount.flushUsedSpace();
+        long remaining = mount.getRemainingSpace();
+
+        // Grow a file within a subdirectory, which does not change the root's modification time.
+        long rootModified = ROOT.lastModified();
+        Files.write( new File( ROOT, "dir/a.txt" ).toPath(), new byte[3000] );
+        assertTrue( ROOT.setLastModified( rootModified ) );
+
+        FileMount reloaded = new FileMount( ROOT, CAPACITY );
+        assertEquals( remaining, reloaded.getRemainingSpace(), "Saved usage should be used when loading" );
+
+        reloaded.remeasureUsedSpace();
+        assertEquals( remaining - 2000, reloaded.getRemainingSpace(), "Saved usage should be corrected once measured" );
+        assertFalse( USAGE.exists(), "Correcting the usage should remove the saved usage" );
+
+        reloaded.flushUsedSpace();
+        assertEquals( remaining - 2000, new FileMount( ROOT, CAPACITY ).getRemainingSpace() );
+    }
+
+    @Test
+    public void testBuffersWrites() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, CAPACITY );
+        File file = new File( ROOT, "a.txt" );
+        try( SeekableByteChannel channel = (SeekableByteChannel) mount.openChannelForWrite( "a.txt" ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[100] ) );
+            assertEquals( 0, file.length(), "Small writes should be buffered" );
+            assertEquals( 100, channel.position() );
+            assertEquals( 100, channel.size() );
+
+            ((Flushable) channel).flush();
+            assertEquals( 100, file.length(), "Flushing should write the buffer" );
+
+            channel.write( ByteBuffer.wrap( new byte[50] ) );
+            channel.position( 10 );
+            assertEquals( 150, file.length(), "Seeking should write the buffer" );
+        }
+    }
+
+    @Test
+    public void testBufferedWritesCountSpace() throws IOException
+    {
+        FileMount mount = new FileMount( ROOT, 1000 );
+        try( WritableByteChannel channel = mount.openChannelForWrite( "a.txt" ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[900] ) );
+            assertEquals( 100, mount.getRemainingSpace(), "Space should be used before the buffer is written" );
+
+            assertThrows( IOException.class, () -> channel.write( ByteBuffer.wrap( new byte[1000] ) ) );
+        }
+
+        assertEquals( 900, new File( ROOT, "a.txt" ).length() );
+    }
+
+    private static void write( FileMount mount, String path, int length ) throws IOException
+    {
+        try( WritableByteChannel channel = mount.openChannelForWrite( path ) )
+        {
+            channel.write( ByteBuffer.wrap( new byte[length] ) );
+        }
+    }
+}
@@ -10,6 +10,8 @@ import dan200.computercraft.api.filesystem.IWritableMount;
 import dan200.computercraft.api.lua.LuaException;
 import dan200.computercraft.core.apis.ObjectWrapper;
 import dan200.computercraft.core.apis.handles.EncodedWritableHandle;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.io.BufferedWriter;
@@ -17,7 +19,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 
 public class FileSystemTest
 {
@@ -54,4 +56,125 @@ public class FileSystemTest
 
         assertEquals( "Tiny line", Files.toString( new File( ROOT, "out.txt" ), StandardCharsets.UTF_8 ) );
     }
+
+    /**
+     * Ensures changes to a mount are visible to other file systems using it.
+     *
+     * @throws FileSystemException When the file system cannot be constructed.
+     * @throws LuaException When Lua functions fail.
+     */
+    @Test
+    public void testChangesVisibleToOtherFileSystems() throws FileSystemException, LuaException
+    {
+        IWritableMount writableMount = new FileMount( new File( ROOT, "shared" ), 1000000 );
+        FileSystem first = new FileSystem( "hdd", writableMount );
+        FileSystem second = new FileSystem( "hdd", writableMount );
+
+        first.delete( "cached.txt" );
+        assertFalse( first.exists( "cached.txt" ) );
+        assertFalse( second.exists( "cached.txt" ) );
+        assertArrayEquals( new String[0], second.list( "" ) );
+
+        {
+            FileSystemWrapper<BufferedWriter> writer = first.openForWrite( "cached.txt", false, EncodedWritableHandle::openUtf8 );
+            ObjectWrapper wrapper = new ObjectWrapper( new EncodedWritableHandle( writer.get(), writer ) );
+            wrapper.call( "write", "Hello" );
+            wrapper.call( "close" );
+        }
+
+        assertTrue( first.exists( "cached.txt" ) );
+        assertTrue( second.exists( "cached.txt" ) );
+        assertArrayEquals( new String[] { "cached.txt" }, second.list( "" ) );
+        assertEquals( 5, second.getSize( "cached.txt" ) );
+
+        second.delete( "cached.txt" );
+        assertFalse( first.exists( "cached.txt" ) );
+    }
+
+    /**
+     * Ensures files changed outside the game are visible, rather than hidden by stale metadata.
+     *
+     * @throws FileSystemException When the file system cannot be constructed.
+     * @throws IOException When writing the file directly.
+     */
+    @Test
+    public void testExternalChangesVisible() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "external" );
+        FileUtils.deleteDirectory( root );
+        root.mkdirs();
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1000000 ) );
+        assertFalse( fs.exists( "external.txt" ) );
+        assertArrayEquals( new String[0], fs.list( "" ) );
+
+        Files.write( "Hello", new File( root, "external.txt" ), StandardCharsets.UTF_8 );
+        assertTrue( fs.exists( "external.txt" ) );
+        assertArrayEquals( new String[] { "external.txt" }, fs.list( "" ) );
+        assertEquals( 5, fs.getSize( "external.txt" ) );
+
+        new File( root, "external.txt" ).delete();
+        assertFalse( fs.exists( "external.txt" ) );
+    }
+
+    @Test
+    public void testFind() throws FileSystemException, IOException
+    {
+        File root = new File( ROOT, "find" );
+        FileUtils.deleteDirectory( root );
+        for( String path : new String[] { "a/x.lua", "a/y.txt", "a/sub/z.lua", "b/x.lua", "b.lua", "c/d/x.lua" } )
+        {
+            File file = new File( root, path );
+            file.getParentFile().mkdirs();
+            Files.touch( file );
+        }
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 1000000 ) );
+        assertArrayEquals( new String[] { "a/x.lua", "b/x.lua" }, fs.find( "*/x.lua" ) );
+        assertArrayEquals( new String[] { "a/sub", "a/x.lua", "a/y.txt" }, fs.find( "a/*" ) );
+        assertArrayEquals( new String[] { "a/x.lua", "b/x.lua" }, fs.find( "*/*.lua" ) );
+        assertArrayEquals( new String[] { "a/sub/z.lua", "c/d/x.lua" }, fs.find( "*/*/*.lua" ) );
+        assertArrayEquals( new String[] { "a", "b", "b.lua", "c" }, fs.find( "*" ) );
+        assertArrayEquals( new String[] { "b.lua" }, fs.find( "b.lua" ) );
+        assertArrayEquals( new String[0], fs.find( "missing/*" ) );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmark() throws FileSystemException, IOException
+    {
+        // Build a tree of 100 directories, each containing 100 files.
+        File root = new File( ROOT, "benchmark" );
+        if( !root.exists() )
+        {
+            for( int dir = 0; dir < 100; dir++ )
+            {
+                File directory = new File( root, "dir" + dir );
+                directory.mkdirs();
+                for( int file = 0; file < 100; file++ ) Files.touch( new File( directory, "file" + file + (file % 10 == 0 ? ".lua" : ".txt") ) );
+            }
+        }
+
+        FileSystem fs = new FileSystem( "hdd", new FileMount( root, 100_000_000 ) );
+        String[] paths = new String[] { "rom/programs/shell.lua", "/a/b/../c/./d", "dir50\\file50.txt", "startup" };
+
+        int iterations = 5_000_000;
+        for( int run = 0; run < 2; run++ )
+        {
+            long start = System.nanoTime();
+            for( int i = 0; i < iterations; i++ ) FileSystem.getName( paths[i % paths.length] );
+            long time = System.nanoTime() - start;
+            System.out.printf( "sanitizePath: %.1f ns/op\n", (double) time / iterations );
+        }
+
+        for( String glob : new String[] { "dir5*/file1.lua", "*/file*.lua", "dir42/*" } )
+        {
+            int finds = 200;
+            int matches = 0;
+            long start = System.nanoTime();
+            for( int i = 0; i < finds; i++ ) matches = fs.find( glob ).length;
+            long time = System.nanoTime() - start;
+            System.out.printf( "find(%s): %d matches, %.3f ms/op\n", glob, matches, time * 1e-6 / finds );
+        }
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.core.apis.TableHelper;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+import org.squiddev.cobalt.LuaTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.squiddev.cobalt.ValueFactory.valueOf;
+
+public class LuaTableViewTest
+{
+    @Test
+    public void testLookup() throws Exception
+    {
+        LuaTable table = new LuaTable();
+        table.rawset( "name", valueOf( "hello" ) );
+        table.rawset( 1, valueOf( 2.5 ) );
+        table.rawset( "flag", valueOf( false ) );
+
+        Map<?, ?> view = (Map<?, ?>) LuaTableView.toObject( table );
+        assertEquals( "hello", TableHelper.getStringField( view, "name" ) );
+        assertEquals( 2.5, view.get( 1 ) );
+        assertEquals( 2.5, view.get( 1.0 ) );
+        assertEquals( false, view.get( "flag" ) );
+        assertTrue( view.containsKey( "flag" ) );
+        assertFalse( view.containsKey( "missing" ) );
+        assertEquals( 3, view.size() );
+    }
+
+    @Test
+    public void testLive() throws Exception
+    {
+        LuaTable table = new LuaTable();
+        Map<?, ?> view = (Map<?, ?>) LuaTableView.toObject( table );
+        assertTrue( view.isEmpty() );
+
+        table.rawset( "x", valueOf( 1 ) );
+        assertEquals( 1.0, view.get( "x" ) );
+    }
+
+    @Test
+    public void testMaterialise() throws Exception
+    {
+        LuaTable inner = new LuaTable();
+        inner.rawset( 1, valueOf( "a" ) );
+
+        LuaTable table = new LuaTable();
+        table.rawset( "inner", inner );
+        table.rawset( "self", table );
+        table.rawset( 2, valueOf( true ) );
+
+        Object[] args = new Object[] { "x", LuaTableView.toObject( table ) };
+        Object[] copied = LuaTableView.materialise( args );
+        assertNotSame( args, copied );
+        assertEquals( HashMap.class, copied[1].getClass() );
+
+        Map<?, ?> map = (Map<?, ?>) copied[1];
+        assertSame( map, map.get( "self" ) );
+        assertEquals( "a", ((Map<?, ?>) map.get( "inner" )).get( 1.0 ) );
+
+        Object[] plain = new Object[] { "x", 1.0 };
+        assertSame( plain, LuaTableView.materialise( plain ) );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkFieldAccess() throws Exception
+    {
+        LuaTable table = new LuaTable();
+        for( int i = 1; i <= 10_000; i++ ) table.rawset( i, valueOf( i ) );
+        table.rawset( "url", valueOf( "http://example.com" ) );
+
+        int iterations = 10_000;
+        for( int run = 0; run < 2; run++ )
+        {
+            long start = System.nanoTime();
+            for( int i = 0; i < iterations; i++ )
+            {
+                TableHelper.getStringField( (Map<?, ?>) CobaltLuaMachine.toObject( table, null ), "url" );
+            }
+            long eager = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for( int i = 0; i < iterations; i++ )
+            {
+                TableHelper.getStringField( (Map<?, ?>) LuaTableView.toObject( table ), "url" );
+            }
+            long lazy = System.nanoTime() - start;
+
+            System.out.printf(
+                "Reading one field of a 10k entry table: eager %.0f ns/op, lazy %.0f ns/op\n",
+                (double) eager / iterations, (double) lazy / iterations
+            );
+        }
+    }
+}
@@ -0,0 +1,322 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.core.lua;
+
+import dan200.computercraft.api.lua.ILuaAPI;
+import dan200.computercraft.api.lua.ILuaContext;
+import dan200.computercraft.api.lua.ILuaObject;
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.lua.OwnedByteArray;
+import dan200.computercraft.api.peripheral.IComputerAccess;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import dan200.computercraft.core.computer.ComputerBootstrap;
+import dan200.computercraft.core.computer.ComputerSide;
+import dan200.computercraft.core.filesystem.MemoryMount;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.time.Duration.ofSeconds;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * Checks values are converted between Java and Lua correctly, and benchmarks the cost of doing so.
+ */
+public class WrappedObjectTest
+{
+    private static final int ITERATIONS = 100_000;
+    private static final int REMOTE_PERIPHERALS = 200;
+
+    @Test
+    public void testInstancesAreDistinct()
+    {
+        assertTimeoutPreemptively( ofSeconds( 20 ), () -> run(
+            "local a, b = objects.make(1), objects.make(2)\n" +
+                "assertion.assert(a.get() == 1 and b.get() == 2)\n" +
+                "local d = objects.dynamic(3)\n" +
+                "assertion.assert(d.get == nil and d.method3() == 3)\n" +
+                "assertion.assert(objects.dynamic(4).method4() == 4)\n"
+        ) );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkFsOpen()
+    {
+        run(
+            "local n = " + ITERATIONS + "\n" +
+                "for i = 1, n do local h = fs.open('test.lua', 'r') h.close() end\n" +
+                "local bytes, start = objects.allocated(), os.clock()\n" +
+                "for i = 1, n do local h = fs.open('test.lua', 'r') h.close() end\n" +
+                "objects.report('fs.open', n, objects.allocated() - bytes, os.clock() - start)\n" +
+                "assertion.assert(true)\n"
+        );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkPeripheralWrap()
+    {
+        run(
+            "local names = peripheral.getNames()\n" +
+                "assertion.assert(#names == " + (REMOTE_PERIPHERALS + 1) + ")\n" +
+                "for _, name in ipairs(names) do peripheral.wrap(name) end\n" +
+                "local bytes, start = objects.allocated(), os.clock()\n" +
+                "for i = 1, 10 do for _, name in ipairs(names) do peripheral.wrap(name) end end\n" +
+                "objects.report('peripheral.wrap', 10 * #names, objects.allocated() - bytes, os.clock() - start)\n" +
+                "assertion.assert(true)\n"
+        );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkTerminalRedraw()
+    {
+        run(
+            "local n = " + ITERATIONS / 100 + "\n" +
+                "local w, h = term.getSize()\n" +
+                "local line, fg, bg = ('x'):rep(w), ('0'):rep(w), ('f'):rep(w)\n" +
+                "local win = window.create(term.current(), 1, 1, w, h)\n" +
+                "local function bench(name, f)\n" +
+                "  for i = 1, n do f() end\n" +
+                "  local bytes, start = objects.allocated(), os.clock()\n" +
+                "  for i = 1, n do f() end\n" +
+                "  objects.report(name, n, objects.allocated() - bytes, os.clock() - start)\n" +
+                "end\n" +
+                "bench('term.write', function() for y = 1, h do term.setCursorPos(1, y) term.write(line) end end)\n" +
+                "bench('term.blit', function() for y = 1, h do term.setCursorPos(1, y) term.blit(line, fg, bg) end end)\n" +
+                "bench('paintutils', function() paintutils.drawFilledBox(1, 1, w, h, colours.red) end)\n" +
+                "bench('window.redraw', function() win.redraw() end)\n" +
+                "assertion.assert(true)\n"
+        );
+    }
+
+    @Test
+    public void testOwnedBytes()
+    {
+        assertTimeoutPreemptively( ofSeconds( 20 ), () -> run(
+            "assertion.assert(objects.bytes(3, true) == 'AAA')\n" +
+                "assertion.assert(objects.bytes(3, false) == 'AAA')\n" +
+                "local a, b = objects.echo(1, 'x')\n" +
+                "assertion.assert(a == 1 and b == 'x')\n"
+        ) );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkRoundTrip()
+    {
+        run(
+            "local n = " + ITERATIONS + "\n" +
+                "local function bench(name, f, ...)\n" +
+                "  for i = 1, n do f(...) end\n" +
+                "  local bytes, start = objects.allocated(), os.clock()\n" +
+                "  for i = 1, n do f(...) end\n" +
+                "  objects.report(name, n, objects.allocated() - bytes, os.clock() - start)\n" +
+                "end\n" +
+                "bench('echo()', objects.echo)\n" +
+                "bench('echo(1)', objects.echo, 1)\n" +
+                "bench('echo(1, true)', objects.echo, 1, true)\n" +
+                "bench('echo(\"x\", 2.5)', objects.echo, 'x', 2.5)\n" +
+                "bench('echo({})', objects.echo, {})\n" +
+                "bench('bytes (copied)', objects.bytes, 4096, false)\n" +
+                "bench('bytes (owned)', objects.bytes, 4096, true)\n" +
+                "assertion.assert(true)\n"
+        );
+    }
+
+    private static void run( String program )
+    {
+        MemoryMount mount = new MemoryMount()
+            .addFile( "test.lua", program )
+            .addFile( "startup", "assertion.assert(pcall(loadfile('test.lua', nil, _ENV))) os.shutdown()" );
+
+        ComputerBootstrap.run( mount, computer -> {
+            computer.addApi( new ObjectApi() );
+            computer.getEnvironment().setPeripheral( ComputerSide.TOP, new FakeWiredModem() );
+        } );
+    }
+
+    private static final class ObjectApi implements ILuaAPI
+    {
+        @Override
+        public String[] getNames()
+        {
+            return new String[] { "objects" };
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return new String[] { "make", "dynamic", "allocated", "report", "echo", "bytes" };
+        }
+
+        @Nullable
+        @Override
+        public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments )
+        {
+            switch( method )
+            {
+                case 0: // make
+                    return new Object[] { new FixedObject( arguments[0] ) };
+                case 1: // dynamic
+                    return new Object[] { new DynamicObject( ((Number) arguments[0]).intValue() ) };
+                case 2: // allocated
+                {
+                    // Lua code runs on the computer thread, so this measures everything the program allocated.
+                    com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                    return new Object[] { bean.getThreadAllocatedBytes( Thread.currentThread().getId() ) };
+                }
+                case 3: // report
+                {
+                    double count = ((Number) arguments[1]).doubleValue();
+                    double bytes = ((Number) arguments[2]).doubleValue();
+                    double time = ((Number) arguments[3]).doubleValue();
+                    System.out.printf(
+                        "%-16s %8.0f bytes/op, %8.0f ns/op\n",
+                        arguments[0], bytes / count, time * 1e9 / count
+                    );
+                    return null;
+                }
+                case 4: // echo
+                    return arguments;
+                case 5: // bytes
+                {
+                    byte[] bytes = new byte[((Number) arguments[0]).intValue()];
+                    Arrays.fill( bytes, (byte) 'A' );
+                    return new Object[] { arguments[1] == Boolean.TRUE ? OwnedByteArray.of( bytes ) : bytes };
+                }
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private static final class FixedObject implements ILuaObject
+    {
+        private static final String[] METHODS = new String[] { "get" };
+
+        private final Object value;
+
+        FixedObject( Object value )
+        {
+            this.value = value;
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return METHODS;
+        }
+
+        @Nullable
+        @Override
+        public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments )
+        {
+            return new Object[] { value };
+        }
+    }
+
+    private static final class DynamicObject implements ILuaObject
+    {
+        private final int value;
+
+        DynamicObject( int value )
+        {
+            this.value = value;
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return new String[] { "method" + value };
+        }
+
+        @Nullable
+        @Override
+        public Object[] callMethod( @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments )
+        {
+            return new Object[] { value };
+        }
+    }
+
+    /**
+     * A peripheral which pretends to be a wired modem connected to {@link #REMOTE_PERIPHERALS} other peripherals.
+     */
+    private static final class FakeWiredModem implements IPeripheral
+    {
+        private static final String[] REMOTE_METHODS = new String[] { "getItem", "list", "size", "pushItems", "pullItems" };
+
+        private final Map<String, String> remotes = new HashMap<>();
+
+        FakeWiredModem()
+        {
+            for( int i = 0; i < REMOTE_PERIPHERALS; i++ ) remotes.put( "chest_" + i, "chest" );
+        }
+
+        @Nonnull
+        @Override
+        public String getType()
+        {
+            return "modem";
+        }
+
+        @Nonnull
+        @Override
+        public String[] getMethodNames()
+        {
+            return new String[] { "isWireless", "getNamesRemote", "isPresentRemote", "getTypeRemote", "getMethodsRemote", "callRemote" };
+        }
+
+        @Nullable
+        @Override
+        public Object[] callMethod( @Nonnull IComputerAccess computer, @Nonnull ILuaContext context, int method, @Nonnull Object[] arguments ) throws LuaException
+        {
+            switch( method )
+            {
+                case 0: // isWireless
+                    return new Object[] { false };
+                case 1: // getNamesRemote
+                {
+                    Map<Object, Object> names = new HashMap<>();
+                    int i = 1;
+                    for( String name : remotes.keySet() ) names.put( i++, name );
+                    return new Object[] { names };
+                }
+                case 2: // isPresentRemote
+                    return new Object[] { remotes.containsKey( arguments[0] ) };
+                case 3: // getTypeRemote
+                    return new Object[] { remotes.get( arguments[0] ) };
+                case 4: // getMethodsRemote
+                {
+                    if( !remotes.containsKey( arguments[0] ) ) return null;
+                    Map<Object, Object> methods = new HashMap<>();
+                    for( int i = 0; i < REMOTE_METHODS.length; i++ ) methods.put( i + 1, REMOTE_METHODS[i] );
+                    return new Object[] { methods };
+                }
+                case 5: // callRemote
+                    throw new LuaException( "Not implemented" );
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public boolean equals( @Nullable IPeripheral other )
+        {
+            return other == this;
+        }
+    }
+}
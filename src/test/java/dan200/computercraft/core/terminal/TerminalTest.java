@@ -0,0 +1,245 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+
+package dan200.computercraft.core.terminal;
+
+import dan200.computercraft.api.lua.ByteString;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketBuffer;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the packed terminal storage behaves the same as the original line-based one, and benchmarks common
+ * operations on it.
+ */
+public class TerminalTest
+{
+    @Test
+    public void testWriteAndBlit()
+    {
+        Terminal terminal = new Terminal( 6, 2 );
+        terminal.setTextColour( 3 );
+        terminal.setBackgroundColour( 9 );
+
+        terminal.setCursorPos( -1, 0 );
+        terminal.write( "Hello" );
+        terminal.setCursorPos( 4, 1 );
+        terminal.blit( "abc", "012", "fed" );
+
+        assertLines( terminal, "ello  ", "    ab" );
+        assertEquals( "333300", terminal.getTextColourLine( 0 ).toString() );
+        assertEquals( "9999ff", terminal.getBackgroundColourLine( 0 ).toString() );
+        assertEquals( "000001", terminal.getTextColourLine( 1 ).toString() );
+        assertEquals( "fffffe", terminal.getBackgroundColourLine( 1 ).toString() );
+    }
+
+    @Test
+    public void testByteStrings()
+    {
+        Terminal expected = new Terminal( 6, 2 ), actual = new Terminal( 6, 2 );
+        for( Terminal terminal : new Terminal[] { expected, actual } )
+        {
+            terminal.setTextColour( 2 );
+            terminal.setBackgroundColour( 7 );
+        }
+
+        String text = "\u00a7x\u00ff\u0080y";
+        expected.setCursorPos( -1, 0 );
+        expected.write( text );
+        expected.setCursorPos( 3, 1 );
+        expected.blit( text, "0z1234", "g56789" );
+
+        actual.setCursorPos( -1, 0 );
+        actual.write( ByteString.of( text ) );
+        actual.setCursorPos( 3, 1 );
+        actual.blit( ByteString.of( text ), ByteString.of( "0z1234" ), ByteString.of( "g56789" ) );
+
+        for( int y = 0; y < 2; y++ )
+        {
+            assertEquals( expected.getLine( y ).toString(), actual.getLine( y ).toString() );
+            assertEquals( expected.getTextColourLine( y ).toString(), actual.getTextColourLine( y ).toString() );
+            assertEquals( expected.getBackgroundColourLine( y ).toString(), actual.getBackgroundColourLine( y ).toString() );
+        }
+        assertEquals( "x\u00ff\u0080y  ", actual.getLine( 0 ).toString() );
+    }
+
+    @Test
+    public void testInvalidColours()
+    {
+        Terminal terminal = new Terminal( 3, 1 );
+        terminal.blit( "abc", "z1?", "0g2" );
+
+        // Invalid text colours become white, invalid backgrounds become black.
+        assertEquals( "010", terminal.getTextColourLine( 0 ).toString() );
+        assertEquals( "0f2", terminal.getBackgroundColourLine( 0 ).toString() );
+    }
+
+    @Test
+    public void testScroll()
+    {
+        Terminal terminal = new Terminal( 3, 3 );
+
+        // Scroll enough times that the ring buffer wraps around several times.
+        for( int i = 0; i < 10; i++ )
+        {
+            terminal.setCursorPos( 0, 2 );
+            terminal.write( "l" + i );
+            terminal.scroll( 1 );
+        }
+        assertLines( terminal, "l8 ", "l9 ", "   " );
+
+        terminal.scroll( -2 );
+        assertLines( terminal, "   ", "   ", "l8 " );
+
+        terminal.scroll( 5 );
+        assertLines( terminal, "   ", "   ", "   " );
+    }
+
+    @Test
+    public void testScrolledRowsUseCursorColours()
+    {
+        Terminal terminal = new Terminal( 2, 2 );
+        terminal.setTextColour( 4 );
+        terminal.setBackgroundColour( 5 );
+        terminal.scroll( 1 );
+
+        assertEquals( "00", terminal.getTextColourLine( 0 ).toString() );
+        assertEquals( "44", terminal.getTextColourLine( 1 ).toString() );
+        assertEquals( "55", terminal.getBackgroundColourLine( 1 ).toString() );
+    }
+
+    @Test
+    public void testLineViews()
+    {
+        Terminal terminal = new Terminal( 4, 2 );
+        terminal.scroll( 1 );
+
+        terminal.getLine( 1 ).write( "ab", 1 );
+        terminal.getTextColourLine( 1 ).setChar( 2, 'e' );
+        terminal.getBackgroundColourLine( 1 ).fill( '7' );
+
+        assertLines( terminal, "    ", " ab " );
+        assertEquals( "00e0", terminal.getTextColourLine( 1 ).toString() );
+        assertEquals( "7777", terminal.getBackgroundColourLine( 1 ).toString() );
+        assertEquals( "ab", terminal.getLine( 1 ).read( 1, 3 ) );
+
+        assertNull( terminal.getLine( 2 ) );
+        assertNull( terminal.getTextColourLine( -1 ) );
+    }
+
+    @Test
+    public void testResize()
+    {
+        Terminal terminal = new Terminal( 4, 3 );
+        for( int i = 0; i < 4; i++ )
+        {
+            terminal.setCursorPos( 0, 2 );
+            terminal.write( "row" + i );
+            terminal.scroll( 1 );
+        }
+
+        terminal.resize( 2, 4 );
+        assertLines( terminal, "ro", "ro", "  ", "  " );
+
+        terminal.resize( 5, 1 );
+        assertLines( terminal, "ro   " );
+    }
+
+    @Test
+    public void testRoundTrip()
+    {
+        Terminal terminal = randomTerminal( new Random(), 7, 4 );
+        terminal.scroll( 2 );
+
+        PacketBuffer buffer = new PacketBuffer( Unpooled.buffer() );
+        terminal.write( buffer );
+
+        Terminal other = new Terminal( 7, 4 );
+        other.read( buffer );
+        for( int y = 0; y < terminal.getHeight(); y++ )
+        {
+            assertEquals( terminal.getLine( y ).toString(), other.getLine( y ).toString() );
+            assertEquals( terminal.getTextColourLine( y ).toString(), other.getTextColourLine( y ).toString() );
+            assertEquals( terminal.getBackgroundColourLine( y ).toString(), other.getBackgroundColourLine( y ).toString() );
+        }
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkOperations()
+    {
+        Random random = new Random( 0 );
+        String text = randomString( random, 51, 'A', 26 );
+        String colours = randomString( random, 51, '0', 10 );
+
+        runBenchmark( "write", t -> {
+            t.setCursorPos( 0, random.nextInt( t.getHeight() ) );
+            t.write( text );
+        } );
+
+        runBenchmark( "blit", t -> {
+            t.setCursorPos( 0, random.nextInt( t.getHeight() ) );
+            t.blit( text, colours, colours );
+        } );
+
+        runBenchmark( "scroll", t -> t.scroll( 1 ) );
+
+        PacketBuffer buffer = new PacketBuffer( Unpooled.buffer() );
+        runBenchmark( "serialise", t -> {
+            buffer.clear();
+            t.write( buffer );
+        } );
+    }
+
+    private static void runBenchmark( String name, Consumer<Terminal> operation )
+    {
+        Terminal terminal = randomTerminal( new Random( 0 ), 51, 19 );
+        int iterations = 1_000_000;
+
+        // Warm up first, so we're not just measuring the interpreter.
+        for( int i = 0; i < iterations; i++ ) operation.accept( terminal );
+
+        long start = System.nanoTime();
+        for( int i = 0; i < iterations; i++ ) operation.accept( terminal );
+        long time = System.nanoTime() - start;
+
+        System.out.printf( "%-10s %7.1f ns/op\n", name, (double) time / iterations );
+    }
+
+    private static void assertLines( Terminal terminal, String... lines )
+    {
+        assertEquals( lines.length, terminal.getHeight(), "Heights must match" );
+        for( int y = 0; y < lines.length; y++ ) assertEquals( lines[y], terminal.getLine( y ).toString(), "Line " + y );
+    }
+
+    private static Terminal randomTerminal( Random random, int width, int height )
+    {
+        Terminal terminal = new Terminal( width, height );
+        for( int y = 0; y < height; y++ )
+        {
+            terminal.setCursorPos( 0, y );
+            terminal.blit(
+                randomString( random, width, 'A', 26 ),
+                randomString( random, width, '0', 10 ),
+                randomString( random, width, '0', 10 )
+            );
+        }
+        return terminal;
+    }
+
+    private static String randomString( Random random, int length, char base, int range )
+    {
+        StringBuilder builder = new StringBuilder( length );
+        for( int i = 0; i < length; i++ ) builder.append( (char) (base + random.nextInt( range )) );
+        return builder.toString();
+    }
+}
@@ -9,13 +9,17 @@ package dan200.computercraft.shared.network.client;
 import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.core.terminal.Terminal;
 import dan200.computercraft.core.terminal.TextBuffer;
+import dan200.computercraft.shared.util.Palette;
 import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketBuffer;
 import org.apache.logging.log4j.LogManager;
 import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.RepeatedTest;
+import org.junit.jupiter.api.Test;
 
 import java.util.Random;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -42,6 +46,21 @@ public class TerminalStateTest
         assertEquals( 0, buffer.readableBytes() );
     }
 
+    @Test
+    public void testCompressedLarge()
+    {
+        // Large enough that the compressor's output buffer must grow.
+        Terminal terminal = randomTerminal( 400, 100 );
+
+        TerminalState state = new TerminalState( true, terminal, true );
+        PacketBuffer buffer = new PacketBuffer( Unpooled.directBuffer() );
+        state.write( buffer );
+        assertTrue( state.isReady() );
+
+        checkEqual( terminal, read( buffer ) );
+        assertEquals( 0, buffer.readableBytes() );
+    }
+
     @RepeatedTest( 5 )
     public void testUncompressed()
     {
@@ -54,10 +73,227 @@ public class TerminalStateTest
         assertEquals( 0, buffer.readableBytes() );
     }
 
+    @RepeatedTest( 5 )
+    public void testDelta()
+    {
+        Random random = new Random();
+        Terminal server = new Terminal( 20, 8 );
+        Terminal client = null;
+
+        for( int tick = 0; tick < 100; tick++ )
+        {
+            // Perform a handful of random operations on the terminal, and then send the delta across.
+            int operations = random.nextInt( 5 );
+            for( int i = 0; i < operations; i++ ) randomOperation( server, random );
+
+            PacketBuffer buffer = new PacketBuffer( Unpooled.directBuffer() );
+            TerminalState.delta( true, server ).write( buffer );
+
+            TerminalState state = new TerminalState( buffer );
+            assertEquals( 0, buffer.readableBytes() );
+            if( client == null )
+            {
+                assertFalse( state.delta, "First update must be a full snapshot" );
+                client = new Terminal( state.width, state.height );
+            }
+
+            state.apply( client );
+            checkEqualFull( server, client );
+        }
+    }
+
+    @Test
+    public void testDeltaOnlySendsChanged()
+    {
+        Terminal terminal = new Terminal( 51, 19 );
+        TerminalState.delta( true, terminal );
+
+        terminal.setCursorPos( 0, 3 );
+        terminal.write( "Hello" );
+
+        TerminalState state = TerminalState.delta( true, terminal );
+        assertTrue( state.delta );
+        assertTrue( state.size() < 51 * 2 + 32, "Delta should only contain one line" );
+    }
+
+    @Test
+    public void testDeltaAfterResize()
+    {
+        Terminal terminal = new Terminal( 51, 19 );
+        TerminalState.delta( true, terminal );
+
+        terminal.resize( 26, 20 );
+        assertFalse( TerminalState.delta( true, terminal ).delta, "Must send a full snapshot after resizing" );
+    }
+
+    @Test
+    public void testDeltaAfterSnapshot()
+    {
+        Terminal server = new Terminal( 10, 4 );
+        for( int y = 0; y < server.getHeight(); y++ )
+        {
+            server.setCursorPos( 0, y );
+            server.write( "Line " + y );
+        }
+        TerminalState.delta( true, server );
+
+        // Scroll and send a snapshot, without sending a delta in between.
+        server.scroll( 1 );
+        Terminal client = new Terminal( 10, 4 );
+        roundTrip( new TerminalState( true, server ) ).apply( client );
+
+        server.setCursorPos( 0, 3 );
+        server.write( "Line 4" );
+
+        TerminalState delta = roundTrip( TerminalState.delta( true, server ) );
+        assertTrue( delta.delta );
+        delta.apply( client );
+        checkEqualFull( server, client );
+        assertEquals( "Line 1    ", client.getLine( 0 ).toString() );
+    }
+
+    @Test
+    public void testDeltaAfterDiscardedSnapshot()
+    {
+        Terminal server = new Terminal( 10, 4 );
+        TerminalState.delta( true, server );
+
+        // Scroll while nobody is listening, and then send a snapshot to a new client.
+        server.setCursorPos( 0, 3 );
+        server.write( "Hello" );
+        server.scroll( 2 );
+        server.markClean();
+        Terminal client = new Terminal( 10, 4 );
+        roundTrip( new TerminalState( true, server ) ).apply( client );
+
+        server.scroll( 1 );
+
+        TerminalState delta = roundTrip( TerminalState.delta( true, server ) );
+        assertTrue( delta.delta );
+        delta.apply( client );
+        checkEqualFull( server, client );
+        assertEquals( "Hello     ", client.getLine( 0 ).toString() );
+    }
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void benchmarkBytesPerTick()
+    {
+        Random random = new Random( 0 );
+        String[] clock = new String[] { "12:00", "12:01", "12:02" };
+
+        runBenchmark( "Clock (8x6 monitor)", 15, 10, ( t ) -> {
+            t.setCursorPos( 5, 4 );
+            t.write( clock[random.nextInt( clock.length )] );
+        } );
+
+        runBenchmark( "Scrolling log (computer)", 51, 19, ( t ) -> {
+            t.scroll( 1 );
+            t.setCursorPos( 0, t.getHeight() - 1 );
+            t.write( "[INFO] Received message " + random.nextInt( 10000 ) );
+        } );
+
+        runBenchmark( "Status display (8x6 monitor)", 39, 26, ( t ) -> {
+            for( int i = 0; i < 3; i++ )
+            {
+                t.setCursorPos( 1, 2 + random.nextInt( t.getHeight() - 4 ) );
+                t.setTextColour( random.nextInt( 16 ) );
+                t.write( "Energy: " + random.nextInt( 1000000 ) + " RF" );
+            }
+        } );
+
+        runBenchmark( "Palette animation (computer)", 51, 19, ( t ) -> {
+            t.getPalette().setColour( random.nextInt( 16 ), random.nextDouble(), random.nextDouble(), random.nextDouble() );
+            t.setChanged();
+        } );
+
+        runBenchmark( "Full redraw (computer)", 51, 19, ( t ) -> {
+            for( int y = 0; y < t.getHeight(); y++ )
+            {
+                t.setCursorPos( 0, y );
+                t.setBackgroundColour( random.nextInt( 16 ) );
+                t.clearLine();
+            }
+        } );
+    }
+
+    private static void runBenchmark( String name, int width, int height, Consumer<Terminal> tick )
+    {
+        int ticks = 2000;
+        Terminal terminal = new Terminal( width, height );
+        TerminalState.delta( true, terminal );
+
+        long fullBytes = 0, deltaBytes = 0;
+        for( int i = 0; i < ticks; i++ )
+        {
+            tick.accept( terminal );
+
+            PacketBuffer full = new PacketBuffer( Unpooled.buffer() );
+            new TerminalState( true, terminal ).write( full );
+            fullBytes += full.readableBytes();
+
+            PacketBuffer delta = new PacketBuffer( Unpooled.buffer() );
+            TerminalState.delta( true, terminal ).write( delta );
+            deltaBytes += delta.readableBytes();
+        }
+
+        System.out.printf(
+            "%-30s %3dx%-3d full: %7.1f bytes/tick, delta: %7.1f bytes/tick\n",
+            name, width, height, (double) fullBytes / ticks, (double) deltaBytes / ticks
+        );
+    }
+
+    private static void randomOperation( Terminal terminal, Random random )
+    {
+        terminal.setTextColour( random.nextInt( 16 ) );
+        terminal.setBackgroundColour( random.nextInt( 16 ) );
+        terminal.setCursorPos( random.nextInt( terminal.getWidth() + 2 ) - 1, random.nextInt( terminal.getHeight() + 2 ) - 1 );
+        switch( random.nextInt( 7 ) )
+        {
+            case 0:
+                terminal.write( randomString( random, random.nextInt( 10 ) ) );
+                break;
+            case 1:
+                terminal.scroll( random.nextInt( 5 ) - 2 );
+                break;
+            case 2:
+                terminal.clearLine();
+                break;
+            case 3:
+                if( random.nextInt( 5 ) == 0 ) terminal.clear();
+                break;
+            case 4:
+            {
+                int length = random.nextInt( 10 );
+                terminal.blit( randomString( random, length ), randomString( random, length ), randomString( random, length ) );
+                break;
+            }
+            case 5:
+                terminal.getPalette().setColour( random.nextInt( 16 ), random.nextDouble(), random.nextDouble(), random.nextDouble() );
+                terminal.setChanged();
+                break;
+            case 6:
+                terminal.setCursorBlink( random.nextBoolean() );
+                break;
+        }
+    }
+
+    private static String randomString( Random random, int length )
+    {
+        StringBuilder builder = new StringBuilder( length );
+        for( int i = 0; i < length; i++ ) builder.append( "0123456789abcdef".charAt( random.nextInt( 16 ) ) );
+        return builder.toString();
+    }
+
     private static Terminal randomTerminal()
+    {
+        return randomTerminal( 10, 5 );
+    }
+
+    private static Terminal randomTerminal( int width, int height )
     {
         Random random = new Random();
-        Terminal terminal = new Terminal( 10, 5 );
+        Terminal terminal = new Terminal( width, height );
         for( int y = 0; y < terminal.getHeight(); y++ )
         {
             TextBuffer buffer = terminal.getLine( y );
@@ -80,6 +316,32 @@ public class TerminalStateTest
         }
     }
 
+    private static void checkEqualFull( Terminal expected, Terminal actual )
+    {
+        checkEqual( expected, actual );
+        for( int y = 0; y < expected.getHeight(); y++ )
+        {
+            assertEquals( expected.getTextColourLine( y ).toString(), actual.getTextColourLine( y ).toString() );
+            assertEquals( expected.getBackgroundColourLine( y ).toString(), actual.getBackgroundColourLine( y ).toString() );
+        }
+
+        assertEquals( expected.getCursorX(), actual.getCursorX() );
+        assertEquals( expected.getCursorY(), actual.getCursorY() );
+        assertEquals( expected.getCursorBlink(), actual.getCursorBlink() );
+        for( int i = 0; i < Palette.PALETTE_SIZE; i++ )
+        {
+            // Colours are sent as 8-bit channels, so we lose some precision.
+            assertArrayEquals( expected.getPalette().getColour( i ), actual.getPalette().getColour( i ), 1.0 / 255 );
+        }
+    }
+
+    private static TerminalState roundTrip( TerminalState state )
+    {
+        PacketBuffer buffer = new PacketBuffer( Unpooled.directBuffer() );
+        state.write( buffer );
+        return new TerminalState( buffer );
+    }
+
     private static Terminal read( PacketBuffer buffer )
     {
         TerminalState state = new TerminalState( buffer );
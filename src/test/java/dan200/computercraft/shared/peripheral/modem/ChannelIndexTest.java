@@ -0,0 +1,137 @@
+/*
+ * This file is part of ComputerCraft - http://www.computercraft.info
+ * Copyright Daniel Ratcliffe, 2011-2020. Do not distribute without permission.
+ * Send enquiries to dratcliffe@gmail.com
+ */
+package dan200.computercraft.shared.peripheral.modem;
+
+import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.network.IPacketNetwork;
+import dan200.computercraft.api.peripheral.IPeripheral;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.World;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelIndexTest
+{
+    @Test
+    public void testSubscribesOpenChannels() throws LuaException
+    {
+        ModemState state = new ModemState();
+        state.open( 1 );
+        state.open( 2 );
+
+        ModemPeripheral modem = new TestModem( state );
+        ChannelIndex index = new ChannelIndex();
+        index.add( modem );
+
+        assertEquals( Collections.singleton( modem ), index.get( 1 ) );
+        assertEquals( Collections.singleton( modem ), index.get( 2 ) );
+        assertNull( index.get( 3 ) );
+    }
+
+    @Test
+    public void testUpdate() throws LuaException
+    {
+        ModemState state = new ModemState();
+        ModemPeripheral modem = new TestModem( state );
+        ChannelIndex index = new ChannelIndex();
+        index.add( modem );
+        assertTrue( index.isEmpty() );
+
+        state.open( 1 );
+        index.update( modem );
+        assertEquals( Collections.singleton( modem ), index.get( 1 ) );
+
+        state.close( 1 );
+        state.open( 2 );
+        index.update( modem );
+        assertNull( index.get( 1 ) );
+        assertEquals( Collections.singleton( modem ), index.get( 2 ) );
+
+        state.closeAll();
+        index.update( modem );
+        assertTrue( index.isEmpty() );
+    }
+
+    @Test
+    public void testRemove() throws LuaException
+    {
+        ModemState state = new ModemState();
+        state.open( 1 );
+
+        ModemPeripheral first = new TestModem( state ), second = new TestModem( state );
+        ChannelIndex index = new ChannelIndex();
+        index.add( first );
+        index.add( second );
+
+        Set<?> subscribers = index.get( 1 );
+        assertNotNull( subscribers );
+        assertEquals( 2, subscribers.size() );
+
+        assertTrue( index.remove( first ) );
+        assertEquals( Collections.singleton( second ), index.get( 1 ) );
+
+        assertTrue( index.remove( second ) );
+        assertFalse( index.remove( second ) );
+        assertTrue( index.isEmpty() );
+
+        // Modems which are no longer in the index should not be re-added.
+        state.open( 2 );
+        index.update( first );
+        assertTrue( index.isEmpty() );
+    }
+
+    private static final class TestModem extends ModemPeripheral
+    {
+        TestModem( ModemState state )
+        {
+            super( state );
+        }
+
+        @Override
+        protected IPacketNetwork getNetwork()
+        {
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public World getWorld()
+        {
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public Vec3d getPosition()
+        {
+            return Vec3d.ZERO;
+        }
+
+        @Override
+        public double getRange()
+        {
+            return 0;
+        }
+
+        @Override
+        public boolean isInterdimensional()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean equals( @Nullable IPeripheral other )
+        {
+            return this == other;
+        }
+    }
+}
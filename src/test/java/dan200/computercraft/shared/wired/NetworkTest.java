@@ -11,6 +11,8 @@ import dan200.computercraft.ComputerCraft;
 import dan200.computercraft.api.ComputerCraftAPI;
 import dan200.computercraft.api.lua.ILuaContext;
 import dan200.computercraft.api.lua.LuaException;
+import dan200.computercraft.api.network.IPacketReceiver;
+import dan200.computercraft.api.network.Packet;
 import dan200.computercraft.api.network.wired.IWiredElement;
 import dan200.computercraft.api.network.wired.IWiredNetwork;
 import dan200.computercraft.api.network.wired.IWiredNetworkChange;
@@ -28,6 +30,8 @@ import org.junit.jupiter.api.Test;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiConsumer;
@@ -252,6 +256,51 @@ public class NetworkTest
         assertEquals( Sets.newHashSet(), cE.allPeripherals().keySet(), "C's peripheral set should be empty" );
     }
 
+    @Test
+    public void testTransmitRoutes()
+    {
+        NetworkElement
+            aE = new NetworkElement( null, new Vec3d( 0, 0, 0 ), "a" ),
+            bE = new NetworkElement( null, new Vec3d( 1, 0, 0 ), "b" ),
+            cE = new NetworkElement( null, new Vec3d( 1, 1, 0 ), "c" );
+
+        IWiredNode
+            aN = aE.getNode(),
+            bN = bE.getNode(),
+            cN = cE.getNode();
+
+        NetworkReceiver receiver = new NetworkReceiver( cE.getPosition() );
+        cN.addReceiver( receiver );
+
+        aN.getNetwork().connect( aN, bN );
+        aN.getNetwork().connect( bN, cN );
+
+        aN.transmitSameDimension( new Packet( 1, 1, null, aE ), 64 );
+        assertEquals( 2, receiver.lastDistance, 1e-6, "Packet should travel via B" );
+
+        // Add a shorter route, which should be used for subsequent packets.
+        aN.getNetwork().connect( aN, cN );
+        aN.transmitSameDimension( new Packet( 1, 1, null, aE ), 64 );
+        assertEquals( Math.sqrt( 2 ), receiver.lastDistance, 1e-6, "Packet should travel directly" );
+
+        // And remove it again.
+        aN.getNetwork().disconnect( aN, cN );
+        aN.transmitSameDimension( new Packet( 1, 1, null, aE ), 64 );
+        assertEquals( 2, receiver.lastDistance, 1e-6, "Packet should travel via B" );
+
+        // Once the network is split, we should no longer receive packets.
+        receiver.received = 0;
+        aN.getNetwork().disconnect( bN, cN );
+        aN.transmitSameDimension( new Packet( 1, 1, null, aE ), 64 );
+        assertEquals( 0, receiver.received, "Packet should not be received" );
+
+        // Nor should we receive packets once the receiver has been removed.
+        aN.getNetwork().connect( bN, cN );
+        cN.removeReceiver( receiver );
+        aN.transmitSameDimension( new Packet( 1, 1, null, aE ), 64 );
+        assertEquals( 0, receiver.received, "Packet should not be received" );
+    }
+
     private static final int BRUTE_SIZE = 16;
     private static final int TOGGLE_CONNECTION_TIMES = 5;
     private static final int TOGGLE_NODE_TIMES = 5;
@@ -323,6 +372,133 @@ public class NetworkTest
         }
     }
 
+    private static final int TRANSMIT_LINE_LENGTH = 3000;
+    private static final int TRANSMIT_RECEIVER_SPACING = 100;
+    private static final int TRANSMIT_TIMES = 10_000;
+
+    @Test
+    @Disabled( "Takes a long time to run, mostly for benchmarking" )
+    public void testTransmitLarge()
+    {
+        // A grid of nodes, with receivers dotted throughout.
+        {
+            Grid<NetworkElement> grid = new Grid<>( BRUTE_SIZE );
+            grid.map( ( existing, pos ) -> new NetworkElement( null, new Vec3d( pos ), "n_" + pos ) );
+            grid.forEach( ( existing, pos ) -> {
+                for( EnumFacing facing : EnumFacing.VALUES )
+                {
+                    NetworkElement other = grid.get( pos.offset( facing ) );
+                    if( other != null ) existing.getNode().getNetwork().connect( existing.getNode(), other.getNode() );
+                }
+            } );
+
+            List<NetworkElement> elements = new ArrayList<>();
+            grid.forEach( ( existing, pos ) -> elements.add( existing ) );
+            benchmarkTransmit( String.format( "%s³ grid", BRUTE_SIZE ), elements );
+        }
+
+        // A single long line of nodes.
+        {
+            List<NetworkElement> elements = new ArrayList<>( TRANSMIT_LINE_LENGTH );
+            for( int i = 0; i < TRANSMIT_LINE_LENGTH; i++ )
+            {
+                NetworkElement element = new NetworkElement( null, new Vec3d( i, 0, 0 ), "n_" + i );
+                if( i > 0 )
+                {
+                    IWiredNode previous = elements.get( i - 1 ).getNode();
+                    previous.getNetwork().connect( previous, element.getNode() );
+                }
+                elements.add( element );
+            }
+
+            benchmarkTransmit( String.format( "%s node line", TRANSMIT_LINE_LENGTH ), elements );
+        }
+    }
+
+    private static void benchmarkTransmit( String name, List<NetworkElement> elements )
+    {
+        List<NetworkElement> senders = new ArrayList<>();
+        for( int i = 0; i < elements.size(); i += TRANSMIT_RECEIVER_SPACING )
+        {
+            NetworkElement element = elements.get( i );
+            element.getNode().addReceiver( new NetworkReceiver( element.getPosition() ) );
+            senders.add( element );
+        }
+
+        // The first packet from each sender must compute its routes.
+        long start = System.nanoTime();
+        for( NetworkElement sender : senders )
+        {
+            sender.getNode().transmitSameDimension( new Packet( 1, 1, null, sender ), 64 );
+        }
+        long cold = System.nanoTime() - start;
+
+        // While subsequent ones can use the cached routes.
+        start = System.nanoTime();
+        for( int i = 0; i < TRANSMIT_TIMES; i++ )
+        {
+            NetworkElement sender = senders.get( i % senders.size() );
+            sender.getNode().transmitSameDimension( new Packet( 1, 1, null, sender ), 64 );
+        }
+        long warm = System.nanoTime() - start;
+
+        System.out.printf(
+            "%s (%d nodes, %d receivers): first transmit took %.1fus, subsequent transmits took %.1fus\n",
+            name, elements.size(), senders.size(), cold * 1e-3 / senders.size(), warm * 1e-3 / TRANSMIT_TIMES
+        );
+    }
+
+    private static final class NetworkReceiver implements IPacketReceiver
+    {
+        private final Vec3d position;
+        int received;
+        double lastDistance = -1;
+
+        private NetworkReceiver( Vec3d position )
+        {
+            this.position = position;
+        }
+
+        @Nonnull
+        @Override
+        public World getWorld()
+        {
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public Vec3d getPosition()
+        {
+            return position;
+        }
+
+        @Override
+        public double getRange()
+        {
+            return 64;
+        }
+
+        @Override
+        public boolean isInterdimensional()
+        {
+            return false;
+        }
+
+        @Override
+        public void receiveSameDimension( @Nonnull Packet packet, double distance )
+        {
+            received++;
+            lastDistance = distance;
+        }
+
+        @Override
+        public void receiveDifferentDimension( @Nonnull Packet packet )
+        {
+            received++;
+        }
+    }
+
     private static final class NetworkElement implements IWiredElement
     {
         private final World world;
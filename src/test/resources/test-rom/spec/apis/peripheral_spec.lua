@@ -55,6 +55,27 @@ describe("The peripheral library", function()
         end)
     end)
 
+    describe("peripheral.batch", function()
+        it("validates arguments", function()
+            peripheral.batch({})
+            expect.error(peripheral.batch, nil):eq("bad argument #1 (expected table, got nil)")
+            expect.error(peripheral.batch, { 1 }):eq("bad call #1 (expected table, got number)")
+            expect.error(peripheral.batch, { {} }):eq("bad call #1 (expected peripheral and method names)")
+        end)
+
+        it("reports missing peripherals", function()
+            expect(peripheral.batch({ { "not_a_peripheral", "getType" } }))
+                :same { { false, "No peripheral attached", n = 2 } }
+        end)
+
+        it_modem("returns the result of each call", function()
+            local results = peripheral.batch({ { "top", "isOpen", 1 }, { "top", "isOpen", false } })
+            expect(results[1]):same { true, false, n = 2 }
+            expect(results[2][1]):eq(false)
+            expect(results[2][2]):eq("bad argument #1 (number expected, got boolean)")
+        end)
+    end)
+
     describe("peripheral.wrap", function()
         it("validates arguments", function()
             peripheral.wrap("")